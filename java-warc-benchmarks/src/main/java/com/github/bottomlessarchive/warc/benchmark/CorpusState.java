@@ -0,0 +1,47 @@
+package com.github.bottomlessarchive.warc.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Holds the synthetic corpus that is shared by the benchmarks. The corpus is also written to temporary files, so the
+ * file based readers can be measured too.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    @Param("2000")
+    public int pageCount;
+
+    @Param("16384")
+    public int averagePageSize;
+
+    public SyntheticCorpus corpus;
+    public Path uncompressedFile;
+    public Path compressedFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = new SyntheticCorpus(pageCount, averagePageSize);
+
+        uncompressedFile = Files.createTempFile("java-warc-benchmark-", ".warc");
+        Files.write(uncompressedFile, corpus.getUncompressed());
+
+        compressedFile = Files.createTempFile("java-warc-benchmark-", ".warc.gz");
+        Files.write(compressedFile, corpus.getCompressed());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(uncompressedFile);
+        Files.deleteIfExists(compressedFile);
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.bottomlessarchive.warc.benchmark;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.http.HttpParser;
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Measures the line and header parsing of the {@link HttpParser} on the HTTP head of a response.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+public class HttpParserBenchmark {
+
+    @Benchmark
+    public String readLine(final CorpusState state) throws IOException {
+        return HttpParser.readLine(new ByteArrayInputStream(state.corpus.getResponseBlock()),
+                WarcReader.DEFAULT_CHARSET);
+    }
+
+    @Benchmark
+    public Header[] parseHeaders(final CorpusState state) throws IOException, HttpException {
+        final InputStream inputStream = new ByteArrayInputStream(state.corpus.getResponseBlock());
+
+        // Skipping the status line
+        HttpParser.readRawLine(inputStream);
+
+        return HttpParser.parseHeaders(inputStream, WarcReader.DEFAULT_CHARSET);
+    }
+}
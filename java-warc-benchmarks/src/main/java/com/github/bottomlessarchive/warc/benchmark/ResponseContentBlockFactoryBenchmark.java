@@ -0,0 +1,34 @@
+package com.github.bottomlessarchive.warc.benchmark;
+
+import com.github.bottomlessarchive.warc.service.content.response.ResponseContentBlockFactory;
+import com.github.bottomlessarchive.warc.service.content.response.domain.ResponseContentBlock;
+import com.github.bottomlessarchive.warc.service.header.HeaderParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Measures the parsing of the HTTP message in the content block of a response record. The payload itself is not
+ * read.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+public class ResponseContentBlockFactoryBenchmark {
+
+    private static final ResponseContentBlockFactory RESPONSE_CONTENT_BLOCK_FACTORY =
+            new ResponseContentBlockFactory(new HeaderParser());
+
+    @Benchmark
+    public ResponseContentBlock newResponseContentBlock(final CorpusState state) throws IOException {
+        return RESPONSE_CONTENT_BLOCK_FACTORY.newResponseContentBlock(
+                new ByteArrayInputStream(state.corpus.getResponseBlock()));
+    }
+}
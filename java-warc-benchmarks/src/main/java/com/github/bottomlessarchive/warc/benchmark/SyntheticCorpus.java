@@ -0,0 +1,194 @@
+package com.github.bottomlessarchive.warc.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates a WARC file in memory that looks like the output of a web crawl: a warcinfo record, then a request and a
+ * response record for every crawled page and a metadata record for every tenth page. Every record is compressed
+ * into its own gzip member in the compressed version, like the crawlers do it. The content is generated from a
+ * fixed seed, so every run of the benchmarks gets the same corpus.
+ */
+public class SyntheticCorpus {
+
+    private static final long SEED = 42;
+    private static final String[] WORDS = {
+            "archive", "web", "record", "crawl", "page", "link", "content", "header", "payload", "digest",
+            "the", "of", "and", "a", "to", "in", "is", "for", "on", "with"
+    };
+
+    private final byte[] uncompressed;
+    private final byte[] compressed;
+    private final byte[] responseBlock;
+    private final byte[] responseRecord;
+    private final int recordCount;
+
+    /**
+     * Generate a new corpus.
+     *
+     * @param pageCount       the number of crawled pages
+     * @param averagePageSize the average size of the HTML pages in bytes
+     */
+    public SyntheticCorpus(final int pageCount, final int averagePageSize) {
+        final Random random = new Random(SEED);
+        final ByteArrayOutputStream uncompressedOutput = new ByteArrayOutputStream();
+        final ByteArrayOutputStream compressedOutput = new ByteArrayOutputStream();
+
+        int records = 0;
+        byte[] lastResponseBlock = null;
+        byte[] lastResponseRecord = null;
+
+        writeRecord(uncompressedOutput, compressedOutput, buildRecord("warcinfo", null,
+                "software: java-warc-benchmarks\r\nformat: WARC File Format 1.0\r\n".getBytes(StandardCharsets.US_ASCII)));
+        records++;
+
+        for (int i = 0; i < pageCount; i++) {
+            final String url = "http://www.example" + (i % 97) + ".com/page/" + i + "?q=" + random.nextInt(1000);
+
+            writeRecord(uncompressedOutput, compressedOutput, buildRecord("request", url, buildRequest(url)));
+            records++;
+
+            lastResponseBlock = buildResponse(random, averagePageSize);
+            lastResponseRecord = buildRecord("response", url, lastResponseBlock);
+            writeRecord(uncompressedOutput, compressedOutput, lastResponseRecord);
+            records++;
+
+            if (i % 10 == 0) {
+                writeRecord(uncompressedOutput, compressedOutput, buildRecord("metadata", url,
+                        ("via: " + url + "\r\nfetchTimeMs: " + random.nextInt(5000) + "\r\n")
+                                .getBytes(StandardCharsets.US_ASCII)));
+                records++;
+            }
+        }
+
+        this.uncompressed = uncompressedOutput.toByteArray();
+        this.compressed = compressedOutput.toByteArray();
+        this.responseBlock = lastResponseBlock;
+        this.responseRecord = lastResponseRecord;
+        this.recordCount = records;
+    }
+
+    /**
+     * Return the uncompressed WARC file.
+     *
+     * @return the uncompressed file
+     */
+    public byte[] getUncompressed() {
+        return uncompressed;
+    }
+
+    /**
+     * Return the compressed WARC file, with one gzip member per record.
+     *
+     * @return the compressed file
+     */
+    public byte[] getCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Return the content block of a response record. It is an HTTP response message with headers and an HTML body.
+     *
+     * @return the content block
+     */
+    public byte[] getResponseBlock() {
+        return responseBlock;
+    }
+
+    /**
+     * Return a complete response record, with its WARC headers, content block and the terminating empty lines.
+     *
+     * @return the response record
+     */
+    public byte[] getResponseRecord() {
+        return responseRecord;
+    }
+
+    /**
+     * Return the number of the records in the corpus.
+     *
+     * @return the number of the records
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    private static byte[] buildRequest(final String url) {
+        return ("GET " + url.substring(url.indexOf('/', 7)) + " HTTP/1.1\r\n"
+                + "Host: " + url.substring(7, url.indexOf('/', 7)) + "\r\n"
+                + "User-Agent: Mozilla/5.0 (compatible; java-warc-benchmarks/1.0)\r\n"
+                + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+                + "Accept-Encoding: gzip, deflate\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] buildResponse(final Random random, final int averagePageSize) {
+        final StringBuilder body = new StringBuilder("<html><head><title>Page</title></head><body><p>");
+        final int pageSize = averagePageSize / 2 + random.nextInt(averagePageSize + 1);
+        while (body.length() < pageSize) {
+            body.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(8) == 0 ? ".</p><p>" : " ");
+        }
+        body.append("</p></body></html>");
+
+        final byte[] bodyBytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        final byte[] head = ("HTTP/1.1 200 OK\r\n"
+                + "Date: Mon, 15 Oct 2018 08:02:48 GMT\r\n"
+                + "Server: Apache/2.4.29 (Ubuntu)\r\n"
+                + "Last-Modified: Sun, 14 Oct 2018 12:00:00 GMT\r\n"
+                + "Cache-Control: max-age=3600\r\n"
+                + "Content-Type: text/html; charset=UTF-8\r\n"
+                + "Content-Length: " + bodyBytes.length + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        return concat(head, bodyBytes);
+    }
+
+    private static byte[] buildRecord(final String type, final String url, final byte[] block) {
+        final StringBuilder header = new StringBuilder("WARC/1.0\r\n")
+                .append("WARC-Type: ").append(type).append("\r\n");
+        if (url != null) {
+            header.append("WARC-Target-URI: ").append(url).append("\r\n");
+        }
+        header.append("WARC-Date: 2018-10-15T08:02:48Z\r\n")
+                .append("WARC-Record-ID: <urn:uuid:").append(new UUID(block.length, url == null ? 0
+                        : url.hashCode())).append(">\r\n")
+                .append("WARC-IP-Address: 93.184.216.34\r\n")
+                .append("WARC-Block-Digest: sha1:UZY6ND6CCHXETFVJD2MSS7ZENMWF7KQ2\r\n")
+                .append("Content-Type: application/http; msgtype=").append(type).append("\r\n")
+                .append("Content-Length: ").append(block.length).append("\r\n\r\n");
+
+        return concat(concat(header.toString().getBytes(StandardCharsets.US_ASCII), block),
+                "\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeRecord(final ByteArrayOutputStream uncompressedOutput,
+            final ByteArrayOutputStream compressedOutput, final byte[] record) {
+        uncompressedOutput.writeBytes(record);
+
+        try (GZIPOutputStream member = new GZIPOutputStream(compressedOutput) {
+            @Override
+            public void close() throws IOException {
+                // Only the member is finished, the shared output stays open
+                finish();
+                def.end();
+            }
+        }) {
+            member.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compress the record!", e);
+        }
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        final byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+
+        return result;
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.bottomlessarchive.warc.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the records and the uncompressed megabytes processed by a benchmark. JMH reports them as records/s and
+ * MB/s next to the ops/s of the benchmark.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class ThroughputCounters {
+
+    public long records;
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        records = 0;
+        megabytes = 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.bottomlessarchive.warc.benchmark;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.WarcRecordCursor;
+import com.github.bottomlessarchive.warc.service.WarcRecordIterator;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Compares the iteration of the records with a {@link WarcRecordIterator} and with a {@link WarcRecordCursor}. The
+ * type and the target URI of every record are looked at, but the blocks are not read. Run it with the GC profiler,
+ * the gc.alloc.rate.norm metric divided by the record count of the corpus gives the allocated bytes per record.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+public class WarcRecordCursorBenchmark {
+
+    private static final WarcReaderConfiguration COMPRESSED = WarcReaderConfiguration.builder()
+            .build();
+    private static final WarcReaderConfiguration UNCOMPRESSED = WarcReaderConfiguration.builder()
+            .compressed(false)
+            .build();
+
+    @Benchmark
+    public void iterateUncompressed(final CorpusState state, final Blackhole blackhole) throws IOException {
+        iterate(state.uncompressedFile, UNCOMPRESSED, blackhole);
+    }
+
+    @Benchmark
+    public void iterateCompressed(final CorpusState state, final Blackhole blackhole) throws IOException {
+        iterate(state.compressedFile, COMPRESSED, blackhole);
+    }
+
+    @Benchmark
+    public void cursorUncompressed(final CorpusState state, final Blackhole blackhole) throws IOException {
+        cursor(state.uncompressedFile, UNCOMPRESSED, blackhole);
+    }
+
+    @Benchmark
+    public void cursorCompressed(final CorpusState state, final Blackhole blackhole) throws IOException {
+        cursor(state.compressedFile, COMPRESSED, blackhole);
+    }
+
+    private static void iterate(final Path file, final WarcReaderConfiguration configuration,
+            final Blackhole blackhole) throws IOException {
+        try (WarcReader warcReader = new WarcReader(file, configuration)) {
+            final WarcRecordIterator<WarcContentBlock> iterator = new WarcRecordIterator<>(warcReader);
+
+            while (iterator.hasNext()) {
+                final WarcRecord<WarcContentBlock> warcRecord = iterator.next();
+
+                blackhole.consume(warcRecord.getType());
+                blackhole.consume(warcRecord.getHeader("WARC-Target-URI"));
+            }
+        }
+    }
+
+    private static void cursor(final Path file, final WarcReaderConfiguration configuration,
+            final Blackhole blackhole) throws IOException {
+        try (WarcRecordCursor cursor = new WarcRecordCursor(new WarcReader(file, configuration))) {
+            while (cursor.advance()) {
+                blackhole.consume(cursor.getType());
+                blackhole.consume(cursor.getHeaders().indexOf("WARC-Target-URI"));
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.bottomlessarchive.warc.benchmark;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaderTokenizer;
+import com.github.bottomlessarchive.warc.service.io.StreamWarcInputBuffer;
+import com.github.bottomlessarchive.warc.service.record.WarcRecordFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Measures the creation of a response record from its WARC header block, including the parsing of the HTTP message
+ * in its content block.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Thread)
+public class WarcRecordFactoryBenchmark {
+
+    private final WarcRecordFactory warcRecordFactory = new WarcRecordFactory();
+    private final WarcHeaderTokenizer headerTokenizer = new WarcHeaderTokenizer(WarcReader.DEFAULT_CHARSET);
+
+    @Benchmark
+    public WarcContentBlock createWarcRecord(final CorpusState state) throws IOException {
+        final StreamWarcInputBuffer input = new StreamWarcInputBuffer(
+                new ByteArrayInputStream(state.corpus.getResponseRecord()));
+
+        headerTokenizer.tokenize(input);
+
+        final long blockLength = headerTokenizer.valueAsLong(headerTokenizer.indexOf("Content-Length"));
+
+        return warcRecordFactory.createWarcRecord(headerTokenizer, input.openBlock(blockLength), 0)
+                .getContentBlock();
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.bottomlessarchive.warc.benchmark;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.WarcRecordStreamFactory;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.content.response.domain.ResponseContentBlock;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the end-to-end reading of the whole corpus with {@link WarcRecordStreamFactory}. One operation is one
+ * pass over the corpus, the records/s and MB/s are reported by the {@link ThroughputCounters}.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class WarcRecordStreamBenchmark {
+
+    private static final double BYTES_IN_MEGABYTE = 1048576;
+
+    /**
+     * Where the corpus is read from: an in-memory stream or a local file, compressed or not.
+     */
+    @Param({"compressed-stream", "uncompressed-stream", "compressed-file", "uncompressed-file"})
+    public String source;
+
+    /**
+     * If true, the HTTP messages of the responses are parsed and their payloads are read, otherwise only the WARC
+     * headers are looked at.
+     */
+    @Param({"false", "true"})
+    public boolean readPayloads;
+
+    @Benchmark
+    public long streamOf(final CorpusState state, final ThroughputCounters counters) {
+        final byte[] buffer = new byte[8192];
+
+        try (Stream<WarcRecord<WarcContentBlock>> records = openStream(state)) {
+            final long checksum = records.mapToLong(warcRecord -> readRecord(warcRecord, buffer)).sum();
+
+            counters.records += state.corpus.getRecordCount();
+            counters.megabytes += state.corpus.getUncompressed().length / BYTES_IN_MEGABYTE;
+
+            return checksum;
+        }
+    }
+
+    private Stream<WarcRecord<WarcContentBlock>> openStream(final CorpusState state) {
+        switch (source) {
+            case "compressed-stream":
+                return WarcRecordStreamFactory.streamOf(new ByteArrayInputStream(state.corpus.getCompressed()),
+                        WarcReader.DEFAULT_CHARSET, true);
+            case "uncompressed-stream":
+                return WarcRecordStreamFactory.streamOf(new ByteArrayInputStream(state.corpus.getUncompressed()),
+                        WarcReader.DEFAULT_CHARSET, false);
+            case "compressed-file":
+                return WarcRecordStreamFactory.streamOf(state.compressedFile);
+            case "uncompressed-file":
+                return WarcRecordStreamFactory.streamOf(state.uncompressedFile);
+            default:
+                throw new IllegalArgumentException("Unknown source: " + source + "!");
+        }
+    }
+
+    private long readRecord(final WarcRecord<WarcContentBlock> warcRecord, final byte[] buffer) {
+        if (!readPayloads) {
+            return warcRecord.getHeader("WARC-Target-URI") != null ? 1 : 0;
+        }
+
+        if (!warcRecord.isResponse()) {
+            return 0;
+        }
+
+        try (InputStream payload = ((ResponseContentBlock) warcRecord.getContentBlock()).getPayload()) {
+            long length = 0;
+            int read;
+            while ((read = payload.read(buffer)) != -1) {
+                length += read;
+            }
+
+            return length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
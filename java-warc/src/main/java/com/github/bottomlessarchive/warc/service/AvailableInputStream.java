@@ -9,7 +9,11 @@ import java.util.zip.GZIPInputStream;
 /**
  * This class is a hack to bypass a bug in the {@link GZIPInputStream}. More info is available at
  * <a href="https://stackoverflow.com/questions/41400810/gzipinputstream-closes-prematurely-when-decompressing-httpinputstream">here</a>.
+ *
+ * @deprecated the readers use {@link com.github.bottomlessarchive.warc.service.io.GzipMemberInputStream} that
+ * doesn't depend on {@link InputStream#available()}, so this workaround is not needed anymore
  */
+@Deprecated
 @RequiredArgsConstructor
 public class AvailableInputStream extends InputStream {
 
@@ -9,6 +9,12 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
+/**
+ * An iterator over the records of a {@link WarcReader} that skips the malformed records. After a record fails to
+ * parse, the reader is moved to the start of the next record with {@link WarcReader#resynchronize()}, so the
+ * iteration continues with the first record after the malformed data. The iteration ends when the data source
+ * itself can't be read anymore.
+ */
 @Slf4j
 @RequiredArgsConstructor
 public class SafeWarcRecordIterator implements Iterator<WarcRecord<WarcContentBlock>> {
@@ -46,15 +52,30 @@ public class SafeWarcRecordIterator implements Iterator<WarcRecord<WarcContentBl
     private void preloadNextRecord() {
         preloadDone = true;
 
-        try {
-            final Optional<WarcRecord<WarcContentBlock>> warcRecord = warcReader.readRecord();
+        while (true) {
+            try {
+                final Optional<WarcRecord<WarcContentBlock>> warcRecord = warcReader.readRecord();
 
-            hasNextValue = warcRecord.isPresent();
-            nextValue = warcRecord.orElse(null);
-        } catch (WarcParsingException | WarcFormatException e) {
-            log.debug("Failed to parse the next record! Skipping it!", e);
+                hasNextValue = warcRecord.isPresent();
+                nextValue = warcRecord.orElse(null);
 
-            preloadNextRecord();
+                return;
+            } catch (WarcParsingException | WarcFormatException e) {
+                log.debug("Failed to parse the next record! Skipping it!", e);
+
+                warcReader.reportMalformedRecord(e);
+            }
+
+            try {
+                warcReader.resynchronize();
+            } catch (WarcParsingException e) {
+                log.debug("Failed to find the next record! Ending the iteration!", e);
+
+                hasNextValue = false;
+                nextValue = null;
+
+                return;
+            }
         }
     }
 }
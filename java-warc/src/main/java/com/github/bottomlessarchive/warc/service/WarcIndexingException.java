@@ -0,0 +1,12 @@
+package com.github.bottomlessarchive.warc.service;
+
+public class WarcIndexingException extends RuntimeException {
+
+    public WarcIndexingException(final String message) {
+        super(message);
+    }
+
+    public WarcIndexingException(final String message, final Throwable e) {
+        super(message, e);
+    }
+}
@@ -1,39 +1,91 @@
 package com.github.bottomlessarchive.warc.service;
 
 import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
-import com.github.bottomlessarchive.warc.service.http.HttpParser;
+import com.github.bottomlessarchive.warc.service.content.response.ResponseFilter;
+import com.github.bottomlessarchive.warc.service.content.response.ResponseFilterEvaluator;
+import com.github.bottomlessarchive.warc.service.digest.DigestingInputStream;
+import com.github.bottomlessarchive.warc.service.digest.WarcDigestVerifier;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaderTokenizer;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaders;
+import com.github.bottomlessarchive.warc.service.io.GzipMemberInputStream;
+import com.github.bottomlessarchive.warc.service.io.LineMarker;
+import com.github.bottomlessarchive.warc.service.io.MappedWarcInputBuffer;
+import com.github.bottomlessarchive.warc.service.io.ReadAheadInputStream;
+import com.github.bottomlessarchive.warc.service.io.StreamWarcInputBuffer;
+import com.github.bottomlessarchive.warc.service.io.WarcInputBuffer;
+import com.github.bottomlessarchive.warc.service.metrics.WarcReaderListener;
+import com.github.bottomlessarchive.warc.service.metrics.WarcReaderStage;
+import com.github.bottomlessarchive.warc.service.payload.PayloadBufferPool;
 import com.github.bottomlessarchive.warc.service.record.WarcRecordFactory;
 import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+import com.github.bottomlessarchive.warc.service.surt.SurtPrefixMatcher;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
-import java.util.zip.GZIPInputStream;
-import org.apache.commons.io.input.BoundedInputStream;
-import org.apache.http.HttpException;
-import org.apache.http.message.HeaderGroup;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * This class provides basic functions to read and parse a WARC file. Providing a compressed or an
  * uncompressed stream of WARC file, WarcReader reads WARC records and parses them to {@link
  * WarcRecord} objects.
  */
-public class WarcReader {
+public class WarcReader implements Closeable {
 
     /**
      * The default {@link Charset} used by the parser when no other {@link Charset} is provided.
      */
     public static final Charset DEFAULT_CHARSET = StandardCharsets.ISO_8859_1;
 
+    private static final int URL_BUFFER_SIZE = 2048;
+    private static final LineMarker RECORD_START = new LineMarker("WARC/1.".getBytes(StandardCharsets.US_ASCII));
+
     private final WarcRecordFactory warcRecordFactory = new WarcRecordFactory();
 
-    private final InputStream input;
-    private final Charset charset;
+    private final WarcInputBuffer input;
+    private final WarcHeaderTokenizer headerTokenizer;
+
+    private final Set<WarcRecordType> recordTypes;
+    private final Predicate<WarcHeaders> headerFilter;
+    private final ResponseFilter responseFilter;
+    private final ResponseFilterEvaluator responseFilterEvaluator;
+    private final SurtPrefixMatcher urlMatcher;
+    private final WarcReaderListener listener;
+    private final WarcDigestVerifier digestVerifier;
+    private final PayloadBufferPool payloadBufferPool;
+
+    private long endOffset = Long.MAX_VALUE;
+    private boolean ended;
+    private boolean hasOpenRecord;
+    private long currentRecordGeneration;
+    private WarcRecord<WarcContentBlock> lastRecord;
+    private DigestingInputStream lastRecordDigests;
+    private byte[] urlBuffer;
+    private long parsedRecordOffset = -1;
+
+    // The record found by the last call of nextAcceptedRecord
+    private WarcRecordType acceptedRecordType;
+    private WarcHeaders acceptedRecordHeaders;
+    private long acceptedRecordCompressedOffset;
+    private long acceptedRecordBlockLength;
+    private long firstParsedRecordCompressedOffset = -1;
 
-    private BoundedInputStream lastRecordStream;
+    // The last read record, that is not yet reported to the listener
+    private WarcRecordType pendingRecordType;
+    private long pendingRecordOffset;
+    private long pendingRecordCompressedOffset;
 
     /**
      * Create a new {@link WarcReader} and set the file on the provided {@link URL} location as the
@@ -78,8 +130,38 @@ public class WarcReader {
      * @param compressed           true if the input stream is compressed, false otherwise
      */
     public WarcReader(final URLConnection datasourceConnection, final Charset charset, final boolean compressed) {
-        this(compressed ? new AvailableInputStream(openConnection(datasourceConnection))
-            : openConnection(datasourceConnection), charset, compressed);
+        this(openConnection(datasourceConnection), charset, compressed);
+    }
+
+    /**
+     * Create a new {@link WarcReader} and set the file on the provided {@link Path} as the data source. Uncompressed
+     * files are read through a memory mapping of the file, so the payloads of the records are not copied until they
+     * are actually read, and skipping them is free.
+     *
+     * @param datasourceLocation the location of the data source to back this reader
+     * @param charset            character set for the parser
+     * @param compressed         true if the file is compressed, false otherwise
+     */
+    public WarcReader(final Path datasourceLocation, final Charset charset, final boolean compressed) {
+        this(datasourceLocation, charset, compressed, 0);
+    }
+
+    /**
+     * Create a new {@link WarcReader} and set the file on the provided {@link Path} as the data source. The reading
+     * starts at the provided offset, that should be the start of a record, or the start of a gzip member for
+     * compressed files. The offsets of the returned records are relative to the start of the file.
+     *
+     * @param datasourceLocation the location of the data source to back this reader
+     * @param charset            character set for the parser
+     * @param compressed         true if the file is compressed, false otherwise
+     * @param startOffset        the offset to start the reading at
+     */
+    public WarcReader(final Path datasourceLocation, final Charset charset, final boolean compressed,
+        final long startOffset) {
+        this(datasourceLocation, WarcReaderConfiguration.builder()
+            .charset(charset)
+            .compressed(compressed)
+            .build(), startOffset);
     }
 
     /**
@@ -109,17 +191,90 @@ public class WarcReader {
      * @param compressed true if the input stream is compressed, false otherwise
      */
     public WarcReader(final InputStream datasource, final Charset charset, boolean compressed) {
-        if (compressed) {
-            try {
-                input = new GZIPInputStream(datasource);
-            } catch (IOException e) {
-                throw new WarcNetworkException("Unable to open WARC input stream!", e);
-            }
-        } else {
-            input = datasource;
-        }
+        this(datasource, WarcReaderConfiguration.builder()
+            .charset(charset)
+            .compressed(compressed)
+            .build());
+    }
 
-        this.charset = charset;
+    /**
+     * Create a new {@link WarcReader} and set the provided stream as the data source.
+     *
+     * @param datasource    the data source to back this reader
+     * @param configuration the configuration of the reader
+     */
+    public WarcReader(final InputStream datasource, final WarcReaderConfiguration configuration) {
+        this(openStream(datasource, configuration), configuration);
+    }
+
+    /**
+     * Create a new {@link WarcReader} and set the provided stream as the data source. The stream starts at the
+     * provided offset of the WARC file, that should be the start of a record, or the start of a gzip member for
+     * compressed files. The offsets of the returned records are relative to the start of the file.
+     *
+     * @param datasource    the data source to back this reader
+     * @param configuration the configuration of the reader
+     * @param startOffset   the offset of the first byte of the stream in the WARC file
+     */
+    public WarcReader(final InputStream datasource, final WarcReaderConfiguration configuration,
+        final long startOffset) {
+        this(openStream(datasource, configuration, startOffset), configuration);
+    }
+
+    /**
+     * Create a new {@link WarcReader} and set the file on the provided {@link Path} as the data source.
+     *
+     * @param datasourceLocation the location of the data source to back this reader
+     * @param configuration      the configuration of the reader
+     */
+    public WarcReader(final Path datasourceLocation, final WarcReaderConfiguration configuration) {
+        this(datasourceLocation, configuration, 0);
+    }
+
+    /**
+     * Create a new {@link WarcReader} and set the file on the provided {@link Path} as the data source. The reading
+     * starts at the provided offset, that should be the start of a record, or the start of a gzip member for
+     * compressed files.
+     *
+     * @param datasourceLocation the location of the data source to back this reader
+     * @param configuration      the configuration of the reader
+     * @param startOffset        the offset to start the reading at
+     */
+    public WarcReader(final Path datasourceLocation, final WarcReaderConfiguration configuration,
+        final long startOffset) {
+        this(datasourceLocation, configuration, startOffset, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a new {@link WarcReader} that reads the records of a range of the file on the provided {@link Path}.
+     * The reading starts at the provided start offset, that should be the start of a record, or the start of a
+     * gzip member for compressed files. The reader ends at the first record that starts at or after the end
+     * offset.
+     *
+     * @param datasourceLocation the location of the data source to back this reader
+     * @param configuration      the configuration of the reader
+     * @param startOffset        the offset to start the reading at
+     * @param endOffset          the offset where the reading ends
+     */
+    public WarcReader(final Path datasourceLocation, final WarcReaderConfiguration configuration,
+        final long startOffset, final long endOffset) {
+        this(openFile(datasourceLocation, configuration, startOffset), configuration);
+
+        this.endOffset = endOffset;
+    }
+
+    WarcReader(final WarcInputBuffer input, final WarcReaderConfiguration configuration) {
+        this.input = input;
+        this.headerTokenizer = new WarcHeaderTokenizer(configuration.getCharset());
+        this.recordTypes = configuration.getRecordTypes();
+        this.headerFilter = configuration.getHeaderFilter();
+        this.responseFilter = configuration.getResponseFilter();
+        this.responseFilterEvaluator = responseFilter != null ? new ResponseFilterEvaluator() : null;
+        this.urlMatcher = configuration.getUrlFilter() != null ? configuration.getUrlFilter().matcher() : null;
+        this.listener = configuration.getListener();
+        this.digestVerifier = configuration.isVerifyDigests()
+            ? new WarcDigestVerifier(configuration.getDigestExecutor(), configuration.getListener()) : null;
+        this.payloadBufferPool = configuration.getPayloadBufferPool();
     }
 
     /**
@@ -128,25 +283,16 @@ public class WarcReader {
      *
      * @return the freshly read WARC record
      */
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     public Optional<WarcRecord<WarcContentBlock>> readRecord() {
-        if (lastRecordStream != null) {
-            try {
-                lastRecordStream.skip(Long.MAX_VALUE);
-
-                HttpParser.readLine(input, charset);
-                HttpParser.readLine(input, charset);
-            } catch (IOException e) {
-                throw new WarcParsingException("Unable to parse the next WARC record!", e);
-            }
-        }
+        skipOpenRecord();
 
         return parse();
     }
 
     /**
      * This method based on the WARC format specification parses a WARC record and creates a {@link
-     * WarcRecord} object.
+     * WarcRecord} object. The records that are not accepted by the record type and header filters of the
+     * reader are skipped without parsing their content blocks.
      * <p>
      * This function throws a {@link WarcFormatException} if the structure of an input file is
      * invalid. Explanation for parsing error is provided in the message of the exception.
@@ -155,34 +301,444 @@ public class WarcReader {
      * @throws WarcFormatException when unable to parse the next record
      */
     protected Optional<WarcRecord<WarcContentBlock>> parse() {
-        WarcRecord<WarcContentBlock> record;
-        String protocol;
+        if (!nextAcceptedRecord(true)) {
+            return Optional.empty();
+        }
+
+        final WarcRecordType type = acceptedRecordType;
+        final WarcHeaders headers = acceptedRecordHeaders;
+        final long compressedOffset = acceptedRecordCompressedOffset;
+
         try {
-            protocol = HttpParser.readLine(input, charset);
-        } catch (IOException e1) {
-            throw new WarcFormatException("Illegal warc format");
+            final InputStream recordStream = input.openBlock(acceptedRecordBlockLength);
+            hasOpenRecord = true;
+
+            final DigestingInputStream digestingStream = digestVerifier != null
+                ? digestVerifier.open(type, headers, recordStream) : null;
+            lastRecordDigests = digestingStream;
+
+            final InputStream blockStream = digestingStream != null ? digestingStream : recordStream;
+            final Supplier<WarcContentBlock> contentBlockSupplier;
+            if (payloadBufferPool != null) {
+                // The payload is copied before the reader moves on, so the record stays readable after that
+                contentBlockSupplier = createBufferedContentBlock(type, headers, blockStream,
+                    acceptedRecordBlockLength);
+            } else {
+                final long recordGeneration = currentRecordGeneration;
+                contentBlockSupplier = () -> createContentBlock(type, headers, blockStream, recordGeneration);
+            }
+
+            lastRecord = warcRecordFactory.createWarcRecord(type, headers, contentBlockSupplier, compressedOffset,
+                digestingStream != null ? digestingStream.getVerification() : null);
+
+            return Optional.of(lastRecord);
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to open the block of the WARC record!", e);
         }
-        if (protocol == null) {
-            return Optional.empty();
+    }
+
+    /**
+     * Parse the header blocks until the next record that is accepted by the filters of the reader. The records that
+     * are not accepted are skipped. The accepted record is left with its block unread, and its headers are left in
+     * the header tokenizer.
+     *
+     * @param keepHeaders true if the headers of the accepted record should be copied to a {@link WarcHeaders},
+     *                    otherwise they are only detached from the buffer in the tokenizer
+     * @return true if an accepted record was found, false if the reader reached its end
+     * @throws WarcFormatException when unable to parse the next record
+     */
+    boolean nextAcceptedRecord(final boolean keepHeaders) {
+        firstParsedRecordCompressedOffset = -1;
+
+        while (!ended) {
+            final long recordOffset = input.offset();
+            parsedRecordOffset = recordOffset;
+            final long parsingStart = listener != null ? System.nanoTime() : 0;
+
+            try {
+                if (!headerTokenizer.tokenize(input)) {
+                    final long compressedOffset = input.sourceOffsetOf(input.offset());
+                    markFirstParsedRecord(compressedOffset);
+                    completeLastRecord(compressedOffset);
+                    reportLastRecord(input.offset(), compressedOffset);
+                    ended = true;
+
+                    return false;
+                }
+            } catch (IOException e) {
+                throw new WarcFormatException("Illegal warc format", e);
+            }
+
+            final long compressedOffset = input.sourceOffsetOf(recordOffset);
+            markFirstParsedRecord(compressedOffset);
+            completeLastRecord(compressedOffset);
+            reportLastRecord(recordOffset, compressedOffset);
+
+            if (compressedOffset >= endOffset) {
+                ended = true;
+
+                return false;
+            }
+
+            final int contentLengthIndex = headerTokenizer.indexOf("Content-Length");
+            if (contentLengthIndex < 0) {
+                throw new WarcFormatException("Warc Content-Length is missing");
+            }
+
+            final WarcRecordType type = warcRecordFactory.parseType(headerTokenizer);
+            final boolean httpBlock = responseFilter != null && type == WarcRecordType.RESPONSE && isHttpBlock();
+            final boolean typeAccepted = recordTypes.contains(type) && (urlMatcher == null || isTargetUriAccepted());
+
+            // The headers are copied before the response filter looks into the block, that could move the buffer
+            WarcHeaders headers = null;
+            if (typeAccepted && (keepHeaders || headerFilter != null)) {
+                headers = headerTokenizer.headers();
+            } else if (typeAccepted) {
+                headerTokenizer.detach();
+            }
+
+            if (listener != null) {
+                listener.stageCompleted(WarcReaderStage.HEADER_PARSING, System.nanoTime() - parsingStart);
+
+                pendingRecordType = type;
+                pendingRecordOffset = recordOffset;
+                pendingRecordCompressedOffset = compressedOffset;
+            }
+
+            try {
+                final long payloadSize = headerTokenizer.valueAsLong(contentLengthIndex);
+
+                // The response filter looks into the block before it is opened, while it is still in the buffer
+                final boolean accepted = typeAccepted && (headerFilter == null || headerFilter.test(headers))
+                    && (responseFilter == null || type != WarcRecordType.RESPONSE
+                    || responseFilterEvaluator.accept(input, payloadSize, httpBlock, responseFilter));
+
+                if (!accepted) {
+                    if (listener != null) {
+                        listener.recordSkipped(type);
+                    }
+
+                    skipBlock(payloadSize);
+
+                    continue;
+                }
+
+                acceptedRecordType = type;
+                acceptedRecordHeaders = headers;
+                acceptedRecordCompressedOffset = compressedOffset;
+                acceptedRecordBlockLength = payloadSize;
+
+                return true;
+            } catch (NumberFormatException e) {
+                throw new WarcFormatException("Cannot parse warc Content-Length");
+            } catch (IOException e) {
+                throw new WarcParsingException("Unable to read the block of the WARC record!", e);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Skip a block that was not opened, and the empty lines after it.
+     *
+     * @param length the length of the block
+     * @throws WarcParsingException when unable to read the data source
+     */
+    void skipBlock(final long length) {
+        final long start = listener != null ? System.nanoTime() : 0;
+
+        try {
+            input.skipFully(length);
+
+            skipLine();
+            skipLine();
+
+            if (listener != null) {
+                listener.stageCompleted(WarcReaderStage.PAYLOAD_SKIPPING, System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to parse the next WARC record!", e);
+        }
+    }
+
+    WarcInputBuffer input() {
+        return input;
+    }
+
+    WarcHeaderTokenizer headerTokenizer() {
+        return headerTokenizer;
+    }
+
+    WarcRecordType acceptedRecordType() {
+        return acceptedRecordType;
+    }
+
+    long acceptedRecordCompressedOffset() {
+        return acceptedRecordCompressedOffset;
+    }
+
+    long acceptedRecordBlockLength() {
+        return acceptedRecordBlockLength;
+    }
+
+    /**
+     * Return the offset in the data source of the first record that was parsed by the last call of
+     * {@link #nextAcceptedRecord(boolean)}, even if it was skipped, or the offset of the end of the data source when
+     * no record was left. It is the offset where the previously accepted record ends.
+     *
+     * @return the offset of the first parsed record or -1 if nothing was parsed
+     */
+    long firstParsedRecordCompressedOffset() {
+        return firstParsedRecordCompressedOffset;
+    }
+
+    /**
+     * Close the data source of the reader.
+     *
+     * @throws IOException when an error happens while closing the data source
+     */
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Report a malformed record, that was skipped by the caller, to the listener of the reader.
+     *
+     * @param exception the error that happened while parsing the record
+     */
+    void reportMalformedRecord(final RuntimeException exception) {
+        if (listener != null) {
+            listener.recordMalformed(exception);
         }
-        if (!protocol.toLowerCase().startsWith("warc/")) {
-            throw new WarcFormatException("Warc version is missing");
+    }
+
+    /**
+     * Skip the data until the start of the next record, after the reader failed to parse a record. The next record
+     * is found by its version line, that starts with "WARC/1.". When the reader is still at the start of the
+     * malformed record, at least one byte is skipped, so the same record is not found again.
+     *
+     * @return the number of the skipped bytes
+     * @throws WarcParsingException when unable to read the data source
+     */
+    public long resynchronize() {
+        hasOpenRecord = false;
+        currentRecordGeneration++;
+        lastRecord = null;
+        lastRecordDigests = null;
+        pendingRecordType = null;
+
+        try {
+            long skipped = 0;
+            if (input.offset() == parsedRecordOffset && input.read() >= 0) {
+                skipped++;
+            }
+
+            skipped += input.skipTo(RECORD_START);
+
+            if (listener != null) {
+                listener.corruptDataSkipped(skipped, false);
+            }
+
+            return skipped;
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to find the next WARC record!", e);
         }
-        HeaderGroup headers = new HeaderGroup();
+    }
+
+    private WarcContentBlock createContentBlock(final WarcRecordType type, final WarcHeaders headers,
+        final InputStream recordStream, final long recordGeneration) {
+        if (recordGeneration != currentRecordGeneration) {
+            throw new IllegalStateException("The content block of a WARC record can't be created after the reader "
+                + "moved to the next record!");
+        }
+
+        if (listener == null) {
+            return warcRecordFactory.createContentBlock(type, headers, recordStream);
+        }
+
+        final long start = System.nanoTime();
+        final WarcContentBlock contentBlock = warcRecordFactory.createContentBlock(type, headers, recordStream);
+        listener.stageCompleted(WarcReaderStage.CONTENT_BLOCK_PARSING, System.nanoTime() - start);
+
+        return contentBlock;
+    }
+
+    private Supplier<WarcContentBlock> createBufferedContentBlock(final WarcRecordType type,
+        final WarcHeaders headers, final InputStream recordStream, final long blockLength) {
+        final long start = listener != null ? System.nanoTime() : 0;
+
+        final WarcContentBlock contentBlock;
         try {
-            headers.setHeaders(HttpParser.parseHeaders(input, charset));
-        } catch (IOException | HttpException e) {
-            throw new WarcFormatException("Cannot parse warc headers");
+            contentBlock = warcRecordFactory.bufferPayload(
+                warcRecordFactory.createContentBlock(type, headers, recordStream), blockLength, payloadBufferPool);
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to buffer the payload of the WARC record!", e);
+        } catch (WarcFormatException e) {
+            // The error is raised when the content block is requested, just like when it is created lazily
+            return () -> {
+                throw e;
+            };
+        }
+
+        if (listener != null) {
+            listener.stageCompleted(WarcReaderStage.CONTENT_BLOCK_PARSING, System.nanoTime() - start);
+        }
+
+        return () -> contentBlock;
+    }
+
+    private void skipOpenRecord() {
+        if (!hasOpenRecord) {
+            return;
         }
+
+        hasOpenRecord = false;
+        currentRecordGeneration++;
+
+        final long start = listener != null ? System.nanoTime() : 0;
+
         try {
-            long payloadSize = Long.parseLong(headers.getFirstHeader("Content-Length").getValue());
-            lastRecordStream = new BoundedInputStream(input, payloadSize);
+            if (lastRecordDigests != null) {
+                // The rest of the block is read through the digests, instead of skipping it
+                final DigestingInputStream digestingStream = lastRecordDigests;
+                lastRecordDigests = null;
+
+                digestingStream.finish();
+            }
+
+            input.skipBlock();
+
+            skipLine();
+            skipLine();
+
+            if (listener != null) {
+                listener.stageCompleted(WarcReaderStage.PAYLOAD_SKIPPING, System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to parse the next WARC record!", e);
+        }
+    }
+
+    private void markFirstParsedRecord(final long compressedOffset) {
+        if (firstParsedRecordCompressedOffset == -1) {
+            firstParsedRecordCompressedOffset = compressedOffset;
+        }
+    }
+
+    private void completeLastRecord(final long nextRecordOffset) {
+        if (lastRecord != null) {
+            lastRecord.setCompressedLength(nextRecordOffset - lastRecord.getCompressedOffset());
+            lastRecord = null;
+        }
+    }
+
+    private void reportLastRecord(final long nextRecordOffset, final long nextRecordCompressedOffset) {
+        if (pendingRecordType != null) {
+            listener.recordRead(pendingRecordType, nextRecordCompressedOffset - pendingRecordCompressedOffset,
+                nextRecordOffset - pendingRecordOffset);
+            pendingRecordType = null;
+        }
+    }
+
+    /**
+     * Check if the Content-Type header of the record in the header tokenizer declares an HTTP message.
+     *
+     * @return true if the block of the record is an HTTP message
+     */
+    boolean isHttpBlock() {
+        final int contentTypeIndex = headerTokenizer.indexOf("Content-Type");
+
+        return contentTypeIndex >= 0 && headerTokenizer.valueStartsWithIgnoreCase(contentTypeIndex, "application/http");
+    }
+
+    private boolean isTargetUriAccepted() {
+        final int targetUriIndex = headerTokenizer.indexOf("WARC-Target-URI");
+        if (targetUriIndex < 0) {
+            return false;
+        }
+
+        if (urlBuffer == null) {
+            urlBuffer = new byte[URL_BUFFER_SIZE];
+        }
+
+        int length = headerTokenizer.copyValue(targetUriIndex, urlBuffer);
+        if (length > urlBuffer.length) {
+            urlBuffer = new byte[length];
+            length = headerTokenizer.copyValue(targetUriIndex, urlBuffer);
+        }
+
+        return urlMatcher.matches(urlBuffer, 0, length);
+    }
+
+    private void skipLine() throws IOException {
+        final int lineEnd = input.lineEnd(0);
+
+        if (lineEnd > 0) {
+            input.consume(lineEnd);
+        }
+    }
+
+    private static WarcInputBuffer openStream(final InputStream datasource,
+        final WarcReaderConfiguration configuration) {
+        return openStream(datasource, configuration, 0);
+    }
+
+    private static WarcInputBuffer openStream(final InputStream datasource,
+        final WarcReaderConfiguration configuration, final long startOffset) {
+        if (!configuration.isCompressed()) {
+            return new StreamWarcInputBuffer(readAhead(datasource, configuration),
+                StreamWarcInputBuffer.DEFAULT_BUFFER_SIZE, startOffset);
+        }
+
+        final GzipMemberInputStream compressedSource = new GzipMemberInputStream(datasource,
+            GzipMemberInputStream.DEFAULT_BUFFER_SIZE, startOffset, configuration.getListener(),
+            configuration.isRecoverMalformedData());
+
+        return new StreamWarcInputBuffer(readAhead(compressedSource, configuration), compressedSource,
+            StreamWarcInputBuffer.DEFAULT_BUFFER_SIZE);
+    }
+
+    private static InputStream readAhead(final InputStream source, final WarcReaderConfiguration configuration) {
+        if (!configuration.isReadAhead()) {
+            return source;
+        }
+
+        return new ReadAheadInputStream(source, configuration.getReadAheadDepth(),
+            configuration.getReadAheadBufferSize());
+    }
+
+    private static WarcInputBuffer openFile(final Path datasourceLocation,
+        final WarcReaderConfiguration configuration, final long startOffset) {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(datasourceLocation, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new WarcNetworkException("Unable to open WARC file: " + datasourceLocation + "!", e);
+        }
+
+        try {
+            if (configuration.isCompressed()) {
+                return openStream(Channels.newInputStream(channel.position(startOffset)), configuration,
+                    startOffset);
+            }
+
+            return new MappedWarcInputBuffer(channel, MappedWarcInputBuffer.DEFAULT_WINDOW_SIZE, startOffset);
+        } catch (IOException | RuntimeException e) {
+            // The channel is not owned by any buffer yet, so it would never be closed
+            try {
+                channel.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
 
-            record = warcRecordFactory.createWarcRecord(headers, lastRecordStream);
-        } catch (NumberFormatException e) {
-            throw new WarcFormatException("Cannot parse warc Content-Length");
+            throw new WarcNetworkException("Unable to open WARC file: " + datasourceLocation + "!", e);
         }
-        return Optional.of(record);
     }
 
     private static URLConnection buildConnection(final URL datasourceLocation) {
@@ -0,0 +1,272 @@
+package com.github.bottomlessarchive.warc.service;
+
+import com.github.bottomlessarchive.warc.service.content.response.ResponseFilter;
+import com.github.bottomlessarchive.warc.service.content.response.ResponseFilterEvaluator;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaderTokenizer;
+import com.github.bottomlessarchive.warc.service.io.WarcInputBuffer;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A reusable view over the records of a {@link WarcReader}. Unlike the {@link WarcRecordIterator}, it doesn't create
+ * a {@link com.github.bottomlessarchive.warc.service.record.domain.WarcRecord} for every record. Every call to
+ * {@link #advance()} moves the same view to the next record, and the headers and the block of the record are read
+ * directly from the buffers of the reader. Once the buffers are big enough for the records of the file, nothing is
+ * allocated while iterating, unless a header is requested as a {@link String}.
+ * <p>
+ * The headers and the block of a record are valid only until the next call to {@link #advance()}. The block is the
+ * raw content block of the record, for example the HTTP message of a response record, it is not parsed.
+ * <p>
+ * The record type, URL and response filters of the reader are applied, a header filter works too, but it needs the
+ * headers of every record as a {@link java.util.Map}. The digests of the records are not verified by the cursor. A
+ * cursor is not thread safe, and the reader should not be used directly while a cursor is reading it.
+ */
+public class WarcRecordCursor implements Closeable {
+
+    private final WarcReader warcReader;
+    private final WarcInputBuffer input;
+    private final WarcHeaderTokenizer headers;
+    private final BlockInputStream block = new BlockInputStream();
+
+    private ResponseFilterEvaluator httpHeadScanner;
+    private boolean positioned;
+    private long previousCompressedLength = -1;
+
+    /**
+     * Create a new cursor on the provided reader. The cursor is positioned before the first record.
+     *
+     * @param warcReader the reader to read the records from
+     */
+    public WarcRecordCursor(final WarcReader warcReader) {
+        this.warcReader = warcReader;
+        this.input = warcReader.input();
+        this.headers = warcReader.headerTokenizer();
+    }
+
+    /**
+     * Move the cursor to the next record. The unread part of the block of the current record is skipped.
+     *
+     * @return true if the cursor is on a record, false if there are no more records
+     * @throws WarcFormatException  when unable to parse the next record
+     * @throws WarcParsingException when unable to read the data source
+     */
+    public boolean advance() {
+        long previousCompressedOffset = -1;
+        if (positioned) {
+            positioned = false;
+            previousCompressedOffset = warcReader.acceptedRecordCompressedOffset();
+
+            warcReader.skipBlock(block.remaining);
+            block.remaining = 0;
+        }
+
+        final boolean found = warcReader.nextAcceptedRecord(false);
+
+        final long previousCompressedEnd = warcReader.firstParsedRecordCompressedOffset();
+        previousCompressedLength = previousCompressedOffset >= 0 && previousCompressedEnd >= 0
+                ? previousCompressedEnd - previousCompressedOffset : -1;
+
+        if (!found) {
+            return false;
+        }
+
+        positioned = true;
+        block.remaining = warcReader.acceptedRecordBlockLength();
+
+        return true;
+    }
+
+    /**
+     * Return the type of the current record.
+     *
+     * @return the type of the record
+     */
+    public WarcRecordType getType() {
+        ensurePositioned();
+
+        return warcReader.acceptedRecordType();
+    }
+
+    /**
+     * Return the offset of the current record in the data source. For compressed data sources it is the offset of
+     * the gzip member that contains the record.
+     *
+     * @return the offset of the record
+     */
+    public long getCompressedOffset() {
+        ensurePositioned();
+
+        return warcReader.acceptedRecordCompressedOffset();
+    }
+
+    /**
+     * Return the length in the data source of the record that the cursor was on before the last call to
+     * {@link #advance()}. It is the distance between the offset of that record and the offset of the record after
+     * it, even when the record after it was skipped by the filters of the reader. For compressed data sources it is
+     * the distance between the gzip members that contain the two records, so it is 0 when they are in the same
+     * member.
+     *
+     * @return the length of the previous record or -1 if the cursor was not on a record before
+     */
+    public long getPreviousCompressedLength() {
+        return previousCompressedLength;
+    }
+
+    /**
+     * Return the length of the content block of the current record, as it is set in its Content-Length header.
+     *
+     * @return the length of the content block
+     */
+    public long getContentLength() {
+        ensurePositioned();
+
+        return warcReader.acceptedRecordBlockLength();
+    }
+
+    /**
+     * Return the WARC headers of the current record. The headers are tokenized in place, the names and values are
+     * decoded only when they are requested as a {@link String}.
+     *
+     * @return the headers of the record
+     */
+    public WarcHeaderTokenizer getHeaders() {
+        ensurePositioned();
+
+        return headers;
+    }
+
+    /**
+     * Return the value of the first header of the current record with the provided name. The value is decoded to a
+     * new {@link String}, use {@link #getHeaders()} to look at the headers without allocating.
+     *
+     * @param name the name of the header
+     * @return the value of the header or null if the record has no such header
+     */
+    public String getHeader(final String name) {
+        ensurePositioned();
+
+        final int index = headers.indexOf(name);
+
+        return index >= 0 ? headers.value(index) : null;
+    }
+
+    /**
+     * Return the content block of the current record. The same stream is returned for every record, it reads the
+     * block directly from the buffer of the reader. Closing it doesn't close the reader.
+     *
+     * @return the stream of the content block
+     */
+    public InputStream getBlock() {
+        ensurePositioned();
+
+        return block;
+    }
+
+    /**
+     * Evaluate a response filter on the HTTP message in the content block of the current record, with the same
+     * scanner that evaluates the response filters of the readers. Only the status line and the Content-Type header
+     * are scanned in the buffer of the reader, the block is not consumed and its HTTP message is not parsed, so a
+     * malformed message is not an error. The filter gets -1 as the status code when the Content-Type of the record
+     * is not "application/http" or the status line is not valid. It works for every record type, for example on
+     * the HTTP headers that are stored in the revisit records.
+     *
+     * @param filter the filter to evaluate
+     * @return the result of the filter
+     * @throws IllegalStateException when the block of the record was already read
+     * @throws WarcParsingException  when unable to read the data source
+     */
+    public boolean testHttpHead(final ResponseFilter filter) {
+        ensurePositioned();
+
+        if (block.remaining != warcReader.acceptedRecordBlockLength()) {
+            throw new IllegalStateException("The HTTP message can't be scanned after the block was read!");
+        }
+
+        if (httpHeadScanner == null) {
+            httpHeadScanner = new ResponseFilterEvaluator();
+        }
+
+        try {
+            return httpHeadScanner.accept(input, block.remaining, warcReader.isHttpBlock(), filter);
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to read the block of the WARC record!", e);
+        }
+    }
+
+    /**
+     * Close the reader of the cursor.
+     *
+     * @throws IOException when an error happens while closing the data source
+     */
+    @Override
+    public void close() throws IOException {
+        warcReader.close();
+    }
+
+    private void ensurePositioned() {
+        if (!positioned) {
+            throw new IllegalStateException("The cursor is not on a record, call advance() first!");
+        }
+    }
+
+    /**
+     * Reads the content block of the current record from the buffer of the reader.
+     */
+    private class BlockInputStream extends InputStream {
+
+        private long remaining;
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            final int result = input.read();
+            if (result >= 0) {
+                remaining--;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] target, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            final int read = input.read(target, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(final long length) throws IOException {
+            final long skipped = input.skip(Math.min(length, remaining));
+            remaining -= skipped;
+
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(input.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+            // The reader is closed by the cursor
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.github.bottomlessarchive.warc.service;
+
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.io.InputStreams;
+import com.github.bottomlessarchive.warc.service.io.StreamWarcInputBuffer;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Fetches single WARC records by their offset and length, like the ones found in CDX indexes. Local files are read
+ * with positional reads on a {@link FileChannel}, remote files are read with HTTP range requests, so only the bytes
+ * of the requested record are read.
+ * <p>
+ * When the fetched bytes start with a gzip member, then exactly that member is decompressed, otherwise the bytes
+ * are parsed as an uncompressed record. The whole record is held in memory, so its content block can be requested
+ * at any time.
+ * <p>
+ * A fetcher is thread safe and is meant to be shared. The channels of the local files are kept open and the read
+ * buffers and inflaters are pooled, so a fetch allocates little more than the record itself. The HTTP connections
+ * are pooled by the keep-alive cache of {@link HttpURLConnection}, its size can be set with the "http.maxConnections"
+ * system property.
+ */
+@Slf4j
+public class WarcRecordFetcher implements Closeable {
+
+    /**
+     * The default number of the local files that are kept open.
+     */
+    public static final int DEFAULT_MAXIMUM_OPEN_FILES = 64;
+
+    /**
+     * The default number of the read buffers and inflaters that are kept in the pool.
+     */
+    public static final int DEFAULT_MAXIMUM_POOLED_BUFFERS = 64;
+
+    private static final int TIMEOUT = 120000;
+    private static final int MINIMUM_PARSING_BUFFER_SIZE = 1024;
+    private static final int MAXIMUM_POOLED_BUFFER_SIZE = 4194304;
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    private final WarcReaderConfiguration configuration;
+    private final Map<Path, FileChannel> openFiles;
+    private final BlockingQueue<FetchBuffer> bufferPool;
+
+    /**
+     * Create a new fetcher with the default configuration.
+     */
+    public WarcRecordFetcher() {
+        this(WarcReaderConfiguration.builder().build());
+    }
+
+    /**
+     * Create a new fetcher. The charset and the listener of the configuration are used, the other settings are
+     * ignored because every fetch reads exactly one record.
+     *
+     * @param configuration the configuration of the parsing
+     */
+    public WarcRecordFetcher(final WarcReaderConfiguration configuration) {
+        this(configuration, DEFAULT_MAXIMUM_OPEN_FILES, DEFAULT_MAXIMUM_POOLED_BUFFERS);
+    }
+
+    /**
+     * Create a new fetcher. The charset and the listener of the configuration are used, the other settings are
+     * ignored because every fetch reads exactly one record.
+     *
+     * @param configuration        the configuration of the parsing
+     * @param maximumOpenFiles     the number of the local files that are kept open
+     * @param maximumPooledBuffers the number of the read buffers and inflaters that are kept in the pool
+     */
+    public WarcRecordFetcher(final WarcReaderConfiguration configuration, final int maximumOpenFiles,
+            final int maximumPooledBuffers) {
+        this.configuration = WarcReaderConfiguration.builder()
+                .charset(configuration.getCharset())
+                .listener(configuration.getListener())
+                .compressed(false)
+                .build();
+        this.openFiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Path, FileChannel> eldest) {
+                if (size() <= maximumOpenFiles) {
+                    return false;
+                }
+
+                closeQuietly(eldest.getValue());
+
+                return true;
+            }
+        };
+        this.bufferPool = new ArrayBlockingQueue<>(maximumPooledBuffers);
+    }
+
+    /**
+     * Fetch a record from a local file.
+     *
+     * @param warcFileLocation the location of the WARC file
+     * @param offset           the offset of the record in the file
+     * @param length           the length of the record in the file
+     * @param <T>              the type of the content block
+     * @return the fetched record
+     * @throws WarcNetworkException when unable to read the file
+     * @throws WarcFormatException  when the read bytes are not a WARC record
+     */
+    public <T extends WarcContentBlock> WarcRecord<T> fetch(@NotNull final Path warcFileLocation, final long offset,
+            final long length) {
+        final FetchBuffer fetchBuffer = borrowBuffer(length);
+
+        try {
+            readFile(warcFileLocation, offset, fetchBuffer.prepare((int) length), (int) length);
+
+            return parse(fetchBuffer, offset, (int) length);
+        } catch (IOException e) {
+            throw new WarcNetworkException("Unable to read " + length + " bytes at offset " + offset + " of WARC file: "
+                    + warcFileLocation + "!", e);
+        } finally {
+            returnBuffer(fetchBuffer);
+        }
+    }
+
+    /**
+     * Fetch a record from an URL. The record is requested with an HTTP range request. If the server doesn't
+     * support range requests, then the bytes before the record are skipped. URLs with the "file" protocol are read
+     * as local files.
+     *
+     * @param warcLocation the location of the WARC file
+     * @param offset       the offset of the record in the file
+     * @param length       the length of the record in the file
+     * @param <T>          the type of the content block
+     * @return the fetched record
+     * @throws WarcNetworkException when unable to download the record
+     * @throws WarcFormatException  when the downloaded bytes are not a WARC record
+     */
+    public <T extends WarcContentBlock> WarcRecord<T> fetch(@NotNull final URL warcLocation, final long offset,
+            final long length) {
+        if ("file".equals(warcLocation.getProtocol())) {
+            try {
+                return fetch(Paths.get(warcLocation.toURI()), offset, length);
+            } catch (URISyntaxException e) {
+                throw new WarcNetworkException("Invalid WARC file location: " + warcLocation + "!", e);
+            }
+        }
+
+        final FetchBuffer fetchBuffer = borrowBuffer(length);
+
+        try {
+            readUrl(warcLocation, offset, fetchBuffer.prepare((int) length), (int) length);
+
+            return parse(fetchBuffer, offset, (int) length);
+        } catch (IOException e) {
+            throw new WarcNetworkException("Unable to download " + length + " bytes at offset " + offset
+                    + " of WARC location: " + warcLocation + "!", e);
+        } finally {
+            returnBuffer(fetchBuffer);
+        }
+    }
+
+    /**
+     * Close the open local files and release the pooled inflaters.
+     */
+    @Override
+    public void close() {
+        synchronized (openFiles) {
+            openFiles.values().forEach(WarcRecordFetcher::closeQuietly);
+            openFiles.clear();
+        }
+
+        FetchBuffer fetchBuffer;
+        while ((fetchBuffer = bufferPool.poll()) != null) {
+            fetchBuffer.inflater.end();
+        }
+    }
+
+    private void readFile(final Path warcFileLocation, final long offset, final byte[] target, final int length)
+            throws IOException {
+        try {
+            readFully(openFile(warcFileLocation), offset, target, length);
+        } catch (ClosedChannelException e) {
+            // The channel was closed by an other thread because too many files were open, so it is opened again
+            readFully(openFile(warcFileLocation), offset, target, length);
+        }
+    }
+
+    private void readFully(final FileChannel channel, final long offset, final byte[] target, final int length)
+            throws IOException {
+        final ByteBuffer targetBuffer = ByteBuffer.wrap(target, 0, length);
+
+        while (targetBuffer.hasRemaining()) {
+            if (channel.read(targetBuffer, offset + targetBuffer.position()) < 0) {
+                throw new EOFException("The WARC file ended before the end of the record!");
+            }
+        }
+    }
+
+    private FileChannel openFile(final Path warcFileLocation) throws IOException {
+        synchronized (openFiles) {
+            final FileChannel openChannel = openFiles.get(warcFileLocation);
+            if (openChannel != null && openChannel.isOpen()) {
+                return openChannel;
+            }
+
+            final FileChannel channel = FileChannel.open(warcFileLocation, StandardOpenOption.READ);
+            openFiles.put(warcFileLocation, channel);
+
+            return channel;
+        }
+    }
+
+    private void readUrl(final URL warcLocation, final long offset, final byte[] target, final int length)
+            throws IOException {
+        final URLConnection connection = warcLocation.openConnection();
+
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        connection.setRequestProperty("Range", "bytes=" + offset + "-" + (offset + length - 1));
+
+        try (InputStream inputStream = connection.getInputStream()) {
+            if (connection instanceof HttpURLConnection
+                    && ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                log.debug("The server of {} doesn't support range requests! Skipping {} bytes.", warcLocation, offset);
+
+                InputStreams.skipFully(inputStream, offset);
+            }
+
+            readFully(inputStream, target, length);
+        }
+    }
+
+    private void readFully(final InputStream inputStream, final byte[] target, final int length) throws IOException {
+        int position = 0;
+
+        while (position < length) {
+            final int read = inputStream.read(target, position, length - position);
+            if (read < 0) {
+                throw new EOFException("The WARC file ended before the end of the record!");
+            }
+
+            position += read;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends WarcContentBlock> WarcRecord<T> parse(final FetchBuffer fetchBuffer, final long offset,
+            final int length) throws IOException {
+        final byte[] record = isCompressed(fetchBuffer.input, length) ? inflateMember(fetchBuffer, length)
+                : copyOf(fetchBuffer.input, length);
+
+        final WarcReader warcReader = new WarcReader(new StreamWarcInputBuffer(new ByteArrayInputStream(record),
+                Math.max(MINIMUM_PARSING_BUFFER_SIZE, Math.min(record.length, StreamWarcInputBuffer.DEFAULT_BUFFER_SIZE)),
+                offset), configuration);
+
+        final Optional<WarcRecord<WarcContentBlock>> warcRecord = warcReader.readRecord();
+        if (warcRecord.isEmpty()) {
+            throw new WarcFormatException("No WARC record was found at offset " + offset + "!");
+        }
+
+        warcRecord.get().setCompressedLength(length);
+
+        return (WarcRecord<T>) warcRecord.get();
+    }
+
+    private boolean isCompressed(final byte[] input, final int length) {
+        return length >= 2 && (input[0] & 0xFF) == GZIP_MAGIC_FIRST && (input[1] & 0xFF) == GZIP_MAGIC_SECOND;
+    }
+
+    private byte[] inflateMember(final FetchBuffer fetchBuffer, final int length) throws IOException {
+        final byte[] input = fetchBuffer.input;
+        final int dataStart = skipGzipHeader(input, length);
+
+        // The uncompressed size modulo 2^32 is stored in the last four bytes of the member
+        final long expectedSize = readUnsignedInt(input, length - 4);
+        final long expectedCrc = readUnsignedInt(input, length - GZIP_TRAILER_SIZE);
+
+        // The trailer is not validated yet, so a corrupt size can't make a small member allocate a huge array, the
+        // output is grown when the estimate is too small
+        byte[] output = new byte[(int) Math.min(Math.min(expectedSize, length * 8L), MAXIMUM_POOLED_BUFFER_SIZE)];
+        int outputLength = 0;
+
+        final Inflater inflater = fetchBuffer.inflater;
+        inflater.reset();
+        inflater.setInput(input, dataStart, length - dataStart);
+
+        try {
+            while (!inflater.finished()) {
+                if (outputLength == output.length) {
+                    output = growOutput(output);
+                }
+
+                final int inflated = inflater.inflate(output, outputLength, output.length - outputLength);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new WarcFormatException("The gzip member of the record is truncated or invalid!");
+                }
+
+                outputLength += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new WarcFormatException("Invalid deflate data in the gzip member of the record!", e);
+        }
+
+        final CRC32 crc = fetchBuffer.crc;
+        crc.reset();
+        crc.update(output, 0, outputLength);
+        if (crc.getValue() != expectedCrc || (outputLength & 0xFFFFFFFFL) != expectedSize) {
+            throw new WarcFormatException("Corrupt trailer in the gzip member of the record!");
+        }
+
+        return outputLength == output.length ? output : copyOf(output, outputLength);
+    }
+
+    private int skipGzipHeader(final byte[] input, final int length) {
+        if (length < GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE) {
+            throw new WarcFormatException("The gzip member of the record is truncated!");
+        }
+
+        final int flags = input[3] & 0xFF;
+        int position = GZIP_HEADER_SIZE;
+
+        if ((flags & FLAG_EXTRA) != 0) {
+            position += 2 + ((input[position] & 0xFF) | ((input[position + 1] & 0xFF) << 8));
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            position = skipZeroTerminated(input, position, length);
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            position = skipZeroTerminated(input, position, length);
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            position += 2;
+        }
+
+        if (position > length - GZIP_TRAILER_SIZE) {
+            throw new WarcFormatException("The gzip member of the record is truncated!");
+        }
+
+        return position;
+    }
+
+    private int skipZeroTerminated(final byte[] input, final int start, final int length) {
+        int position = start;
+        while (position < length && input[position] != 0) {
+            position++;
+        }
+
+        return position + 1;
+    }
+
+    private long readUnsignedInt(final byte[] input, final int position) {
+        return (input[position] & 0xFFL) | ((input[position + 1] & 0xFFL) << 8)
+                | ((input[position + 2] & 0xFFL) << 16) | ((input[position + 3] & 0xFFL) << 24);
+    }
+
+    private byte[] growOutput(final byte[] output) {
+        if (output.length >= Integer.MAX_VALUE - 8) {
+            throw new WarcFormatException("The record is too big to be fetched!");
+        }
+
+        return copyOf(output, (int) Math.min(Math.max(output.length * 2L, MINIMUM_PARSING_BUFFER_SIZE),
+                Integer.MAX_VALUE - 8));
+    }
+
+    private byte[] copyOf(final byte[] source, final int length) {
+        final byte[] result = new byte[length];
+        System.arraycopy(source, 0, result, 0, Math.min(source.length, length));
+
+        return result;
+    }
+
+    private FetchBuffer borrowBuffer(final long length) {
+        if (length <= 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid record length: " + length + "!");
+        }
+
+        final FetchBuffer fetchBuffer = bufferPool.poll();
+
+        return fetchBuffer != null ? fetchBuffer : new FetchBuffer();
+    }
+
+    private void returnBuffer(final FetchBuffer fetchBuffer) {
+        // The buffers of the unusually big records are not kept in the pool
+        if (fetchBuffer.input.length > MAXIMUM_POOLED_BUFFER_SIZE) {
+            fetchBuffer.input = new byte[0];
+        }
+
+        if (!bufferPool.offer(fetchBuffer)) {
+            fetchBuffer.inflater.end();
+        }
+    }
+
+    private static void closeQuietly(final FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Unable to close WARC file!", e);
+        }
+    }
+
+    /**
+     * The reusable objects of one fetch.
+     */
+    private static class FetchBuffer {
+
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private byte[] input = new byte[0];
+
+        private byte[] prepare(final int length) {
+            if (input.length < length) {
+                input = new byte[length];
+            }
+
+            return input;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.bottomlessarchive.warc.service;
 
 import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
 import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
 
 import java.io.BufferedInputStream;
@@ -8,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.Iterator;
 
 @SuppressWarnings("unused")
@@ -17,13 +19,27 @@ public class WarcRecordIteratorFactory {
 
     public static <T extends WarcContentBlock> Iterator<WarcRecord<T>> iteratorOf(final URL url) {
         try {
-            return iteratorOf(new AvailableInputStream(new BufferedInputStream(url.openStream(), ONE_MEGABYTE_IN_BYTE)),
+            return iteratorOf(new BufferedInputStream(url.openStream(), ONE_MEGABYTE_IN_BYTE),
                     WarcReader.DEFAULT_CHARSET, true);
         } catch (IOException e) {
             throw new WarcNetworkException("Unable to open WARC location: " + url + "!", e);
         }
     }
 
+    /**
+     * Iterate over the records of a local WARC file. The file is considered to be compressed when its name ends with
+     * ".gz". Uncompressed files are read through a memory mapping.
+     *
+     * @param path the location of the WARC file
+     * @param <T>  the type of the content blocks
+     * @return the iterator of the records
+     */
+    public static <T extends WarcContentBlock> Iterator<WarcRecord<T>> iteratorOf(final Path path) {
+        final WarcReader warcReader = new WarcReader(path, WarcReader.DEFAULT_CHARSET, path.toString().endsWith(".gz"));
+
+        return (Iterator<WarcRecord<T>>) new WarcRecordIterator(warcReader);
+    }
+
     public static <T extends WarcContentBlock> Iterator<WarcRecord<T>> iteratorOf(final InputStream inputStream) {
         return iteratorOf(inputStream, WarcReader.DEFAULT_CHARSET);
     }
@@ -38,4 +54,20 @@ public class WarcRecordIteratorFactory {
 
         return (Iterator<WarcRecord<T>>) new WarcRecordIterator(warcReader);
     }
-}
\ No newline at end of file
+
+    /**
+     * Iterate over the records of the provided stream, read with the provided configuration. For example, the
+     * stream can be read and decompressed ahead on a background thread.
+     *
+     * @param inputStream   the stream of the WARC file
+     * @param configuration the configuration of the reader
+     * @param <T>           the type of the content blocks
+     * @return the iterator of the records
+     */
+    public static <T extends WarcContentBlock> Iterator<WarcRecord<T>> iteratorOf(final InputStream inputStream,
+            final WarcReaderConfiguration configuration) {
+        final WarcReader warcReader = new WarcReader(inputStream, configuration);
+
+        return (Iterator<WarcRecord<T>>) new WarcRecordIterator(warcReader);
+    }
+}
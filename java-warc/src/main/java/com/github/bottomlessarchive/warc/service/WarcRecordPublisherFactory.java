@@ -0,0 +1,86 @@
+package com.github.bottomlessarchive.warc.service;
+
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.reactive.HttpBodyInputStream;
+import com.github.bottomlessarchive.warc.service.reactive.WarcRecordPublisher;
+import lombok.NonNull;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates {@link java.util.concurrent.Flow.Publisher}s of WARC records. The publishers read the records only when
+ * they are requested, on the provided executor.
+ */
+@SuppressWarnings("unused")
+public class WarcRecordPublisherFactory {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    /**
+     * Publish the records of a remote WARC file. The file is downloaded with the non-blocking {@link HttpClient}, the
+     * records are read only when enough data is downloaded, so no thread waits for the network until a record is
+     * bigger than the downloaded data. Such records block a thread of the executor while the rest of them arrives.
+     * The download is paused while the subscriber doesn't request more records and the downloaded data is not read.
+     *
+     * @param httpClient    the client that downloads the file, it should be shared between the publishers
+     * @param warcLocation  the location of the WARC file
+     * @param configuration the configuration of the reader
+     * @param executor      the executor that runs the reading
+     * @param <T>           the type of the content blocks
+     * @return the publisher of the records
+     */
+    public static <T extends WarcContentBlock> WarcRecordPublisher<T> publisherOf(
+            @NotNull @NonNull final HttpClient httpClient, @NotNull @NonNull final URI warcLocation,
+            @NotNull @NonNull final WarcReaderConfiguration configuration, @NotNull @NonNull final Executor executor) {
+        final HttpBodyInputStream body = new HttpBodyInputStream(httpClient, HttpRequest.newBuilder(warcLocation)
+                .timeout(TIMEOUT)
+                .GET()
+                .build());
+
+        // A read-ahead would hold a thread for every download
+        final WarcReaderConfiguration readerConfiguration = configuration.toBuilder()
+                .readAhead(false)
+                .build();
+
+        return new WarcRecordPublisher<>(() -> new WarcReader(body, readerConfiguration), executor, body);
+    }
+
+    /**
+     * Publish the records of a local WARC file.
+     *
+     * @param warcFileLocation the location of the WARC file
+     * @param configuration    the configuration of the reader
+     * @param executor         the executor that runs the reading
+     * @param <T>              the type of the content blocks
+     * @return the publisher of the records
+     */
+    public static <T extends WarcContentBlock> WarcRecordPublisher<T> publisherOf(
+            @NotNull @NonNull final Path warcFileLocation, @NotNull @NonNull final WarcReaderConfiguration configuration,
+            @NotNull @NonNull final Executor executor) {
+        return new WarcRecordPublisher<>(() -> new WarcReader(warcFileLocation, configuration), executor);
+    }
+
+    /**
+     * Publish the records of a stream. Reading the stream blocks the threads of the executor, so prefer
+     * {@link #publisherOf(HttpClient, URI, WarcReaderConfiguration, Executor)} for remote files.
+     *
+     * @param inputStream   the stream of the WARC file
+     * @param configuration the configuration of the reader
+     * @param executor      the executor that runs the reading
+     * @param <T>           the type of the content blocks
+     * @return the publisher of the records
+     */
+    public static <T extends WarcContentBlock> WarcRecordPublisher<T> publisherOf(
+            @NotNull @NonNull final InputStream inputStream,
+            @NotNull @NonNull final WarcReaderConfiguration configuration, @NotNull @NonNull final Executor executor) {
+        return new WarcRecordPublisher<>(() -> new WarcReader(inputStream, configuration), executor);
+    }
+}
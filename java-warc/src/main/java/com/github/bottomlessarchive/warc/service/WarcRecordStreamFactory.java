@@ -1,20 +1,37 @@
 package com.github.bottomlessarchive.warc.service;
 
 import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.content.response.ResponseFilter;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
 import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
 import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+import com.github.bottomlessarchive.warc.service.split.WarcFileSpliterator;
+import com.github.bottomlessarchive.warc.service.surt.SurtPrefixFilter;
 import lombok.NonNull;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+/**
+ * Creates streams of the records of WARC files.
+ * <p>
+ * The content blocks of the records are created only when they are first requested, from the data of the reader.
+ * They must be requested before the stream moves to the next record, otherwise
+ * {@link WarcRecord#getContentBlock()} throws an {@link IllegalStateException}. Operations that buffer the records
+ * before processing them, like {@code sorted()}, {@code collect(...)} or a {@code parallel()} stream of a single
+ * reader, should request the content blocks in an earlier {@code map(...)} step, or read the records with a
+ * {@link WarcReaderConfiguration#getPayloadBufferPool() payload buffer pool}, that creates every content block
+ * while its record is read.
+ */
 @SuppressWarnings("unused")
 public class WarcRecordStreamFactory {
 
@@ -27,7 +44,7 @@ public class WarcRecordStreamFactory {
     public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final URL url,
             @NotNull @NonNull final WarcRecordType... requiredRecordTypes) {
         try {
-            return streamOf(new AvailableInputStream(new BufferedInputStream(url.openStream())),
+            return streamOf(new BufferedInputStream(url.openStream()),
                     WarcReader.DEFAULT_CHARSET, true, List.of(requiredRecordTypes));
         } catch (IOException e) {
             throw new WarcNetworkException("Unable to open WARC location: " + url + "!", e);
@@ -37,13 +54,177 @@ public class WarcRecordStreamFactory {
     public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final URL url,
             @NotNull @NonNull final List<WarcRecordType> requiredRecordTypes) {
         try {
-            return streamOf(new AvailableInputStream(new BufferedInputStream(url.openStream())),
+            return streamOf(new BufferedInputStream(url.openStream()),
                     WarcReader.DEFAULT_CHARSET, true, requiredRecordTypes);
         } catch (IOException e) {
             throw new WarcNetworkException("Unable to open WARC location: " + url + "!", e);
         }
     }
 
+    /**
+     * Stream the records of an URL, with a filter on the HTTP status code and the mime type of the responses. The
+     * responses that are not accepted are skipped without parsing their HTTP messages.
+     *
+     * @param url                 the location of the compressed WARC file
+     * @param requiredRecordTypes the types of the records to return
+     * @param responseFilter      the filter of the response records
+     * @param <T>                 the type of the content blocks
+     * @return the stream of the records, their content blocks must be requested before the next record is read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final URL url,
+            @NotNull @NonNull final List<WarcRecordType> requiredRecordTypes,
+            @NotNull @NonNull final ResponseFilter responseFilter) {
+        try {
+            return streamOf(new BufferedInputStream(url.openStream()), WarcReaderConfiguration.builder()
+                    .recordTypes(toRecordTypes(requiredRecordTypes))
+                    .responseFilter(responseFilter)
+                    .build());
+        } catch (IOException e) {
+            throw new WarcNetworkException("Unable to open WARC location: " + url + "!", e);
+        }
+    }
+
+    /**
+     * Stream the records of an URL, with a filter on the SURT form of their target URIs. The records that are not
+     * accepted are skipped without decoding their headers.
+     *
+     * @param url                 the location of the compressed WARC file
+     * @param requiredRecordTypes the types of the records to return
+     * @param urlFilter           the filter of the target URIs
+     * @param <T>                 the type of the content blocks
+     * @return the stream of the records, their content blocks must be requested before the next record is read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final URL url,
+            @NotNull @NonNull final List<WarcRecordType> requiredRecordTypes,
+            @NotNull @NonNull final SurtPrefixFilter urlFilter) {
+        try {
+            return streamOf(new BufferedInputStream(url.openStream()), WarcReaderConfiguration.builder()
+                    .recordTypes(toRecordTypes(requiredRecordTypes))
+                    .urlFilter(urlFilter)
+                    .build());
+        } catch (IOException e) {
+            throw new WarcNetworkException("Unable to open WARC location: " + url + "!", e);
+        }
+    }
+
+    /**
+     * Stream the records of a local WARC file. The file is considered to be compressed when its name ends with
+     * ".gz". Uncompressed files are read through a memory mapping.
+     *
+     * @param warcFileLocation the location of the WARC file
+     * @param <T>              the type of the content blocks
+     * @return the stream of the records, their content blocks must be requested before the next record is read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final Path warcFileLocation) {
+        return streamOf(warcFileLocation, EVERY_WARC_RECORD_TYPE);
+    }
+
+    /**
+     * Stream the records of a local WARC file. The file is considered to be compressed when its name ends with
+     * ".gz". Uncompressed files are read through a memory mapping.
+     *
+     * @param warcFileLocation    the location of the WARC file
+     * @param requiredRecordTypes the types of the records to return
+     * @param <T>                 the type of the content blocks
+     * @return the stream of the records, their content blocks must be requested before the next record is read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final Path warcFileLocation,
+            @NotNull @NonNull final List<WarcRecordType> requiredRecordTypes) {
+        return streamOf(new WarcReader(warcFileLocation, WarcReaderConfiguration.builder()
+                .compressed(warcFileLocation.toString().endsWith(".gz"))
+                .recordTypes(toRecordTypes(requiredRecordTypes))
+                .build()));
+    }
+
+    /**
+     * Stream the records of a local WARC file, with a filter on the HTTP status code and the mime type of the
+     * responses. The responses that are not accepted are skipped without parsing their HTTP messages. The file is
+     * considered to be compressed when its name ends with ".gz".
+     *
+     * @param warcFileLocation    the location of the WARC file
+     * @param requiredRecordTypes the types of the records to return
+     * @param responseFilter      the filter of the response records
+     * @param <T>                 the type of the content blocks
+     * @return the stream of the records, their content blocks must be requested before the next record is read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final Path warcFileLocation,
+            @NotNull @NonNull final List<WarcRecordType> requiredRecordTypes,
+            @NotNull @NonNull final ResponseFilter responseFilter) {
+        return streamOf(new WarcReader(warcFileLocation, WarcReaderConfiguration.builder()
+                .compressed(warcFileLocation.toString().endsWith(".gz"))
+                .recordTypes(toRecordTypes(requiredRecordTypes))
+                .responseFilter(responseFilter)
+                .build()));
+    }
+
+    /**
+     * Stream the records of a local WARC file, with a filter on the SURT form of their target URIs. The records that
+     * are not accepted are skipped without decoding their headers. The file is considered to be compressed when its
+     * name ends with ".gz".
+     *
+     * @param warcFileLocation    the location of the WARC file
+     * @param requiredRecordTypes the types of the records to return
+     * @param urlFilter           the filter of the target URIs
+     * @param <T>                 the type of the content blocks
+     * @return the stream of the records, their content blocks must be requested before the next record is read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final Path warcFileLocation,
+            @NotNull @NonNull final List<WarcRecordType> requiredRecordTypes,
+            @NotNull @NonNull final SurtPrefixFilter urlFilter) {
+        return streamOf(new WarcReader(warcFileLocation, WarcReaderConfiguration.builder()
+                .compressed(warcFileLocation.toString().endsWith(".gz"))
+                .recordTypes(toRecordTypes(requiredRecordTypes))
+                .urlFilter(urlFilter)
+                .build()));
+    }
+
+    /**
+     * Create a parallel stream of the records of a local WARC file. The file is split into byte ranges that are read
+     * by separate readers, the ranges are aligned to the start of the records. Compressed files can be split only
+     * when every record is compressed into its own gzip member. The file is considered to be compressed when its name
+     * ends with ".gz". The stream should be closed after use, so every reader is closed.
+     *
+     * @param warcFileLocation the location of the WARC file
+     * @param <T>              the type of the content blocks
+     * @return the parallel stream of the records, their content blocks must be requested before the next record is
+     *         read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> parallelStreamOf(
+            @NotNull @NonNull final Path warcFileLocation) {
+        return parallelStreamOf(warcFileLocation, EVERY_WARC_RECORD_TYPE);
+    }
+
+    /**
+     * Create a parallel stream of the records of a local WARC file. The file is split into byte ranges that are read
+     * by separate readers, the ranges are aligned to the start of the records. Compressed files can be split only
+     * when every record is compressed into its own gzip member. The file is considered to be compressed when its name
+     * ends with ".gz". The stream should be closed after use, so every reader is closed.
+     *
+     * @param warcFileLocation    the location of the WARC file
+     * @param requiredRecordTypes the types of the records to return
+     * @param <T>                 the type of the content blocks
+     * @return the parallel stream of the records, their content blocks must be requested before the next record is
+     *         read
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> parallelStreamOf(
+            @NotNull @NonNull final Path warcFileLocation,
+            @NotNull @NonNull final List<WarcRecordType> requiredRecordTypes) {
+        final WarcFileSpliterator spliterator;
+        try {
+            spliterator = new WarcFileSpliterator(warcFileLocation, WarcReaderConfiguration.builder()
+                    .compressed(warcFileLocation.toString().endsWith(".gz"))
+                    .recordTypes(toRecordTypes(requiredRecordTypes))
+                    .build());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open WARC file: " + warcFileLocation + "!", e);
+        }
+
+        return StreamSupport.stream(spliterator, true)
+                .onClose(() -> closeSpliterator(spliterator))
+                .map(warcRecord -> ((WarcRecord<T>) warcRecord));
+    }
+
     public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final InputStream warcFileLocation) {
         return streamOf(warcFileLocation, EVERY_WARC_RECORD_TYPE);
     }
@@ -73,10 +254,68 @@ public class WarcRecordStreamFactory {
             @NotNull @NonNull final InputStream inputStream,
             @NotNull @NonNull final Charset charset, final boolean compressed,
             @NotNull @NonNull final List<WarcRecordType> requiredRecordTypes) {
-        final WarcReader warcReader = new WarcReader(inputStream, charset, compressed);
+        return streamOf(new WarcReader(inputStream, WarcReaderConfiguration.builder()
+                .charset(charset)
+                .compressed(compressed)
+                .recordTypes(toRecordTypes(requiredRecordTypes))
+                .build()));
+    }
+
+    /**
+     * Stream the records of the provided stream, read with the provided configuration. For example, the stream can
+     * be read and decompressed ahead on a background thread.
+     *
+     * @param inputStream   the stream of the WARC file
+     * @param configuration the configuration of the reader
+     * @param <T>           the type of the content blocks
+     * @return the stream of the records, their content blocks must be requested before the next record is read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final InputStream inputStream,
+            @NotNull @NonNull final WarcReaderConfiguration configuration) {
+        return streamOf(new WarcReader(inputStream, configuration));
+    }
+
+    /**
+     * Stream the records of a local WARC file, read with the provided configuration.
+     *
+     * @param warcFileLocation the location of the WARC file
+     * @param configuration    the configuration of the reader
+     * @param <T>              the type of the content blocks
+     * @return the stream of the records, their content blocks must be requested before the next record is read
+     */
+    public static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(@NotNull @NonNull final Path warcFileLocation,
+            @NotNull @NonNull final WarcReaderConfiguration configuration) {
+        return streamOf(new WarcReader(warcFileLocation, configuration));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends WarcContentBlock> Stream<WarcRecord<T>> streamOf(final WarcReader warcReader) {
         return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
                 new SafeWarcRecordIterator(warcReader), Spliterator.ORDERED | Spliterator.NONNULL), false)
-                .filter(warcRecord -> requiredRecordTypes.contains(warcRecord.getType()))
+                .onClose(() -> closeReader(warcReader))
                 .map(warcRecord -> ((WarcRecord<T>) warcRecord));
     }
+
+    private static Set<WarcRecordType> toRecordTypes(final List<WarcRecordType> requiredRecordTypes) {
+        final Set<WarcRecordType> result = EnumSet.noneOf(WarcRecordType.class);
+        result.addAll(requiredRecordTypes);
+
+        return result;
+    }
+
+    private static void closeSpliterator(final WarcFileSpliterator spliterator) {
+        try {
+            spliterator.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close the WARC readers!", e);
+        }
+    }
+
+    private static void closeReader(final WarcReader warcReader) {
+        try {
+            warcReader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close the WARC reader!", e);
+        }
+    }
 }
@@ -0,0 +1,192 @@
+package com.github.bottomlessarchive.warc.service.bloom;
+
+import com.github.bottomlessarchive.warc.service.WarcIndexingException;
+import com.github.bottomlessarchive.warc.service.surt.SurtCanonicalizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory mapped Bloom filter sidecar of a WARC file, created by a {@link WarcBloomFilterWriter}. It tells if a
+ * target URI or a payload digest might be in the WARC file, so the files that surely don't contain them can be ruled
+ * out without opening them. The filter is read through a read-only memory mapping, so the lookups don't use the heap,
+ * and the pages of the files are shared between the processes.
+ * <p>
+ * The filter is blocked: every key sets its bits in a single 64 byte block, so a lookup touches a single cache line.
+ * The same key can be checked in many filters with {@link #mightContain(long)}, the keys are calculated once with
+ * {@link #urlKey(String)} and {@link #digestKey(String)}.
+ * <p>
+ * The filter is immutable and thread safe.
+ */
+public class WarcBloomFilter {
+
+    /**
+     * The extension of the sidecar files, that is appended to the name of the WARC files.
+     */
+    public static final String SIDECAR_EXTENSION = ".bloom";
+
+    static final int MAGIC = 0x57424C46;
+    // Version 1 filters stored the bracketed target URIs of WARC/1.0 files under wrong keys
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int BLOCK_SIZE = 64;
+    static final int MAXIMUM_BLOCK_COUNT = (Integer.MAX_VALUE - HEADER_SIZE) / BLOCK_SIZE;
+
+    private static final long URL_SEED = 0x9E3779B97F4A7C15L;
+    private static final long DIGEST_SEED = 0xC2B2AE3D27D4EB4FL;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private static final SurtCanonicalizer SURT_CANONICALIZER = new SurtCanonicalizer();
+
+    private final ByteBuffer data;
+    private final int blockCount;
+    private final int hashCount;
+    private final long keyCount;
+
+    private WarcBloomFilter(final Path sidecarFile, final ByteBuffer data) {
+        this.data = data;
+
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new WarcIndexingException("Not a Bloom filter: " + sidecarFile + "!");
+        }
+
+        if (data.getInt(4) != VERSION) {
+            throw new WarcIndexingException("Unsupported version of the Bloom filter: " + sidecarFile + "!");
+        }
+
+        this.hashCount = data.getInt(8);
+        this.blockCount = data.getInt(12);
+        this.keyCount = data.getLong(16);
+
+        if (blockCount <= 0 || data.capacity() < HEADER_SIZE + (long) blockCount * BLOCK_SIZE) {
+            throw new WarcIndexingException("Truncated Bloom filter: " + sidecarFile + "!");
+        }
+    }
+
+    /**
+     * Map a sidecar file into the memory. The file is closed after it is mapped, the mapping is released when the
+     * filter is garbage collected.
+     *
+     * @param sidecarFile the location of the sidecar file
+     * @return the mapped filter
+     */
+    public static WarcBloomFilter open(final Path sidecarFile) {
+        try (FileChannel channel = FileChannel.open(sidecarFile, StandardOpenOption.READ)) {
+            return new WarcBloomFilter(sidecarFile, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to open the Bloom filter: " + sidecarFile + "!", e);
+        }
+    }
+
+    /**
+     * Return the default location of the sidecar file of a WARC file, that is next to the WARC file.
+     *
+     * @param warcFile the location of the WARC file
+     * @return the location of the sidecar file
+     */
+    public static Path sidecarOf(final Path warcFile) {
+        return warcFile.resolveSibling(warcFile.getFileName() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Calculate the key of a target URI. The URIs are converted to their SURT form first, so the different forms of
+     * the same URL have the same key, with or without the angle brackets that WARC/1.0 writers put around them.
+     *
+     * @param url the target URI
+     * @return the key of the URI
+     */
+    public static long urlKey(final String url) {
+        return hash(URL_SEED, SURT_CANONICALIZER.canonicalize(url));
+    }
+
+    /**
+     * Calculate the key of a payload digest, for example "sha1:3I42H3S6NNFQ2MSVX7XZKYAYSCX5QBYJ".
+     *
+     * @param payloadDigest the payload digest, with its algorithm
+     * @return the key of the digest
+     */
+    public static long digestKey(final String payloadDigest) {
+        return hash(DIGEST_SEED, payloadDigest.trim());
+    }
+
+    /**
+     * Check if the WARC file might contain a record with the provided target URI.
+     *
+     * @param url the target URI
+     * @return false if the WARC file surely doesn't contain the URI, true otherwise
+     */
+    public boolean mightContainUrl(final String url) {
+        return mightContain(urlKey(url));
+    }
+
+    /**
+     * Check if the WARC file might contain a record with the provided payload digest.
+     *
+     * @param payloadDigest the payload digest, with its algorithm
+     * @return false if the WARC file surely doesn't contain the digest, true otherwise
+     */
+    public boolean mightContainDigest(final String payloadDigest) {
+        return mightContain(digestKey(payloadDigest));
+    }
+
+    /**
+     * Check if the WARC file might contain the provided key. Nothing is allocated by the check.
+     *
+     * @param key the key, calculated by {@link #urlKey(String)} or {@link #digestKey(String)}
+     * @return false if the WARC file surely doesn't contain the key, true otherwise
+     */
+    public boolean mightContain(final long key) {
+        final int blockStart = HEADER_SIZE + blockOf(key, blockCount) * BLOCK_SIZE;
+        final int first = (int) key;
+        final int step = secondHash(key);
+
+        for (int i = 0; i < hashCount; i++) {
+            final int bit = (first + i * step) & (BLOCK_SIZE * Byte.SIZE - 1);
+
+            if ((data.getLong(blockStart + (bit >>> 6) * Long.BYTES) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Return the number of the distinct keys that were added to the filter.
+     *
+     * @return the number of the keys
+     */
+    public long getKeyCount() {
+        return keyCount;
+    }
+
+    static int blockOf(final long key, final int blockCount) {
+        return (int) (((key >>> 32) * blockCount) >>> 32);
+    }
+
+    static int secondHash(final long key) {
+        return (int) mix(key) | 1;
+    }
+
+    private static long hash(final long seed, final String value) {
+        long result = seed ^ value.length();
+
+        for (int i = 0; i < value.length(); i++) {
+            result = (result ^ value.charAt(i)) * FNV_PRIME;
+        }
+
+        return mix(result);
+    }
+
+    private static long mix(final long value) {
+        long result = value;
+
+        result = (result ^ (result >>> 33)) * 0xFF51AFD7ED558CCDL;
+        result = (result ^ (result >>> 33)) * 0xC4CEB9FE1A85EC53L;
+
+        return result ^ (result >>> 33);
+    }
+}
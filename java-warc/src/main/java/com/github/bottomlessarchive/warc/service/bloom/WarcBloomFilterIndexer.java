@@ -0,0 +1,80 @@
+package com.github.bottomlessarchive.warc.service.bloom;
+
+import com.github.bottomlessarchive.warc.service.WarcIndexingException;
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Optional;
+
+/**
+ * Creates the {@link WarcBloomFilter} sidecars of WARC files in a single streaming pass. Only the headers of the
+ * records are parsed, the payloads are skipped. When the records of a file are processed anyway, the sidecar can be
+ * created as a side output of the processing with a {@link WarcBloomFilterWriter} instead.
+ */
+public class WarcBloomFilterIndexer {
+
+    private final int bitsPerKey;
+
+    /**
+     * Create a new indexer with {@link WarcBloomFilterWriter#DEFAULT_BITS_PER_KEY} bits per key.
+     */
+    public WarcBloomFilterIndexer() {
+        this(WarcBloomFilterWriter.DEFAULT_BITS_PER_KEY);
+    }
+
+    /**
+     * Create a new indexer.
+     *
+     * @param bitsPerKey the number of bits per key, more bits give less false positives
+     */
+    public WarcBloomFilterIndexer(final int bitsPerKey) {
+        this.bitsPerKey = bitsPerKey;
+    }
+
+    /**
+     * Index a local WARC file into its default sidecar location, see {@link WarcBloomFilter#sidecarOf(Path)}. The
+     * file is considered to be compressed when its name ends with ".gz".
+     *
+     * @param warcFile the WARC file to index
+     * @return the location of the sidecar file
+     */
+    public Path index(final Path warcFile) {
+        final Path sidecarFile = WarcBloomFilter.sidecarOf(warcFile);
+
+        index(warcFile, sidecarFile);
+
+        return sidecarFile;
+    }
+
+    /**
+     * Index a local WARC file. The file is considered to be compressed when its name ends with ".gz".
+     *
+     * @param warcFile    the WARC file to index
+     * @param sidecarFile the file to write the Bloom filter to
+     */
+    public void index(final Path warcFile, final Path sidecarFile) {
+        final WarcReaderConfiguration configuration = WarcReaderConfiguration.builder()
+                .compressed(warcFile.toString().endsWith(".gz"))
+                .recordTypes(EnumSet.of(WarcRecordType.RESPONSE, WarcRecordType.REVISIT, WarcRecordType.RESOURCE))
+                .build();
+
+        final WarcBloomFilterWriter writer = new WarcBloomFilterWriter(bitsPerKey);
+
+        try (WarcReader warcReader = new WarcReader(warcFile, configuration)) {
+            Optional<WarcRecord<WarcContentBlock>> warcRecord;
+            while ((warcRecord = warcReader.readRecord()).isPresent()) {
+                writer.add(warcRecord.get());
+            }
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to index WARC file: " + warcFile + "!", e);
+        }
+
+        writer.write(sidecarFile);
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.bottomlessarchive.warc.service.bloom;
+
+import com.github.bottomlessarchive.warc.service.WarcIndexingException;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Collects the WARC-Target-URI and WARC-Payload-Digest headers of the records of a WARC file while they are read,
+ * and writes them into a {@link WarcBloomFilter} sidecar. Only the 64 bit keys of the headers are kept in the memory
+ * until the sidecar is written, so the filter is sized to the exact number of the keys.
+ * <p>
+ * The keys of the response, revisit and resource records are collected. A writer belongs to a single WARC file and
+ * it is not thread safe.
+ */
+public class WarcBloomFilterWriter {
+
+    /**
+     * The default number of bits per key. It gives about 0.5% false positive rate.
+     */
+    public static final int DEFAULT_BITS_PER_KEY = 12;
+
+    private static final int INITIAL_KEY_CAPACITY = 1024;
+    private static final int MAXIMUM_HASH_COUNT = 16;
+    private static final int WRITE_BUFFER_SIZE = 65536;
+
+    private final int bitsPerKey;
+
+    private long[] keys = new long[INITIAL_KEY_CAPACITY];
+    private int keyCount;
+
+    /**
+     * Create a new writer with {@link #DEFAULT_BITS_PER_KEY} bits per key.
+     */
+    public WarcBloomFilterWriter() {
+        this(DEFAULT_BITS_PER_KEY);
+    }
+
+    /**
+     * Create a new writer.
+     *
+     * @param bitsPerKey the number of bits per key, more bits give less false positives
+     */
+    public WarcBloomFilterWriter(final int bitsPerKey) {
+        if (bitsPerKey <= 0) {
+            throw new IllegalArgumentException("The number of bits per key must be positive!");
+        }
+
+        this.bitsPerKey = bitsPerKey;
+    }
+
+    /**
+     * Collect the keys of the records of a stream, while they are passed through. The stream must be sequential.
+     *
+     * @param warcRecords the records of the WARC file
+     * @param <T>         the type of the content blocks
+     * @return the stream of the same records
+     */
+    public <T extends WarcContentBlock> Stream<WarcRecord<T>> add(final Stream<WarcRecord<T>> warcRecords) {
+        return warcRecords.peek(this::add);
+    }
+
+    /**
+     * Collect the keys of a record.
+     *
+     * @param warcRecord the record to collect the keys of
+     */
+    public void add(final WarcRecord<?> warcRecord) {
+        if (!warcRecord.isResponse() && !warcRecord.isRevisit() && !warcRecord.isResource()) {
+            return;
+        }
+
+        final String targetUri = warcRecord.getHeader("WARC-Target-URI");
+        if (targetUri != null && !targetUri.isEmpty()) {
+            addKey(WarcBloomFilter.urlKey(targetUri));
+        }
+
+        final String payloadDigest = warcRecord.getHeader("WARC-Payload-Digest");
+        if (payloadDigest != null && !payloadDigest.isEmpty()) {
+            addKey(WarcBloomFilter.digestKey(payloadDigest));
+        }
+    }
+
+    /**
+     * Write the collected keys into a sidecar file.
+     *
+     * @param sidecarFile the location of the sidecar file
+     */
+    public void write(final Path sidecarFile) {
+        // The same URLs and payloads are crawled many times, so the filter is sized by the distinct keys
+        final int distinctKeyCount = sortDistinct();
+
+        final int blockCount = (int) Math.max(1, Math.min(WarcBloomFilter.MAXIMUM_BLOCK_COUNT,
+                ((long) distinctKeyCount * bitsPerKey + WarcBloomFilter.BLOCK_SIZE * Byte.SIZE - 1)
+                        / (WarcBloomFilter.BLOCK_SIZE * Byte.SIZE)));
+        final int hashCount = Math.max(1, Math.min(MAXIMUM_HASH_COUNT, (int) Math.round(bitsPerKey * Math.log(2))));
+
+        final long[] bits = new long[blockCount * (WarcBloomFilter.BLOCK_SIZE / Long.BYTES)];
+        for (int i = 0; i < distinctKeyCount; i++) {
+            setBits(bits, keys[i], blockCount, hashCount);
+        }
+
+        try (FileChannel channel = FileChannel.open(sidecarFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+            buffer.putInt(WarcBloomFilter.MAGIC)
+                    .putInt(WarcBloomFilter.VERSION)
+                    .putInt(hashCount)
+                    .putInt(blockCount)
+                    .putLong(distinctKeyCount)
+                    .putLong(0);
+
+            for (long word : bits) {
+                if (!buffer.hasRemaining()) {
+                    writeBuffer(channel, buffer);
+                }
+
+                buffer.putLong(word);
+            }
+
+            writeBuffer(channel, buffer);
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to write the Bloom filter: " + sidecarFile + "!", e);
+        }
+    }
+
+    /**
+     * Return the number of the collected keys. The duplicated keys are removed when the sidecar is written.
+     *
+     * @return the number of the keys
+     */
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    private int sortDistinct() {
+        Arrays.sort(keys, 0, keyCount);
+
+        int distinctKeyCount = 0;
+        for (int i = 0; i < keyCount; i++) {
+            if (distinctKeyCount == 0 || keys[distinctKeyCount - 1] != keys[i]) {
+                keys[distinctKeyCount++] = keys[i];
+            }
+        }
+
+        keyCount = distinctKeyCount;
+
+        return distinctKeyCount;
+    }
+
+    private void addKey(final long key) {
+        if (keyCount == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+
+        keys[keyCount++] = key;
+    }
+
+    private static void setBits(final long[] bits, final long key, final int blockCount, final int hashCount) {
+        final int blockStart = WarcBloomFilter.blockOf(key, blockCount) * (WarcBloomFilter.BLOCK_SIZE / Long.BYTES);
+        final int first = (int) key;
+        final int step = WarcBloomFilter.secondHash(key);
+
+        for (int i = 0; i < hashCount; i++) {
+            final int bit = (first + i * step) & (WarcBloomFilter.BLOCK_SIZE * Byte.SIZE - 1);
+
+            bits[blockStart + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static void writeBuffer(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+}
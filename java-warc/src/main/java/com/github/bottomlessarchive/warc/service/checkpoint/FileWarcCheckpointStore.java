@@ -0,0 +1,89 @@
+package com.github.bottomlessarchive.warc.service.checkpoint;
+
+import com.github.bottomlessarchive.warc.service.WarcIndexingException;
+import com.github.bottomlessarchive.warc.service.checkpoint.domain.WarcCheckpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * A {@link WarcCheckpointStore} that keeps the checkpoint in a small text file. The checkpoint is written into a
+ * temporary file that is synced to the disk, then it is moved over the previous one, so a crash never leaves a
+ * partially written checkpoint behind.
+ */
+public class FileWarcCheckpointStore implements WarcCheckpointStore {
+
+    private final Path checkpointFile;
+    private final Path temporaryFile;
+
+    /**
+     * Create a new store.
+     *
+     * @param checkpointFile the location of the checkpoint file
+     */
+    public FileWarcCheckpointStore(final Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+        this.temporaryFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+    }
+
+    @Override
+    public Optional<WarcCheckpoint> load() {
+        try {
+            final String[] fields = new String(Files.readAllBytes(checkpointFile), StandardCharsets.US_ASCII)
+                    .trim().split(" ");
+
+            if (fields.length != 3) {
+                throw new WarcIndexingException("Invalid checkpoint: " + checkpointFile + "!");
+            }
+
+            return Optional.of(WarcCheckpoint.builder()
+                    .compressedOffset(Long.parseLong(fields[0]))
+                    .skippedRecords(Long.parseLong(fields[1]))
+                    .recordCount(Long.parseLong(fields[2]))
+                    .build());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to read the checkpoint: " + checkpointFile + "!", e);
+        } catch (NumberFormatException e) {
+            throw new WarcIndexingException("Invalid checkpoint: " + checkpointFile + "!", e);
+        }
+    }
+
+    @Override
+    public void save(final WarcCheckpoint checkpoint) {
+        final byte[] content = (checkpoint.getCompressedOffset() + " " + checkpoint.getSkippedRecords() + " "
+                + checkpoint.getRecordCount() + "\n").getBytes(StandardCharsets.US_ASCII);
+
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer buffer = ByteBuffer.wrap(content);
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temporaryFile, checkpointFile, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to write the checkpoint: " + checkpointFile + "!", e);
+        }
+    }
+}
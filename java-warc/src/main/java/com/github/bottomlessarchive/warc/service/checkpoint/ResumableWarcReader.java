@@ -0,0 +1,340 @@
+package com.github.bottomlessarchive.warc.service.checkpoint;
+
+import com.github.bottomlessarchive.warc.service.WarcNetworkException;
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.checkpoint.domain.WarcCheckpoint;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.io.CountingInputStream;
+import com.github.bottomlessarchive.warc.service.io.InputStreams;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a WARC file and periodically saves the position of the reading into a {@link WarcCheckpointStore}. When a
+ * new reader is created with the same store, it continues the reading from the last checkpoint: the file is opened
+ * at the compressed offset of the checkpoint with an HTTP range request (or a seek for local files), so the bytes
+ * before it are neither downloaded nor decompressed again.
+ * <p>
+ * A record is considered to be consumed when the next record is requested. The records that were returned after the
+ * last checkpoint are returned again after a restart, so the processing of the records should be idempotent.
+ * <p>
+ * When the reading of a remote file fails with a network error, the reader can retry it by reopening the file at
+ * the position of the last returned record, without returning any record twice.
+ * <p>
+ * A reader is not thread safe.
+ */
+@Slf4j
+public class ResumableWarcReader implements Closeable {
+
+    /**
+     * The default number of the records between two checkpoints.
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private static final int TIMEOUT = 120000;
+    private static final long RETRY_DELAY = 1000;
+
+    private final Path warcFile;
+    private final URL warcUrl;
+    private final WarcReaderConfiguration configuration;
+    private final WarcCheckpointStore checkpointStore;
+    private final int checkpointInterval;
+    private final int maximumRetries;
+
+    private WarcReader warcReader;
+    private CountingInputStream inputStream;
+    private boolean ended;
+
+    // The position after the consumed records
+    private long memberOffset;
+    private long memberRecords;
+    private long recordCount;
+    private long checkpointedRecordCount;
+
+    // The last returned record, it is consumed when the next record is requested
+    private boolean hasLastRecord;
+    private long lastRecordOffset;
+    private long lastRecordIndex;
+
+    /**
+     * Create a new reader. Either the file or the URL of the WARC file must be set. The reading starts at the last
+     * checkpoint of the store, or at the start of the file if the store is empty.
+     *
+     * @param warcFile           the location of the local WARC file
+     * @param warcUrl            the location of the remote WARC file
+     * @param configuration      the configuration of the reader, if it is not set then the file is considered to be
+     *                           compressed when its name ends with ".gz"
+     * @param checkpointStore    the store of the checkpoints
+     * @param checkpointInterval the number of the records between two checkpoints,
+     *                           {@link #DEFAULT_CHECKPOINT_INTERVAL} if it is not positive
+     * @param maximumRetries     the number of the retries after a network error, zero if the errors should not be
+     *                           retried
+     */
+    @Builder
+    public ResumableWarcReader(final Path warcFile, final URL warcUrl, final WarcReaderConfiguration configuration,
+            @NonNull final WarcCheckpointStore checkpointStore, final int checkpointInterval,
+            final int maximumRetries) {
+        if ((warcFile == null) == (warcUrl == null)) {
+            throw new IllegalArgumentException("Either the file or the URL of the WARC file must be set!");
+        }
+
+        this.warcFile = warcFile;
+        this.warcUrl = warcUrl;
+        this.configuration = configuration != null ? configuration : WarcReaderConfiguration.builder()
+                .compressed((warcFile != null ? warcFile.toString() : warcUrl.getPath()).endsWith(".gz"))
+                .build();
+        this.checkpointStore = checkpointStore;
+        this.checkpointInterval = checkpointInterval > 0 ? checkpointInterval : DEFAULT_CHECKPOINT_INTERVAL;
+        this.maximumRetries = Math.max(0, maximumRetries);
+
+        checkpointStore.load().ifPresent(checkpoint -> {
+            memberOffset = checkpoint.getCompressedOffset();
+            memberRecords = checkpoint.getSkippedRecords();
+            recordCount = checkpoint.getRecordCount();
+            checkpointedRecordCount = recordCount;
+        });
+    }
+
+    /**
+     * Read the next record. The previously returned record is considered to be consumed. If the returned Optional
+     * is empty then the reader reached the end of the file, and the final checkpoint is saved.
+     *
+     * @return the next record
+     */
+    public Optional<WarcRecord<WarcContentBlock>> readRecord() {
+        if (ended) {
+            return Optional.empty();
+        }
+
+        consumeLastRecord();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                final Optional<WarcRecord<WarcContentBlock>> warcRecord = readNextRecord();
+
+                if (warcRecord.isEmpty()) {
+                    ended = true;
+
+                    saveCheckpoint();
+                    closeReader();
+                }
+
+                return warcRecord;
+            } catch (RuntimeException e) {
+                if (!isNetworkFailure(e) || attempt >= maximumRetries) {
+                    throw e;
+                }
+
+                log.debug("Network error while reading WARC file: {}! Resuming it at offset: {}.", this,
+                        memberOffset, e);
+
+                closeReader();
+
+                if (!sleep(RETRY_DELAY * (attempt + 1))) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stream the records of the reader. Closing the stream closes the reader.
+     *
+     * @param <T> the type of the content blocks
+     * @return the stream of the records
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends WarcContentBlock> Stream<WarcRecord<T>> stream() {
+        final Spliterator<WarcRecord<WarcContentBlock>> spliterator = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(final Consumer<? super WarcRecord<WarcContentBlock>> action) {
+                final Optional<WarcRecord<WarcContentBlock>> warcRecord = readRecord();
+                warcRecord.ifPresent(action);
+
+                return warcRecord.isPresent();
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(this::closeStream)
+                .map(warcRecord -> ((WarcRecord<T>) warcRecord));
+    }
+
+    /**
+     * Save a checkpoint of the consumed records now, regardless of the checkpoint interval. The last returned record
+     * is considered to be consumed.
+     *
+     * @return the saved checkpoint
+     */
+    public WarcCheckpoint checkpoint() {
+        consumeLastRecord();
+
+        return saveCheckpoint();
+    }
+
+    /**
+     * Return the number of the consumed records, including the ones that were consumed before the reader was created.
+     *
+     * @return the number of the consumed records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (warcReader != null) {
+            warcReader.close();
+            warcReader = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return warcFile != null ? warcFile.toString() : warcUrl.toString();
+    }
+
+    private Optional<WarcRecord<WarcContentBlock>> readNextRecord() {
+        if (warcReader == null) {
+            warcReader = open(memberOffset);
+
+            // The consumed records of the member are read again, because the member can be decompressed only
+            // from its start
+            for (long i = 0; i < memberRecords; i++) {
+                if (warcReader.readRecord().isEmpty()) {
+                    return Optional.empty();
+                }
+            }
+        }
+
+        final Optional<WarcRecord<WarcContentBlock>> warcRecord = warcReader.readRecord();
+
+        warcRecord.ifPresent(record -> {
+            hasLastRecord = true;
+            lastRecordOffset = record.getCompressedOffset();
+            lastRecordIndex = record.getCompressedOffset() == memberOffset ? memberRecords : 0;
+        });
+
+        return warcRecord;
+    }
+
+    private void consumeLastRecord() {
+        if (!hasLastRecord) {
+            return;
+        }
+
+        hasLastRecord = false;
+
+        memberOffset = lastRecordOffset;
+        memberRecords = lastRecordIndex + 1;
+        recordCount++;
+
+        if (recordCount - checkpointedRecordCount >= checkpointInterval) {
+            saveCheckpoint();
+        }
+    }
+
+    private WarcCheckpoint saveCheckpoint() {
+        final WarcCheckpoint checkpoint = WarcCheckpoint.builder()
+                .compressedOffset(memberOffset)
+                .skippedRecords(memberRecords)
+                .recordCount(recordCount)
+                .build();
+
+        checkpointStore.save(checkpoint);
+        checkpointedRecordCount = recordCount;
+
+        return checkpoint;
+    }
+
+    private WarcReader open(final long offset) {
+        if (warcFile != null) {
+            return new WarcReader(warcFile, configuration, offset);
+        }
+
+        try {
+            final URLConnection connection = warcUrl.openConnection();
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+
+            if (offset > 0) {
+                connection.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+
+            final InputStream source = connection.getInputStream();
+            final boolean partial = connection instanceof HttpURLConnection
+                    && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL;
+            final long contentLength = connection.getContentLengthLong();
+
+            if (offset > 0 && !partial) {
+                log.debug("The server of {} doesn't support range requests! Skipping {} bytes.", warcUrl, offset);
+
+                InputStreams.skipFully(source, offset);
+            }
+
+            inputStream = new CountingInputStream(source, partial || contentLength < 0 ? contentLength
+                    : contentLength - offset);
+
+            return new WarcReader(inputStream, configuration, offset);
+        } catch (IOException e) {
+            throw new WarcNetworkException("Unable to open WARC location: " + warcUrl + " at offset: " + offset
+                    + "!", e);
+        }
+    }
+
+    private boolean isNetworkFailure(final RuntimeException exception) {
+        // The reader wraps the errors of the stream, so the stream remembers if it failed
+        return warcUrl != null && (exception instanceof WarcNetworkException
+                || (inputStream != null && inputStream.isFailed()));
+    }
+
+    private void closeReader() {
+        try {
+            close();
+        } catch (IOException e) {
+            log.debug("Unable to close WARC file: {}!", this, e);
+        }
+
+        warcReader = null;
+        inputStream = null;
+    }
+
+    private void closeStream() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close the WARC reader!", e);
+        }
+    }
+
+    private static boolean sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+    }
+}
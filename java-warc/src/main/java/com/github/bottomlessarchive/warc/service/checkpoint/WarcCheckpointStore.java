@@ -0,0 +1,25 @@
+package com.github.bottomlessarchive.warc.service.checkpoint;
+
+import com.github.bottomlessarchive.warc.service.checkpoint.domain.WarcCheckpoint;
+
+import java.util.Optional;
+
+/**
+ * Stores the checkpoints of a {@link ResumableWarcReader}. A store belongs to the reading of a single WARC file.
+ */
+public interface WarcCheckpointStore {
+
+    /**
+     * Load the last saved checkpoint.
+     *
+     * @return the last checkpoint, or empty if the reading was never checkpointed
+     */
+    Optional<WarcCheckpoint> load();
+
+    /**
+     * Save a checkpoint. The checkpoint must be durable when this method returns, it replaces the previous one.
+     *
+     * @param checkpoint the checkpoint to save
+     */
+    void save(WarcCheckpoint checkpoint);
+}
@@ -0,0 +1,31 @@
+package com.github.bottomlessarchive.warc.service.checkpoint.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The position of a reading in a WARC file. The reading can be resumed by opening the file at the compressed offset,
+ * and skipping the records of the gzip member that were already consumed.
+ */
+@Getter
+@Builder
+@SuppressWarnings("unused")
+public class WarcCheckpoint {
+
+    /**
+     * The offset of the gzip member that contains the next record, or the offset of the next record in uncompressed
+     * files.
+     */
+    private final long compressedOffset;
+
+    /**
+     * The number of the records that were consumed from the gzip member at the compressed offset. Compressed WARC
+     * files usually contain one record per member, so only a single record is read again when the reading is resumed.
+     */
+    private final long skippedRecords;
+
+    /**
+     * The number of the records that were consumed from the start of the file.
+     */
+    private final long recordCount;
+}
@@ -0,0 +1,219 @@
+package com.github.bottomlessarchive.warc.service.content;
+
+import com.github.bottomlessarchive.warc.service.content.domain.PayloadCharSequence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Decodes payloads to text without the intermediate copies of a {@link java.io.Reader} and a growing
+ * {@link StringBuilder}. Every thread reuses its own {@link CharsetDecoder} and buffers, so decoding a payload
+ * allocates only the decoded text itself, or nothing at all when the text is streamed in chunks.
+ * <p>
+ * Malformed and unmappable input is replaced, like {@link java.io.InputStreamReader} does it.
+ */
+public class PayloadDecoder {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int DEFAULT_FIRST_CHUNK_SIZE = 1024;
+    private static final int MINIMUM_FIRST_CHUNK_SIZE = 16;
+    private static final int MAXIMUM_INITIAL_CHUNK_COUNT = 1024;
+
+    private static final ThreadLocal<DecoderState> DECODER_STATE = ThreadLocal.withInitial(DecoderState::new);
+
+    /**
+     * Decode a payload into a {@link CharSequence}. The payload is fully read after this call.
+     *
+     * @param payload  the payload to decode
+     * @param charset  the charset of the payload
+     * @param sizeHint the expected size of the payload in bytes, for example the value of the Content-Length
+     *                 header, or a negative number when it is unknown
+     * @return the decoded text
+     * @throws IOException when unable to read the payload
+     */
+    public static PayloadCharSequence decode(final InputStream payload, final Charset charset, final long sizeHint)
+            throws IOException {
+        final DecoderState state = acquireState();
+
+        try {
+            final ChunkCollector collector = new ChunkCollector(estimateLength(state.decoder(charset), sizeHint));
+            decode(state, payload, charset, collector);
+
+            return collector.toCharSequence();
+        } finally {
+            state.inUse = false;
+        }
+    }
+
+    /**
+     * Decode a payload and pass the decoded text to the provided consumer in chunks. The chunks are reused, so they
+     * are valid only until the consumer returns. The payload is fully read after this call.
+     *
+     * @param payload       the payload to decode
+     * @param charset       the charset of the payload
+     * @param chunkConsumer the consumer of the decoded chunks
+     * @throws IOException when unable to read the payload
+     */
+    public static void decode(final InputStream payload, final Charset charset,
+            final Consumer<CharBuffer> chunkConsumer) throws IOException {
+        final DecoderState state = acquireState();
+
+        try {
+            decode(state, payload, charset, chunkConsumer);
+        } finally {
+            state.inUse = false;
+        }
+    }
+
+    private static void decode(final DecoderState state, final InputStream payload, final Charset charset,
+            final Consumer<CharBuffer> chunkConsumer) throws IOException {
+        final CharsetDecoder decoder = state.decoder(charset);
+        final ByteBuffer input = state.input;
+        final CharBuffer output = state.chunk.clear();
+
+        input.clear();
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            final int read = payload.read(state.bytes, input.position(), input.remaining());
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                input.position(input.position() + read);
+            }
+
+            input.flip();
+
+            CoderResult result = decoder.decode(input, output, endOfInput);
+            while (result.isOverflow()) {
+                passChunk(output, chunkConsumer);
+                result = decoder.decode(input, output, endOfInput);
+            }
+
+            input.compact();
+        }
+
+        while (decoder.flush(output).isOverflow()) {
+            passChunk(output, chunkConsumer);
+        }
+
+        if (output.position() > 0) {
+            passChunk(output, chunkConsumer);
+        }
+    }
+
+    private static void passChunk(final CharBuffer output, final Consumer<CharBuffer> chunkConsumer) {
+        chunkConsumer.accept(output.flip());
+        output.clear();
+    }
+
+    private static int estimateLength(final CharsetDecoder decoder, final long sizeHint) {
+        if (sizeHint < 0) {
+            return -1;
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(sizeHint * decoder.averageCharsPerByte()));
+    }
+
+    private static DecoderState acquireState() {
+        final DecoderState state = DECODER_STATE.get();
+
+        // A consumer that decodes an other payload while a chunk is passed to it gets its own state
+        if (state.inUse) {
+            final DecoderState nestedState = new DecoderState();
+            nestedState.inUse = true;
+
+            return nestedState;
+        }
+
+        state.inUse = true;
+
+        return state;
+    }
+
+    /**
+     * The reusable objects of the decoding, one instance is used by a thread.
+     */
+    private static class DecoderState {
+
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+        private final ByteBuffer input = ByteBuffer.wrap(bytes);
+        private final CharBuffer chunk = CharBuffer.allocate(BUFFER_SIZE);
+
+        private Charset charset;
+        private CharsetDecoder decoder;
+        private boolean inUse;
+
+        private CharsetDecoder decoder(final Charset requestedCharset) {
+            if (!requestedCharset.equals(charset)) {
+                decoder = requestedCharset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                charset = requestedCharset;
+            }
+
+            return decoder.reset();
+        }
+    }
+
+    /**
+     * Collects the decoded characters into the chunks of a {@link PayloadCharSequence}.
+     */
+    private static class ChunkCollector implements Consumer<CharBuffer> {
+
+        private char[][] chunks;
+        private int length;
+
+        private ChunkCollector(final int expectedLength) {
+            final int firstChunkSize = expectedLength < 0 ? DEFAULT_FIRST_CHUNK_SIZE
+                    : Math.max(MINIMUM_FIRST_CHUNK_SIZE, Math.min(expectedLength, PayloadCharSequence.CHUNK_SIZE));
+
+            // The size hint comes from the headers of the response, so it is not trusted to be correct
+            chunks = new char[Math.max(1, Math.min(MAXIMUM_INITIAL_CHUNK_COUNT,
+                    expectedLength / PayloadCharSequence.CHUNK_SIZE + 1))][];
+            chunks[0] = new char[firstChunkSize];
+        }
+
+        @Override
+        public void accept(final CharBuffer decoded) {
+            while (decoded.hasRemaining()) {
+                final int chunkIndex = length / PayloadCharSequence.CHUNK_SIZE;
+                final int chunkOffset = length % PayloadCharSequence.CHUNK_SIZE;
+
+                final char[] chunk = ensureChunk(chunkIndex, chunkOffset + decoded.remaining());
+                final int count = Math.min(decoded.remaining(), chunk.length - chunkOffset);
+
+                decoded.get(chunk, chunkOffset, count);
+                length += count;
+            }
+        }
+
+        private char[] ensureChunk(final int chunkIndex, final int requiredLength) {
+            if (chunkIndex == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+
+            if (chunks[chunkIndex] == null) {
+                chunks[chunkIndex] = new char[PayloadCharSequence.CHUNK_SIZE];
+            } else if (chunks[chunkIndex].length < requiredLength
+                    && chunks[chunkIndex].length < PayloadCharSequence.CHUNK_SIZE) {
+                // The first chunk is sized by the hint, it is grown up to the full chunk size when the hint was wrong
+                chunks[chunkIndex] = Arrays.copyOf(chunks[chunkIndex], Math.min(PayloadCharSequence.CHUNK_SIZE,
+                        Math.max(requiredLength, chunks[chunkIndex].length * 2)));
+            }
+
+            return chunks[chunkIndex];
+        }
+
+        private PayloadCharSequence toCharSequence() {
+            return new PayloadCharSequence(chunks, length);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.github.bottomlessarchive.warc.service.content.domain;
 
+import com.github.bottomlessarchive.warc.service.payload.BufferedPayload;
+
 import java.io.InputStream;
+import java.util.Optional;
 
 /**
  * A simple implementation of a WarcContentBlock for Most of WARC-Types.
@@ -9,6 +12,7 @@ import java.io.InputStream;
 public class DefaultContentBlock implements WarcContentBlock {
 
     protected final InputStream payload;
+    protected final BufferedPayload bufferedPayload;
 
     /**
      * DefaultContentBlock constructor
@@ -17,6 +21,17 @@ public class DefaultContentBlock implements WarcContentBlock {
      */
     public DefaultContentBlock(final InputStream input) {
         payload = input;
+        bufferedPayload = null;
+    }
+
+    /**
+     * DefaultContentBlock constructor for a buffered content block.
+     *
+     * @param input the buffered content block
+     */
+    public DefaultContentBlock(final BufferedPayload input) {
+        payload = null;
+        bufferedPayload = input;
     }
 
     /**
@@ -25,11 +40,16 @@ public class DefaultContentBlock implements WarcContentBlock {
      * @return payload stream
      */
     public InputStream getPayload() {
-        return payload;
+        return bufferedPayload != null ? bufferedPayload.openStream() : payload;
+    }
+
+    @Override
+    public Optional<BufferedPayload> getBufferedPayload() {
+        return Optional.ofNullable(bufferedPayload);
     }
 
     @Override
     public String toString() {
-        return payload.toString();
+        return bufferedPayload != null ? bufferedPayload.toString() : payload.toString();
     }
 }
@@ -0,0 +1,82 @@
+package com.github.bottomlessarchive.warc.service.content.domain;
+
+/**
+ * The decoded text of a payload. The characters are stored in fixed size chunks instead of one big array, so a
+ * multi-megabyte page doesn't need a huge contiguous array and the text is not copied while it grows. The
+ * subsequences are views of the same chunks.
+ */
+public class PayloadCharSequence implements CharSequence {
+
+    /**
+     * The number of the characters in a chunk. The chunks are small enough to not be humongous objects for the G1
+     * garbage collector.
+     */
+    public static final int CHUNK_SIZE = 32768;
+
+    private static final int CHUNK_SHIFT = 15;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final char[][] chunks;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Create a new sequence on the provided chunks. Every chunk, except the last one, must be {@link #CHUNK_SIZE}
+     * long. A sequence that has only one chunk can have a chunk of any size.
+     *
+     * @param chunks the chunks of the characters
+     * @param length the number of the characters in the chunks
+     */
+    public PayloadCharSequence(final char[][] chunks, final int length) {
+        this(chunks, 0, length);
+    }
+
+    private PayloadCharSequence(final char[][] chunks, final int offset, final int length) {
+        this.chunks = chunks;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of the bounds of length " + length + "!");
+        }
+
+        final int position = offset + index;
+
+        return chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + " - " + end + " is out of the bounds of length "
+                    + length + "!");
+        }
+
+        return new PayloadCharSequence(chunks, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        final char[] result = new char[length];
+
+        int copied = 0;
+        while (copied < length) {
+            final int position = offset + copied;
+            final int chunkOffset = position & CHUNK_MASK;
+            final int count = Math.min(length - copied, chunks[position >>> CHUNK_SHIFT].length - chunkOffset);
+
+            System.arraycopy(chunks[position >>> CHUNK_SHIFT], chunkOffset, result, copied, count);
+            copied += count;
+        }
+
+        return new String(result);
+    }
+}
@@ -1,6 +1,9 @@
 package com.github.bottomlessarchive.warc.service.content.domain;
 
+import com.github.bottomlessarchive.warc.service.payload.BufferedPayload;
+
 import java.io.InputStream;
+import java.util.Optional;
 
 /**
  * WarcContentBlock interface represents content block of a WARC record Here is a list of known
@@ -21,4 +24,14 @@ public interface WarcContentBlock {
      * @return payload InputStream
      */
     InputStream getPayload();
+
+    /**
+     * Return the payload when it was copied into a {@link BufferedPayload} by the reader. In that case every call
+     * to {@link #getPayload()} returns a new stream that reads the payload from its start.
+     *
+     * @return the buffered payload or empty if the payload is read directly from the data source
+     */
+    default Optional<BufferedPayload> getBufferedPayload() {
+        return Optional.empty();
+    }
 }
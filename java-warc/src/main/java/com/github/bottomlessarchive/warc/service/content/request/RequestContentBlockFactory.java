@@ -4,7 +4,7 @@ import com.github.bottomlessarchive.warc.service.WarcFormatException;
 import com.github.bottomlessarchive.warc.service.content.request.domain.RequestContentBlock;
 import com.github.bottomlessarchive.warc.service.header.HeaderParser;
 import java.io.IOException;
-import org.apache.commons.io.input.BoundedInputStream;
+import java.io.InputStream;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.ProtocolVersion;
@@ -20,7 +20,7 @@ public class RequestContentBlockFactory {
 
     private final HeaderParser headerParser = new HeaderParser();
 
-    public RequestContentBlock createWarcRecord(final BoundedInputStream stream)
+    public RequestContentBlock createWarcRecord(final InputStream stream)
         throws IOException {
         SessionInputBufferImpl buffer = new SessionInputBufferImpl(new HttpTransportMetricsImpl(),
             BUFFER_SIZE, 0, null, null);
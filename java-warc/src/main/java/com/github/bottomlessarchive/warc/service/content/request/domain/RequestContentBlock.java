@@ -1,6 +1,7 @@
 package com.github.bottomlessarchive.warc.service.content.request.domain;
 
 import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.payload.BufferedPayload;
 import java.io.InputStream;
 import java.util.Collections;
 import java.util.Map;
@@ -8,7 +9,7 @@ import java.util.Optional;
 import lombok.Builder;
 import lombok.Getter;
 
-@Builder
+@Builder(toBuilder = true)
 @SuppressWarnings("unused")
 public class RequestContentBlock implements WarcContentBlock {
 
@@ -30,9 +31,13 @@ public class RequestContentBlock implements WarcContentBlock {
     /**
      * The payload of the request.
      */
-    @Getter
     private final InputStream payload;
 
+    /**
+     * The copy of the payload, when the payloads are buffered by the reader.
+     */
+    private final BufferedPayload bufferedPayload;
+
     /**
      * The protocol used for the request.
      */
@@ -53,6 +58,22 @@ public class RequestContentBlock implements WarcContentBlock {
 
     private final Map<String, String> headers;
 
+    /**
+     * Return the payload of the request. When the payload is buffered, every call returns a new stream that reads the
+     * payload from its start.
+     *
+     * @return the stream of the payload
+     */
+    @Override
+    public InputStream getPayload() {
+        return bufferedPayload != null ? bufferedPayload.openStream() : payload;
+    }
+
+    @Override
+    public Optional<BufferedPayload> getBufferedPayload() {
+        return Optional.ofNullable(bufferedPayload);
+    }
+
     /**
      * Return a value of a header from the request.
      *
@@ -0,0 +1,45 @@
+package com.github.bottomlessarchive.warc.service.content.response;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A filter on the HTTP status code and the mime type of the response records. It is evaluated on the raw bytes of
+ * the HTTP message, right after the status line and the Content-Type header are found, so the responses that are
+ * not accepted are skipped without parsing their HTTP headers and creating their content blocks.
+ */
+@FunctionalInterface
+public interface ResponseFilter {
+
+    /**
+     * Decide if a response should be returned.
+     *
+     * @param statusCode the HTTP status code of the response or -1 if the block of the record is not a valid HTTP
+     *                   response
+     * @param mimeType   the mime type of the Content-Type header in lower case, without its parameters, or null if
+     *                   the response has no Content-Type header
+     * @return true if the response should be returned
+     */
+    boolean test(int statusCode, String mimeType);
+
+    /**
+     * Create a filter that accepts the responses that have one of the provided status codes and one of the provided
+     * mime types.
+     *
+     * @param statusCodes the accepted status codes, every status code is accepted when it is empty
+     * @param mimeTypes   the accepted mime types, every mime type is accepted when it is empty, otherwise the
+     *                    responses without a mime type are not accepted
+     * @return the created filter
+     */
+    static ResponseFilter of(final Collection<Integer> statusCodes, final Collection<String> mimeTypes) {
+        final Set<Integer> acceptedStatusCodes = Set.copyOf(statusCodes);
+        final Set<String> acceptedMimeTypes = mimeTypes.stream()
+                .map(mimeType -> mimeType.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+
+        return (statusCode, mimeType) -> (acceptedStatusCodes.isEmpty() || acceptedStatusCodes.contains(statusCode))
+                && (acceptedMimeTypes.isEmpty() || mimeType != null && acceptedMimeTypes.contains(mimeType));
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.bottomlessarchive.warc.service.content.response;
+
+import com.github.bottomlessarchive.warc.service.io.WarcInputBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Evaluates a {@link ResponseFilter} on the HTTP message at the current position of a {@link WarcInputBuffer}. The
+ * status line and the headers are scanned in the buffer without consuming them, so the message can still be parsed
+ * when the response is accepted. Only the mime type is decoded, nothing else is created.
+ * <p>
+ * The evaluator is reusable, but not thread safe.
+ */
+public class ResponseFilterEvaluator {
+
+    /**
+     * The maximum length of the status line and the headers that are scanned. The Content-Type headers after it are
+     * not found.
+     */
+    public static final int MAXIMUM_HEAD_LENGTH = 65536;
+
+    private static final byte[] HTTP_VERSION_PREFIX = {'H', 'T', 'T', 'P', '/'};
+    private static final byte[] CONTENT_TYPE_NAME = {'c', 'o', 'n', 't', 'e', 'n', 't', '-', 't', 'y', 'p', 'e', ':'};
+
+    private char[] mimeTypeBuffer = new char[64];
+
+    /**
+     * Evaluate the filter on the HTTP response at the current position of the buffer.
+     *
+     * @param input       the buffer, positioned at the start of the block of a response record
+     * @param blockLength the length of the block
+     * @param httpBlock   true if the block contains an HTTP message, according to the WARC headers of the record
+     * @param filter      the filter to evaluate
+     * @return true if the response is accepted by the filter
+     * @throws IOException when an error happens while reading the buffer
+     */
+    public boolean accept(final WarcInputBuffer input, final long blockLength, final boolean httpBlock,
+            final ResponseFilter filter) throws IOException {
+        if (!httpBlock) {
+            return filter.test(-1, null);
+        }
+
+        final int maximumOffset = (int) Math.min(blockLength, MAXIMUM_HEAD_LENGTH);
+
+        final int statusLineEnd = input.lineEnd(0, maximumOffset);
+        if (statusLineEnd <= 0) {
+            return filter.test(-1, null);
+        }
+
+        final int statusCode = parseStatusCode(input.data(), input.position(), input.position() + statusLineEnd);
+
+        int lineStart = statusLineEnd;
+        while (lineStart < maximumOffset) {
+            final int lineEnd = input.lineEnd(lineStart, maximumOffset);
+            if (lineEnd <= lineStart) {
+                break;
+            }
+
+            final ByteBuffer data = input.data();
+            final int start = input.position() + lineStart;
+            final int end = trimLineTerminator(data, start, input.position() + lineEnd);
+
+            if (start == end) {
+                // The empty line that ends the headers
+                break;
+            }
+
+            if (startsWithIgnoreCase(data, start, end, CONTENT_TYPE_NAME)) {
+                return filter.test(statusCode, parseMimeType(data, start + CONTENT_TYPE_NAME.length, end));
+            }
+
+            lineStart = lineEnd;
+        }
+
+        return filter.test(statusCode, null);
+    }
+
+    private int parseStatusCode(final ByteBuffer data, final int start, final int end) {
+        if (!startsWithIgnoreCase(data, start, end, HTTP_VERSION_PREFIX)) {
+            return -1;
+        }
+
+        int position = start + HTTP_VERSION_PREFIX.length;
+        while (position < end && data.get(position) != ' ') {
+            position++;
+        }
+
+        while (position < end && data.get(position) == ' ') {
+            position++;
+        }
+
+        int result = 0;
+        int digits = 0;
+        while (position < end && digits < 3) {
+            final int digit = data.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+
+            result = result * 10 + digit;
+            digits++;
+            position++;
+        }
+
+        return digits == 3 ? result : -1;
+    }
+
+    private String parseMimeType(final ByteBuffer data, final int start, final int end) {
+        int valueStart = start;
+        while (valueStart < end && isWhitespace(data.get(valueStart))) {
+            valueStart++;
+        }
+
+        int valueEnd = valueStart;
+        while (valueEnd < end && data.get(valueEnd) != ';') {
+            valueEnd++;
+        }
+
+        while (valueEnd > valueStart && isWhitespace(data.get(valueEnd - 1))) {
+            valueEnd--;
+        }
+
+        if (valueStart == valueEnd) {
+            return null;
+        }
+
+        if (mimeTypeBuffer.length < valueEnd - valueStart) {
+            mimeTypeBuffer = new char[valueEnd - valueStart];
+        }
+
+        for (int i = valueStart; i < valueEnd; i++) {
+            mimeTypeBuffer[i - valueStart] = (char) toLowerCase(data.get(i) & 0xFF);
+        }
+
+        return new String(mimeTypeBuffer, 0, valueEnd - valueStart);
+    }
+
+    private static int trimLineTerminator(final ByteBuffer data, final int start, final int end) {
+        int result = end;
+
+        if (result > start && data.get(result - 1) == '\n') {
+            result--;
+        }
+
+        if (result > start && data.get(result - 1) == '\r') {
+            result--;
+        }
+
+        return result;
+    }
+
+    private static boolean startsWithIgnoreCase(final ByteBuffer data, final int start, final int end,
+            final byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (toLowerCase(data.get(start + i) & 0xFF) != toLowerCase(prefix[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int toLowerCase(final int value) {
+        return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+    }
+
+    private static boolean isWhitespace(final byte value) {
+        return value == ' ' || value == '\t';
+    }
+}
@@ -2,21 +2,25 @@ package com.github.bottomlessarchive.warc.service.content.response.domain;
 
 import com.github.bottomlessarchive.warc.service.WarcParsingException;
 import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.PayloadDecoder;
 import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.payload.BufferedPayload;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import lombok.Builder;
 import lombok.Getter;
-import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHeaders;
 
 /**
  * An implementation of WarcContentBlock interface to handle contents block's of WARC responses.
  */
-@Builder
+@Builder(toBuilder = true)
 @SuppressWarnings("unused")
 public class ResponseContentBlock implements WarcContentBlock {
 
@@ -32,9 +36,13 @@ public class ResponseContentBlock implements WarcContentBlock {
     /**
      * The payload of the content block. Contains the data sent back as response body by the server.
      */
-    @Getter
     private final InputStream payload;
 
+    /**
+     * The copy of the payload, when the payloads are buffered by the reader.
+     */
+    private final BufferedPayload bufferedPayload;
+
     /**
      * The mime type of the response.
      *
@@ -47,6 +55,22 @@ public class ResponseContentBlock implements WarcContentBlock {
     private final Charset charset;
     private final Map<String, String> headers;
 
+    /**
+     * Return the payload of the response. When the payload is buffered, every call returns a new stream that reads the
+     * payload from its start.
+     *
+     * @return the stream of the payload
+     */
+    @Override
+    public InputStream getPayload() {
+        return bufferedPayload != null ? bufferedPayload.openStream() : payload;
+    }
+
+    @Override
+    public Optional<BufferedPayload> getBufferedPayload() {
+        return Optional.ofNullable(bufferedPayload);
+    }
+
     /**
      * Return a value of a header from the response.
      *
@@ -79,17 +103,59 @@ public class ResponseContentBlock implements WarcContentBlock {
     /**
      * Return the payload as a {@link String} instance. After this method is called consider the
      * payload of this content block fully read. Any further read on the payload will raise an
-     * exception.
+     * exception, unless the payload is buffered.
      *
      * @return the payload of the content block as string
      */
     public String getPayloadAsString() {
-        final Charset charset = this.charset != null ? this.charset : WarcReader.DEFAULT_CHARSET;
+        return getPayloadAsCharSequence().toString();
+    }
+
+    /**
+     * Return the payload as a {@link CharSequence}. The text is decoded with a reused decoder into chunks that are
+     * sized by the Content-Length header of the response, so no intermediate copies of the text are created. After
+     * this method is called consider the payload of this content block fully read.
+     *
+     * @return the payload of the content block as text
+     */
+    public CharSequence getPayloadAsCharSequence() {
+        try {
+            return PayloadDecoder.decode(getPayload(), getPayloadCharset(), getContentLength());
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to parse the payload of a WARC document!", e);
+        }
+    }
 
+    /**
+     * Decode the payload and pass the text to the provided consumer in chunks. The chunks are reused, so they are
+     * valid only until the consumer returns. After this method is called consider the payload of this content block
+     * fully read.
+     *
+     * @param chunkConsumer the consumer of the decoded chunks
+     */
+    public void decodePayload(final Consumer<CharBuffer> chunkConsumer) {
         try {
-            return IOUtils.toString(payload, charset);
+            PayloadDecoder.decode(getPayload(), getPayloadCharset(), chunkConsumer);
         } catch (IOException e) {
             throw new WarcParsingException("Unable to parse the payload of a WARC document!", e);
         }
     }
+
+    private Charset getPayloadCharset() {
+        return charset != null ? charset : WarcReader.DEFAULT_CHARSET;
+    }
+
+    private long getContentLength() {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                try {
+                    return Long.parseLong(header.getValue().trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+
+        return -1;
+    }
 }
@@ -0,0 +1,205 @@
+package com.github.bottomlessarchive.warc.service.digest;
+
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestVerificationResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A stream on the block of a record that passes every byte to the digest calculation of the record. The skipped
+ * bytes are read too, because they are part of the digests. Created by a {@link WarcDigestVerifier}.
+ */
+public class DigestingInputStream extends InputStream {
+
+    private final InputStream source;
+    private final RecordDigestCalculation calculation;
+    private final WarcDigestVerifier verifier;
+
+    private final CompletableFuture<DigestVerificationResult> verification = new CompletableFuture<>();
+
+    // Only used when the digests are calculated on an executor
+    private CompletableFuture<Void> pendingUpdates = CompletableFuture.completedFuture(null);
+    private byte[] buffer;
+    private int bufferLength;
+
+    private boolean finished;
+
+    DigestingInputStream(final InputStream source, final RecordDigestCalculation calculation,
+            final WarcDigestVerifier verifier) {
+        this.source = source;
+        this.calculation = calculation;
+        this.verifier = verifier;
+    }
+
+    /**
+     * Return the result of the verification. It is completed after {@link #finish()} is called and the digests are
+     * calculated.
+     *
+     * @return the result of the verification
+     */
+    public CompletableFuture<DigestVerificationResult> getVerification() {
+        return verification;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int result = source.read();
+
+        if (result >= 0) {
+            if (verifier.getExecutor() == null) {
+                verifier.getSkipBuffer()[0] = (byte) result;
+                calculation.update(verifier.getSkipBuffer(), 0, 1);
+            } else {
+                ensureBuffer();
+                buffer[bufferLength++] = (byte) result;
+                flushFullBuffer();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) throws IOException {
+        final int read = source.read(target, offset, length);
+
+        if (read > 0) {
+            digest(target, offset, read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(final long length) throws IOException {
+        long skipped = 0;
+
+        while (skipped < length) {
+            final int read = readForSkip((int) Math.min(length - skipped, WarcDigestVerifier.BUFFER_SIZE));
+            if (read < 0) {
+                break;
+            }
+
+            skipped += read;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return source.available();
+    }
+
+    /**
+     * Read the rest of the block and finish the calculation of the digests.
+     *
+     * @throws IOException when unable to read the rest of the block
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+
+        try {
+            skip(Long.MAX_VALUE);
+        } catch (IOException | RuntimeException e) {
+            verification.completeExceptionally(e);
+
+            throw e;
+        }
+
+        if (verifier.getExecutor() == null) {
+            verifier.complete(calculation, verification);
+
+            return;
+        }
+
+        if (bufferLength > 0) {
+            submitBuffer();
+        }
+
+        pendingUpdates.whenComplete((result, error) -> {
+            if (error != null) {
+                verification.completeExceptionally(error);
+            } else {
+                verifier.complete(calculation, verification);
+            }
+        });
+    }
+
+    private int readForSkip(final int length) throws IOException {
+        if (verifier.getExecutor() == null) {
+            final int read = source.read(verifier.getSkipBuffer(), 0, length);
+            if (read > 0) {
+                calculation.update(verifier.getSkipBuffer(), 0, read);
+            }
+
+            return read;
+        }
+
+        // The skipped bytes are read straight into the buffer that is passed to the executor
+        ensureBuffer();
+
+        final int read = source.read(buffer, bufferLength, Math.min(length, buffer.length - bufferLength));
+        if (read > 0) {
+            bufferLength += read;
+            flushFullBuffer();
+        }
+
+        return read;
+    }
+
+    private void digest(final byte[] data, final int offset, final int length) throws IOException {
+        if (verifier.getExecutor() == null) {
+            calculation.update(data, offset, length);
+
+            return;
+        }
+
+        int copied = 0;
+        while (copied < length) {
+            ensureBuffer();
+
+            final int count = Math.min(length - copied, buffer.length - bufferLength);
+            System.arraycopy(data, offset + copied, buffer, bufferLength, count);
+            bufferLength += count;
+            copied += count;
+
+            flushFullBuffer();
+        }
+    }
+
+    private void ensureBuffer() throws IOException {
+        if (buffer == null) {
+            buffer = verifier.acquireBuffer();
+            bufferLength = 0;
+        }
+    }
+
+    private void flushFullBuffer() {
+        if (bufferLength == buffer.length) {
+            submitBuffer();
+        }
+    }
+
+    private void submitBuffer() {
+        final byte[] submittedBuffer = buffer;
+        final int submittedLength = bufferLength;
+
+        buffer = null;
+        bufferLength = 0;
+
+        // The updates of a record are chained, so they are applied in order
+        pendingUpdates = pendingUpdates.thenRunAsync(() -> {
+            try {
+                calculation.update(submittedBuffer, 0, submittedLength);
+            } finally {
+                verifier.releaseBuffer(submittedBuffer);
+            }
+        }, verifier.getExecutor());
+    }
+}
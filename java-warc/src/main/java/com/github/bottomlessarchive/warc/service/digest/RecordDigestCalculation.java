@@ -0,0 +1,131 @@
+package com.github.bottomlessarchive.warc.service.digest;
+
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestStatus;
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestVerificationResult;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+
+import java.security.MessageDigest;
+
+/**
+ * Calculates the block and payload digests of a single record. The bytes of the block are provided in order, the
+ * start of the payload is found by looking for the empty line that ends the HTTP headers in them.
+ */
+class RecordDigestCalculation {
+
+    private static final int HEADER_END_NOT_FOUND = -1;
+
+    private final String recordId;
+    private final WarcRecordType type;
+
+    private final DigestStatus blockStatus;
+    private final WarcDigest expectedBlockDigest;
+    private final MessageDigest blockDigest;
+
+    private final DigestStatus payloadStatus;
+    private final WarcDigest expectedPayloadDigest;
+    private final MessageDigest payloadDigest;
+    private final boolean payloadIsBlock;
+
+    // 0: in a line, 1: after a '\n', 2: after a "\n\r", 3: in the payload
+    private int headerEndState;
+
+    RecordDigestCalculation(final String recordId, final WarcRecordType type, final DigestStatus blockStatus,
+            final WarcDigest expectedBlockDigest, final MessageDigest blockDigest, final DigestStatus payloadStatus,
+            final WarcDigest expectedPayloadDigest, final MessageDigest payloadDigest, final boolean payloadIsBlock) {
+        this.recordId = recordId;
+        this.type = type;
+        this.blockStatus = blockStatus;
+        this.expectedBlockDigest = expectedBlockDigest;
+        this.blockDigest = blockDigest;
+        this.payloadStatus = payloadStatus;
+        this.expectedPayloadDigest = expectedPayloadDigest;
+        this.payloadDigest = payloadDigest;
+        this.payloadIsBlock = payloadIsBlock;
+
+        if (blockDigest != null) {
+            blockDigest.reset();
+        }
+
+        if (payloadDigest != null) {
+            payloadDigest.reset();
+        }
+    }
+
+    void update(final byte[] data, final int offset, final int length) {
+        if (blockDigest != null) {
+            blockDigest.update(data, offset, length);
+        }
+
+        if (payloadDigest == null) {
+            return;
+        }
+
+        if (payloadIsBlock || headerEndState == 3) {
+            payloadDigest.update(data, offset, length);
+
+            return;
+        }
+
+        final int payloadStart = findHeaderEnd(data, offset, offset + length);
+        if (payloadStart != HEADER_END_NOT_FOUND) {
+            payloadDigest.update(data, payloadStart, offset + length - payloadStart);
+        }
+    }
+
+    DigestVerificationResult result() {
+        final DigestVerificationResult.DigestVerificationResultBuilder result = DigestVerificationResult.builder()
+                .recordId(recordId)
+                .type(type)
+                .blockDigestStatus(blockStatus)
+                .payloadDigestStatus(payloadStatus);
+
+        final byte[] calculatedBlockDigest = blockDigest != null ? blockDigest.digest() : null;
+        if (calculatedBlockDigest != null) {
+            result.blockDigestStatus(expectedBlockDigest.verify(calculatedBlockDigest))
+                    .blockDigest(expectedBlockDigest.format(calculatedBlockDigest));
+        }
+
+        if (expectedPayloadDigest != null) {
+            // When the payload is the whole block and the algorithms are the same, the block digest is reused
+            final byte[] calculatedPayloadDigest = payloadDigest != null ? payloadDigest.digest()
+                    : calculatedBlockDigest;
+
+            // A block without the end of the HTTP headers has no payload to verify
+            if (payloadIsBlock || headerEndState == 3) {
+                result.payloadDigestStatus(expectedPayloadDigest.verify(calculatedPayloadDigest))
+                        .payloadDigest(expectedPayloadDigest.format(calculatedPayloadDigest));
+            } else {
+                result.payloadDigestStatus(DigestStatus.NOT_VERIFIED);
+            }
+        }
+
+        return result.build();
+    }
+
+    /**
+     * Look for the empty line that ends the HTTP headers. Both "\r\n\r\n" and "\n\n" are accepted.
+     *
+     * @return the offset of the first byte of the payload or -1 if the headers don't end in the provided range
+     */
+    private int findHeaderEnd(final byte[] data, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final byte value = data[i];
+
+            if (value == '\n') {
+                if (headerEndState != 0) {
+                    headerEndState = 3;
+
+                    return i + 1;
+                }
+
+                headerEndState = 1;
+            } else if (value == '\r' && headerEndState == 1) {
+                headerEndState = 2;
+            } else {
+                headerEndState = 0;
+            }
+        }
+
+        return HEADER_END_NOT_FOUND;
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.bottomlessarchive.warc.service.digest;
+
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestStatus;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A digest header value of a WARC record, like "sha1:PHGRZMLKNUJMX6ZWHQQSF34D6W5ZUEOC". The algorithm label is
+ * followed by the digest. The specification recommends base32 encoding, but hexadecimal and base64 encoded
+ * digests are accepted too, because some tools write them.
+ *
+ * @see <a href="https://iipc.github.io/warc-specifications/specifications/warc-format/warc-1.1/#warc-block-digest">
+ * https://iipc.github.io/warc-specifications/specifications/warc-format/warc-1.1/#warc-block-digest</a>
+ */
+public class WarcDigest {
+
+    private static final char[] BASE32_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+    private static final char[] HEX_ALPHABET = "0123456789abcdef".toCharArray();
+
+    private static final Map<String, String> ALGORITHMS = Map.of(
+            "sha1", "SHA-1",
+            "sha-1", "SHA-1",
+            "sha256", "SHA-256",
+            "sha-256", "SHA-256",
+            "sha512", "SHA-512",
+            "sha-512", "SHA-512",
+            "md5", "MD5"
+    );
+
+    private final String label;
+    private final String algorithm;
+    private final String value;
+
+    private WarcDigest(final String label, final String algorithm, final String value) {
+        this.label = label;
+        this.algorithm = algorithm;
+        this.value = value;
+    }
+
+    /**
+     * Parse the value of a digest header.
+     *
+     * @param headerValue the value of the header
+     * @return the parsed digest or null if the value is not a "algorithm:digest" pair with a known algorithm
+     */
+    public static WarcDigest parse(final String headerValue) {
+        if (headerValue == null) {
+            return null;
+        }
+
+        final int separator = headerValue.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+
+        final String label = headerValue.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+        final String algorithm = ALGORITHMS.get(label);
+        if (algorithm == null) {
+            return null;
+        }
+
+        return new WarcDigest(label, algorithm, headerValue.substring(separator + 1).trim());
+    }
+
+    /**
+     * Create a new {@link MessageDigest} of the algorithm of this digest.
+     *
+     * @return the created message digest
+     */
+    public MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The " + algorithm + " algorithm is not supported by the JVM!", e);
+        }
+    }
+
+    /**
+     * Return the name of the algorithm of this digest, as it is known by {@link MessageDigest}.
+     *
+     * @return the name of the algorithm
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Compare this digest with a calculated one. The encoding of this digest is detected from its length.
+     *
+     * @param digest the calculated digest
+     * @return {@link DigestStatus#VALID} or {@link DigestStatus#INVALID}, or {@link DigestStatus#NOT_VERIFIED} when
+     * the encoding of this digest is unknown
+     */
+    public DigestStatus verify(final byte[] digest) {
+        final String unpaddedValue = stripPadding(value);
+        final String base32 = encodeBase32(digest);
+        final String base64 = Base64.getEncoder().withoutPadding().encodeToString(digest);
+
+        boolean knownEncoding = false;
+        if (unpaddedValue.length() == base32.length()) {
+            if (unpaddedValue.equalsIgnoreCase(base32)) {
+                return DigestStatus.VALID;
+            }
+
+            knownEncoding = true;
+        }
+
+        if (value.length() == digest.length * 2) {
+            if (value.equalsIgnoreCase(encodeHex(digest))) {
+                return DigestStatus.VALID;
+            }
+
+            knownEncoding = true;
+        }
+
+        if (unpaddedValue.length() == base64.length()) {
+            if (unpaddedValue.equals(base64)) {
+                return DigestStatus.VALID;
+            }
+
+            knownEncoding = true;
+        }
+
+        return knownEncoding ? DigestStatus.INVALID : DigestStatus.NOT_VERIFIED;
+    }
+
+    /**
+     * Format a calculated digest like this digest is formatted, with the label of the algorithm and base32 encoding.
+     *
+     * @param digest the calculated digest
+     * @return the formatted digest
+     */
+    public String format(final byte[] digest) {
+        return label + ":" + encodeBase32(digest);
+    }
+
+    /**
+     * Encode the provided bytes with the base32 encoding of RFC 4648, without padding.
+     *
+     * @param data the bytes to encode
+     * @return the encoded bytes
+     */
+    public static String encodeBase32(final byte[] data) {
+        final StringBuilder result = new StringBuilder((data.length * 8 + 4) / 5);
+
+        int buffer = 0;
+        int bufferedBits = 0;
+        for (byte value : data) {
+            buffer = (buffer << 8) | (value & 0xFF);
+            bufferedBits += 8;
+
+            while (bufferedBits >= 5) {
+                result.append(BASE32_ALPHABET[(buffer >> (bufferedBits - 5)) & 0x1F]);
+                bufferedBits -= 5;
+            }
+        }
+
+        if (bufferedBits > 0) {
+            result.append(BASE32_ALPHABET[(buffer << (5 - bufferedBits)) & 0x1F]);
+        }
+
+        return result.toString();
+    }
+
+    private static String encodeHex(final byte[] data) {
+        final char[] result = new char[data.length * 2];
+
+        for (int i = 0; i < data.length; i++) {
+            result[i * 2] = HEX_ALPHABET[(data[i] >> 4) & 0x0F];
+            result[i * 2 + 1] = HEX_ALPHABET[data[i] & 0x0F];
+        }
+
+        return new String(result);
+    }
+
+    private static String stripPadding(final String value) {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == '=') {
+            end--;
+        }
+
+        return value.substring(0, end);
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.bottomlessarchive.warc.service.digest;
+
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestStatus;
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestVerificationResult;
+import com.github.bottomlessarchive.warc.service.metrics.WarcReaderListener;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Verifies the WARC-Block-Digest and WARC-Payload-Digest headers of the records of a reader, while their blocks are
+ * read. The digests are calculated from the bytes that flow through the streams of the blocks, so the blocks don't
+ * have to be read twice. The payload of the records that contain HTTP messages starts after the HTTP headers,
+ * otherwise it is the whole block.
+ * <p>
+ * When an executor is provided the digests are calculated on it, the bytes of the blocks are copied into pooled
+ * buffers and passed to the executor in order. The number of the buffers is bounded, so the reader waits when the
+ * executor falls behind. Without an executor the digests are calculated on the reading thread.
+ * <p>
+ * An instance belongs to a single reader.
+ */
+public class WarcDigestVerifier {
+
+    /**
+     * The size of the buffers that pass the data to the executor.
+     */
+    public static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The maximum number of buffers that are waiting for the executor.
+     */
+    public static final int BUFFER_COUNT = 16;
+
+    private static final String HTTP_CONTENT_TYPE = "application/http";
+
+    private final Executor executor;
+    private final WarcReaderListener listener;
+
+    // The digests are reused between the records when they are calculated on the reading thread
+    private final Map<String, MessageDigest> blockDigests = new HashMap<>();
+    private final Map<String, MessageDigest> payloadDigests = new HashMap<>();
+    private final byte[] skipBuffer;
+
+    private final BlockingQueue<byte[]> bufferPool;
+    private int createdBufferCount;
+
+    /**
+     * Create a new verifier.
+     *
+     * @param executor the executor that calculates the digests or null to calculate them on the reading thread
+     * @param listener the listener that is notified about the results, can be null
+     */
+    public WarcDigestVerifier(final Executor executor, final WarcReaderListener listener) {
+        this.executor = executor;
+        this.listener = listener;
+        this.skipBuffer = executor == null ? new byte[BUFFER_SIZE] : null;
+        this.bufferPool = executor != null ? new ArrayBlockingQueue<>(BUFFER_COUNT) : null;
+    }
+
+    /**
+     * Wrap the stream of a block into a stream that calculates the digests of the block.
+     *
+     * @param type        the type of the record
+     * @param warcHeaders the WARC headers of the record
+     * @param blockStream the stream of the block
+     * @return the stream that calculates the digests
+     */
+    public DigestingInputStream open(final WarcRecordType type, final Map<String, String> warcHeaders,
+            final InputStream blockStream) {
+        final String blockDigestHeader = warcHeaders.get("WARC-Block-Digest");
+        final String payloadDigestHeader = warcHeaders.get("WARC-Payload-Digest");
+
+        final WarcDigest expectedBlockDigest = WarcDigest.parse(blockDigestHeader);
+        final DigestStatus blockStatus = blockDigestHeader == null ? DigestStatus.MISSING : DigestStatus.NOT_VERIFIED;
+        final MessageDigest blockDigest = expectedBlockDigest != null
+                ? messageDigest(blockDigests, expectedBlockDigest) : null;
+
+        WarcDigest expectedPayloadDigest = WarcDigest.parse(payloadDigestHeader);
+        DigestStatus payloadStatus = payloadDigestHeader == null ? DigestStatus.MISSING : DigestStatus.NOT_VERIFIED;
+        if (type == WarcRecordType.REVISIT) {
+            // The payload digest of a revisit record belongs to the payload of the revisited record
+            expectedPayloadDigest = null;
+        }
+
+        final boolean payloadIsBlock = !isHttpBlock(type, warcHeaders.get("Content-Type"));
+
+        MessageDigest payloadDigest = null;
+        if (expectedPayloadDigest != null && !(payloadIsBlock && blockDigest != null
+                && expectedPayloadDigest.getAlgorithm().equals(expectedBlockDigest.getAlgorithm()))) {
+            payloadDigest = messageDigest(payloadDigests, expectedPayloadDigest);
+        }
+
+        final RecordDigestCalculation calculation = new RecordDigestCalculation(warcHeaders.get("WARC-Record-ID"),
+                type, blockStatus, expectedBlockDigest, blockDigest, payloadStatus, expectedPayloadDigest, payloadDigest,
+                payloadIsBlock);
+
+        return new DigestingInputStream(blockStream, calculation, this);
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    byte[] getSkipBuffer() {
+        return skipBuffer;
+    }
+
+    byte[] acquireBuffer() throws InterruptedIOException {
+        final byte[] buffer = bufferPool.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+
+        if (createdBufferCount < BUFFER_COUNT) {
+            createdBufferCount++;
+
+            return new byte[BUFFER_SIZE];
+        }
+
+        try {
+            return bufferPool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while waiting for the digest calculation!");
+        }
+    }
+
+    void releaseBuffer(final byte[] buffer) {
+        bufferPool.offer(buffer);
+    }
+
+    void complete(final RecordDigestCalculation calculation,
+            final CompletableFuture<DigestVerificationResult> verification) {
+        final DigestVerificationResult result = calculation.result();
+
+        if (listener != null) {
+            listener.digestVerified(result);
+        }
+
+        verification.complete(result);
+    }
+
+    private MessageDigest messageDigest(final Map<String, MessageDigest> cache, final WarcDigest digest) {
+        if (executor != null) {
+            // The calculations of multiple records can run at the same time on the executor
+            return digest.newMessageDigest();
+        }
+
+        return cache.computeIfAbsent(digest.getAlgorithm(), algorithm -> digest.newMessageDigest());
+    }
+
+    private static boolean isHttpBlock(final WarcRecordType type, final String contentType) {
+        return (type == WarcRecordType.RESPONSE || type == WarcRecordType.REQUEST) && contentType != null
+                && contentType.regionMatches(true, 0, HTTP_CONTENT_TYPE, 0, HTTP_CONTENT_TYPE.length());
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.bottomlessarchive.warc.service.digest.domain;
+
+/**
+ * The outcome of the verification of a digest header.
+ */
+public enum DigestStatus {
+
+    /**
+     * The digest in the header matches the digest of the data.
+     */
+    VALID,
+
+    /**
+     * The digest in the header doesn't match the digest of the data.
+     */
+    INVALID,
+
+    /**
+     * The record has no such digest header.
+     */
+    MISSING,
+
+    /**
+     * The digest was not verified, because its algorithm or encoding is unknown, because it doesn't belong to the
+     * data of the record (like the payload digest of a revisit record), or because the payload can't be found (like
+     * in an HTTP message without the end of its headers).
+     */
+    NOT_VERIFIED
+}
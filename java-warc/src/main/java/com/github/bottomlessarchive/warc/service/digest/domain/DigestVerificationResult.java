@@ -0,0 +1,55 @@
+package com.github.bottomlessarchive.warc.service.digest.domain;
+
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The result of the verification of the WARC-Block-Digest and WARC-Payload-Digest headers of a record.
+ */
+@Getter
+@Builder
+@SuppressWarnings("unused")
+public class DigestVerificationResult {
+
+    /**
+     * The WARC-Record-ID of the verified record.
+     */
+    private final String recordId;
+
+    /**
+     * The type of the verified record.
+     */
+    private final WarcRecordType type;
+
+    /**
+     * The outcome of the verification of the WARC-Block-Digest header.
+     */
+    private final DigestStatus blockDigestStatus;
+
+    /**
+     * The outcome of the verification of the WARC-Payload-Digest header.
+     */
+    private final DigestStatus payloadDigestStatus;
+
+    /**
+     * The calculated digest of the block, in the same "algorithm:base32" format as the header, or null when it was
+     * not calculated.
+     */
+    private final String blockDigest;
+
+    /**
+     * The calculated digest of the payload, in the same "algorithm:base32" format as the header, or null when it
+     * was not calculated.
+     */
+    private final String payloadDigest;
+
+    /**
+     * Return true if none of the digests are invalid. The missing and not verified digests are considered valid.
+     *
+     * @return true if no digest is invalid
+     */
+    public boolean isValid() {
+        return blockDigestStatus != DigestStatus.INVALID && payloadDigestStatus != DigestStatus.INVALID;
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.bottomlessarchive.warc.service.domain;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.response.ResponseFilter;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaders;
+import com.github.bottomlessarchive.warc.service.metrics.WarcReaderListener;
+import com.github.bottomlessarchive.warc.service.payload.PayloadBufferPool;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+import com.github.bottomlessarchive.warc.service.surt.SurtPrefixFilter;
+import java.nio.charset.Charset;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The configuration of a {@link WarcReader}. Create it with the builder, every field that is not set gets its
+ * default value.
+ */
+@Getter
+@Builder(toBuilder = true)
+@SuppressWarnings("unused")
+public class WarcReaderConfiguration {
+
+    /**
+     * The default amount of memory used by the buffers of the read-ahead.
+     */
+    public static final long DEFAULT_READ_AHEAD_MEMORY_LIMIT = 16777216;
+
+    /**
+     * The default number of buffers used by the read-ahead.
+     */
+    public static final int DEFAULT_READ_AHEAD_DEPTH = 16;
+
+    /**
+     * The character set used by the parser.
+     */
+    @Builder.Default
+    private final Charset charset = WarcReader.DEFAULT_CHARSET;
+
+    /**
+     * True if the data source is compressed, false otherwise.
+     */
+    @Builder.Default
+    private final boolean compressed = true;
+
+    /**
+     * The types of the records that are returned by the reader. The records of other types are skipped right after
+     * their WARC headers are parsed, without parsing their content blocks.
+     */
+    @Builder.Default
+    private final Set<WarcRecordType> recordTypes = EnumSet.allOf(WarcRecordType.class);
+
+    /**
+     * An optional filter on the WARC headers of the records. The records that are not accepted are skipped without
+     * parsing their content blocks. It is evaluated only on the records that have one of the required types.
+     */
+    private final Predicate<WarcHeaders> headerFilter;
+
+    /**
+     * An optional filter on the HTTP status code and the mime type of the response records. It is evaluated on the
+     * raw bytes of the HTTP messages, so the responses that are not accepted are skipped without parsing their HTTP
+     * headers. It is evaluated only on the response records that are accepted by the record type and header filters.
+     */
+    private final ResponseFilter responseFilter;
+
+    /**
+     * An optional filter on the SURT form of the WARC-Target-URI headers. It is evaluated on the raw bytes of the
+     * headers, so the records that are not accepted are skipped before their headers are decoded. The records
+     * without a target URI are not accepted when it is set.
+     */
+    private final SurtPrefixFilter urlFilter;
+
+    /**
+     * If true, the data source is read and decompressed ahead on a background thread, while the records are
+     * processed on the thread that reads them. Uncompressed local files are read through a memory mapping, so they
+     * are never read ahead.
+     * <p>
+     * The reader must be closed when it is set, even when it is abandoned before its end. Otherwise the background
+     * thread, its buffers and the decompressor are kept until the reader is garbage collected.
+     */
+    private final boolean readAhead;
+
+    /**
+     * The number of buffers that can be filled ahead.
+     */
+    @Builder.Default
+    private final int readAheadDepth = DEFAULT_READ_AHEAD_DEPTH;
+
+    /**
+     * The total size of the read-ahead buffers, in bytes. It is divided evenly between the buffers.
+     */
+    @Builder.Default
+    private final long readAheadMemoryLimit = DEFAULT_READ_AHEAD_MEMORY_LIMIT;
+
+    /**
+     * An optional listener that receives the metrics of the reading. When it is not set nothing is measured, so the
+     * reading has no overhead.
+     */
+    private final WarcReaderListener listener;
+
+    /**
+     * If true, the WARC-Block-Digest and WARC-Payload-Digest headers of the returned records are verified while
+     * their blocks are read. The skipped parts of the blocks are read too, so they can be verified.
+     */
+    private final boolean verifyDigests;
+
+    /**
+     * An optional executor that calculates the digests when they are verified. When it is not set the digests are
+     * calculated on the thread that reads the records.
+     */
+    private final Executor digestExecutor;
+
+    /**
+     * If true, the corrupt or truncated gzip members of a compressed data source are skipped, and the reading
+     * continues at the next member, instead of failing. The malformed records are still reported by the reader, so
+     * they can be skipped by the {@link com.github.bottomlessarchive.warc.service.SafeWarcRecordIterator}.
+     */
+    private final boolean recoverMalformedData;
+
+    /**
+     * An optional pool of payload buffers. When it is set, the content blocks of the returned records are created and
+     * their payloads are copied into {@link com.github.bottomlessarchive.warc.service.payload.BufferedPayload}s while
+     * the records are read. The payloads can be read repeatedly then, and after the reader moved on.
+     */
+    private final PayloadBufferPool payloadBufferPool;
+
+    /**
+     * Return the size of one read-ahead buffer.
+     *
+     * @return the size of one buffer
+     */
+    public int getReadAheadBufferSize() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, readAheadMemoryLimit / readAheadDepth));
+    }
+}
@@ -0,0 +1,337 @@
+package com.github.bottomlessarchive.warc.service.engine;
+
+import com.github.bottomlessarchive.warc.service.WarcFormatException;
+import com.github.bottomlessarchive.warc.service.WarcNetworkException;
+import com.github.bottomlessarchive.warc.service.WarcParsingException;
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.WarcRecordCursor;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaders;
+import com.github.bottomlessarchive.warc.service.payload.BufferedPayload;
+import com.github.bottomlessarchive.warc.service.payload.PayloadBufferPool;
+import com.github.bottomlessarchive.warc.service.record.WarcRecordFactory;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Processes the records of a single WARC file with many threads. Finding the boundaries of the records is cheap
+ * compared with parsing the HTTP messages of their content blocks, so one thread inflates the file and frames its
+ * records: it tokenizes the WARC headers, applies the filters of the reader and copies the raw content blocks into
+ * {@link BufferedPayload}s. The content blocks are parsed into records by a pool of workers in parallel.
+ * <p>
+ * When the pipeline is ordered, the records are passed to the consumer in the order of the file, one at a time, but
+ * not always from the same thread. When it is unordered, the consumer is called by the workers as soon as they
+ * finish a record, concurrently, so it must be thread safe. Either way, the content blocks of the records are valid
+ * only until the consumer returns, unless the payloads are buffered by the reader too (see
+ * {@link WarcReaderConfiguration#getPayloadBufferPool()}).
+ * <p>
+ * The number of the framed records that are waiting for the workers or the consumer is limited, so a slow consumer
+ * slows down the framing thread instead of filling the memory. The digests of the records are not verified.
+ */
+@Slf4j
+@Getter
+@Builder
+@SuppressWarnings("unused")
+public class WarcParsingPipeline {
+
+    /**
+     * The default number of the records that are framed but not yet passed to the consumer.
+     */
+    public static final int DEFAULT_MAXIMUM_PENDING_RECORDS = 1024;
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    private static final WarcRecordFactory WARC_RECORD_FACTORY = new WarcRecordFactory();
+
+    /**
+     * The number of the threads that parse the content blocks.
+     */
+    @Builder.Default
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Whether the records should reach the consumer in the order of the file.
+     */
+    @Builder.Default
+    private final boolean ordered = true;
+
+    /**
+     * The maximum number of the records that are framed but not yet passed to the consumer. At least one record is
+     * always allowed.
+     */
+    @Builder.Default
+    private final int maximumPendingRecords = DEFAULT_MAXIMUM_PENDING_RECORDS;
+
+    /**
+     * The pool of the buffers that hold the framed content blocks. The big blocks are spilled to temporary files.
+     */
+    @Builder.Default
+    private final PayloadBufferPool framePool = PayloadBufferPool.builder().build();
+
+    /**
+     * The configuration of the readers that are opened by the pipeline. Whether a file is compressed or not is
+     * decided by its name, every file that has a name ending with ".gz" is considered to be compressed.
+     */
+    @Builder.Default
+    private final WarcReaderConfiguration configuration = WarcReaderConfiguration.builder().build();
+
+    /**
+     * Process the records of a local WARC file.
+     *
+     * @param warcFileLocation the location of the file
+     * @param consumer         the consumer of the records
+     * @param <T>              the type of the content blocks
+     * @return the number of the records passed to the consumer
+     * @throws WarcFormatException  when unable to frame a record of the file
+     * @throws WarcParsingException when unable to read the file
+     */
+    public <T extends WarcContentBlock> long processFile(final Path warcFileLocation,
+            final Consumer<WarcRecord<T>> consumer) {
+        return process(new WarcReader(warcFileLocation, configuration.toBuilder()
+                .compressed(warcFileLocation.toString().endsWith(".gz"))
+                .build()), consumer);
+    }
+
+    /**
+     * Process the records of a reader. The reader is closed after every record is passed to the consumer. The
+     * framing is done on the calling thread, with the filters of the reader. The payloads are buffered when the
+     * configuration of the pipeline has a payload buffer pool.
+     *
+     * @param warcReader the reader of the records
+     * @param consumer   the consumer of the records
+     * @param <T>        the type of the content blocks
+     * @return the number of the records passed to the consumer
+     * @throws WarcFormatException  when unable to frame a record of the reader
+     * @throws WarcParsingException when unable to read the data source of the reader
+     */
+    public <T extends WarcContentBlock> long process(final WarcReader warcReader,
+            final Consumer<WarcRecord<T>> consumer) {
+        final int pendingRecordLimit = Math.max(1, maximumPendingRecords);
+        final PipelineState<T> state = new PipelineState<>(consumer, pendingRecordLimit);
+
+        final int poolNumber = POOL_COUNTER.incrementAndGet();
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            final Thread thread = new Thread(runnable,
+                    "warc-parser-" + poolNumber + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        try (WarcRecordCursor cursor = new WarcRecordCursor(warcReader)) {
+            try {
+                frame(cursor, workers, state);
+            } catch (RuntimeException e) {
+                state.fail(e);
+            } finally {
+                // Every frame that was handed to the workers is delivered or released before the reader is closed,
+                // because the headers of the records may refer to its buffer
+                state.pending.acquireUninterruptibly(pendingRecordLimit);
+                workers.shutdown();
+            }
+        } catch (IOException e) {
+            state.fail(new WarcNetworkException("Unable to close the WARC reader!", e));
+        }
+
+        final RuntimeException failure = state.failure.get();
+        if (failure != null) {
+            throw failure;
+        }
+
+        return state.deliveredRecords.sum();
+    }
+
+    private <T extends WarcContentBlock> void frame(final WarcRecordCursor cursor, final ExecutorService workers,
+            final PipelineState<T> state) {
+        long sequence = 0;
+
+        while (state.failure.get() == null && cursor.advance()) {
+            state.pending.acquireUninterruptibly();
+
+            final Frame frame;
+            try {
+                frame = new Frame(sequence++, cursor.getType(), cursor.getHeaders().headers(),
+                        cursor.getCompressedOffset(),
+                        BufferedPayload.copyOf(cursor.getBlock(), cursor.getContentLength(), framePool));
+            } catch (IOException e) {
+                state.pending.release();
+
+                throw new WarcParsingException("Unable to copy the block of the WARC record!", e);
+            } catch (RuntimeException e) {
+                state.pending.release();
+
+                throw e;
+            }
+
+            workers.execute(() -> parse(frame, state));
+        }
+    }
+
+    private <T extends WarcContentBlock> void parse(final Frame frame, final PipelineState<T> state) {
+        WarcRecord<T> warcRecord = null;
+        try {
+            warcRecord = createRecord(frame);
+        } catch (RuntimeException e) {
+            state.fail(e);
+        }
+
+        if (ordered) {
+            state.deliverInOrder(frame, warcRecord);
+        } else {
+            state.deliver(frame, warcRecord);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends WarcContentBlock> WarcRecord<T> createRecord(final Frame frame) {
+        return (WarcRecord<T>) WARC_RECORD_FACTORY.createWarcRecord(frame.type, frame.headers,
+                createContentBlock(frame), frame.compressedOffset);
+    }
+
+    private Supplier<WarcContentBlock> createContentBlock(final Frame frame) {
+        final PayloadBufferPool payloadBufferPool = configuration.getPayloadBufferPool();
+
+        final WarcContentBlock contentBlock;
+        try {
+            final WarcContentBlock parsedContentBlock = WARC_RECORD_FACTORY.createContentBlock(frame.type,
+                    frame.headers, frame.blockStream);
+
+            contentBlock = payloadBufferPool != null
+                    ? WARC_RECORD_FACTORY.bufferPayload(parsedContentBlock, frame.block.length(), payloadBufferPool)
+                    : parsedContentBlock;
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to buffer the payload of the WARC record!", e);
+        } catch (WarcFormatException e) {
+            // The error is raised when the content block is requested, just like when it is created by the reader
+            return () -> {
+                throw e;
+            };
+        }
+
+        return () -> contentBlock;
+    }
+
+    /**
+     * The raw data of a framed record.
+     */
+    private static class Frame {
+
+        private final long sequence;
+        private final WarcRecordType type;
+        private final WarcHeaders headers;
+        private final long compressedOffset;
+        private final BufferedPayload block;
+        private final InputStream blockStream;
+
+        private Frame(final long sequence, final WarcRecordType type, final WarcHeaders headers,
+                final long compressedOffset, final BufferedPayload block) {
+            this.sequence = sequence;
+            this.type = type;
+            this.headers = headers;
+            this.compressedOffset = compressedOffset;
+            this.block = block;
+            this.blockStream = block.openStream();
+        }
+
+        private void release() {
+            // The stream is closed too, otherwise the buffer of the block would be kept until the stream is
+            // garbage collected
+            try {
+                blockStream.close();
+            } catch (IOException e) {
+                log.debug("Unable to close the block of a framed record!", e);
+            }
+
+            block.close();
+        }
+    }
+
+    private static class PipelineState<T extends WarcContentBlock> {
+
+        private final Consumer<WarcRecord<T>> consumer;
+        private final Semaphore pending;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private final LongAdder deliveredRecords = new LongAdder();
+
+        // The parsed records that are waiting for the records before them, keyed by their sequence number
+        private final Map<Long, ParsedFrame<T>> parsedFrames = new ConcurrentHashMap<>();
+        private final ReentrantLock deliveryLock = new ReentrantLock();
+        private volatile long nextSequence;
+
+        private PipelineState(final Consumer<WarcRecord<T>> consumer, final int maximumPendingRecords) {
+            this.consumer = consumer;
+            this.pending = new Semaphore(maximumPendingRecords);
+        }
+
+        private void deliverInOrder(final Frame frame, final WarcRecord<T> warcRecord) {
+            parsedFrames.put(frame.sequence, new ParsedFrame<>(frame, warcRecord));
+
+            // The worker that holds the lock delivers every record that is ready, the others just leave theirs
+            // behind. The lock is checked again after it is released, so no record is left behind unnoticed.
+            while (parsedFrames.containsKey(nextSequence) && deliveryLock.tryLock()) {
+                try {
+                    ParsedFrame<T> parsedFrame;
+                    while ((parsedFrame = parsedFrames.remove(nextSequence)) != null) {
+                        nextSequence++;
+
+                        deliver(parsedFrame.frame, parsedFrame.warcRecord);
+                    }
+                } finally {
+                    deliveryLock.unlock();
+                }
+            }
+        }
+
+        private void deliver(final Frame frame, final WarcRecord<T> warcRecord) {
+            try {
+                // After a failure the rest of the records are only released
+                if (warcRecord != null && failure.get() == null) {
+                    consumer.accept(warcRecord);
+
+                    deliveredRecords.increment();
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            } finally {
+                frame.release();
+                pending.release();
+            }
+        }
+
+        private void fail(final RuntimeException exception) {
+            if (!failure.compareAndSet(null, exception)) {
+                log.debug("Suppressed failure after the pipeline already failed!", exception);
+            }
+        }
+    }
+
+    private static class ParsedFrame<T extends WarcContentBlock> {
+
+        private final Frame frame;
+        private final WarcRecord<T> warcRecord;
+
+        private ParsedFrame(final Frame frame, final WarcRecord<T> warcRecord) {
+            this.frame = frame;
+            this.warcRecord = warcRecord;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.github.bottomlessarchive.warc.service.engine;
+
+import com.github.bottomlessarchive.warc.service.WarcNetworkException;
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.engine.domain.WarcProcessingResult;
+import com.github.bottomlessarchive.warc.service.io.CountingInputStream;
+import com.github.bottomlessarchive.warc.service.io.GzipMemberInputStream;
+import com.github.bottomlessarchive.warc.service.io.StreamWarcInputBuffer;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Processes many WARC files in parallel. The files are scheduled on a work-stealing {@link ForkJoinPool}, so the
+ * threads that finish their files early take over the files that are still waiting in the queues of the busy
+ * threads. Every thread reads one file at a time, so the number of the open sources and the memory used by their
+ * buffers is bounded by the size of the pool.
+ * <p>
+ * When a network error happens while a file is read, the file is opened again after a delay, and the records that
+ * were already passed to the consumer are skipped. Other errors fail the file without retries. The failures don't
+ * stop the processing of the other files, they are collected into the result.
+ * <p>
+ * The consumer is called from multiple threads concurrently, so it must be thread safe. The content blocks of the
+ * records must be requested in the consumer, before it returns.
+ */
+@Slf4j
+@Getter
+@Builder
+@SuppressWarnings("unused")
+public class WarcProcessingEngine {
+
+    /**
+     * The default amount of memory that can be used by the buffers of the open sources.
+     */
+    public static final long DEFAULT_BUFFER_MEMORY_LIMIT = 268435456;
+
+    // The native memory used by an inflater: the 32 KB window of zlib and its state
+    private static final long INFLATER_MEMORY = 49152;
+    private static final int TIMEOUT = 120000;
+
+    /**
+     * The number of the threads that process the files.
+     */
+    @Builder.Default
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum number of the files that are open at the same time. By default it is limited only by the
+     * parallelism and the buffer memory limit.
+     */
+    @Builder.Default
+    private final int maximumOpenSources = Integer.MAX_VALUE;
+
+    /**
+     * The maximum amount of memory, in bytes, used by the buffers of the open sources. If the buffers of every open
+     * source wouldn't fit into it, then fewer sources are opened at the same time.
+     */
+    @Builder.Default
+    private final long bufferMemoryLimit = DEFAULT_BUFFER_MEMORY_LIMIT;
+
+    /**
+     * The number of the retries of a file after a network error.
+     */
+    @Builder.Default
+    private final int maximumRetries = 3;
+
+    /**
+     * The delay before the first retry of a file, in milliseconds. The delay is multiplied by the number of the
+     * attempt for the later retries.
+     */
+    @Builder.Default
+    private final long retryDelay = 1000;
+
+    /**
+     * The configuration of the readers. Whether a file is compressed or not is decided by its name, every file
+     * that has a name ending with ".gz" is considered to be compressed.
+     */
+    @Builder.Default
+    private final WarcReaderConfiguration configuration = WarcReaderConfiguration.builder().build();
+
+    /**
+     * Process the records of local WARC files.
+     *
+     * @param warcFileLocations the locations of the files
+     * @param consumer          the consumer of the records
+     * @param <T>               the type of the content blocks
+     * @return the summary of the processing
+     */
+    public <T extends WarcContentBlock> WarcProcessingResult processFiles(final List<Path> warcFileLocations,
+            final Consumer<WarcRecord<T>> consumer) {
+        return process(warcFileLocations.stream()
+                .map(FileSource::new)
+                .collect(Collectors.toList()), consumer);
+    }
+
+    /**
+     * Process the records of remote WARC files.
+     *
+     * @param warcLocations the locations of the files
+     * @param consumer      the consumer of the records
+     * @param <T>           the type of the content blocks
+     * @return the summary of the processing
+     */
+    public <T extends WarcContentBlock> WarcProcessingResult processUrls(final List<URL> warcLocations,
+            final Consumer<WarcRecord<T>> consumer) {
+        return process(warcLocations.stream()
+                .map(UrlSource::new)
+                .collect(Collectors.toList()), consumer);
+    }
+
+    /**
+     * Return the number of the files that are processed at the same time. It is the smallest of the parallelism,
+     * the maximum number of the open sources and the number of the sources whose buffers fit into the memory limit.
+     *
+     * @return the number of the threads in the pool
+     */
+    public int getPoolSize() {
+        final long sourceMemory = StreamWarcInputBuffer.DEFAULT_BUFFER_SIZE + GzipMemberInputStream.DEFAULT_BUFFER_SIZE
+                + INFLATER_MEMORY + (configuration.isReadAhead() ? configuration.getReadAheadMemoryLimit() : 0);
+
+        return (int) Math.max(1, Math.min(Math.min(parallelism, maximumOpenSources), bufferMemoryLimit / sourceMemory));
+    }
+
+    private <T extends WarcContentBlock> WarcProcessingResult process(final List<WarcSource> sources,
+            final Consumer<WarcRecord<T>> consumer) {
+        final ProcessingState<T> state = new ProcessingState<>(consumer);
+        final long start = System.nanoTime();
+
+        final ForkJoinPool pool = new ForkJoinPool(getPoolSize());
+        try {
+            pool.invoke(new SourcesTask<>(sources, 0, sources.size(), state));
+        } finally {
+            pool.shutdown();
+        }
+
+        return WarcProcessingResult.builder()
+                .processedFileCount(state.processedFiles.sum())
+                .failures(Map.copyOf(state.failures))
+                .recordCount(state.records.sum())
+                .bytesRead(state.bytesRead.sum())
+                .retryCount(state.retries.sum())
+                .elapsedNanos(System.nanoTime() - start)
+                .build();
+    }
+
+    private <T extends WarcContentBlock> void processSource(final WarcSource source, final ProcessingState<T> state) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                readSource(source, state);
+
+                state.processedFiles.increment();
+
+                return;
+            } catch (RuntimeException e) {
+                if (!source.isNetworkFailure(e) || attempt >= maximumRetries) {
+                    log.debug("Failed to process WARC file: {}!", source, e);
+
+                    state.failures.put(source.toString(), e);
+
+                    return;
+                }
+
+                log.debug("Network error while processing WARC file: {}! Retrying it.", source, e);
+
+                state.retries.increment();
+
+                if (!sleep(retryDelay * (attempt + 1))) {
+                    state.failures.put(source.toString(), e);
+
+                    return;
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends WarcContentBlock> void readSource(final WarcSource source, final ProcessingState<T> state) {
+        final long skippedRecords = source.deliveredRecords;
+
+        try (WarcReader warcReader = source.open(configuration.toBuilder()
+                .compressed(source.toString().endsWith(".gz"))
+                .build())) {
+            long recordIndex = 0;
+
+            Optional<WarcRecord<WarcContentBlock>> warcRecord;
+            while ((warcRecord = warcReader.readRecord()).isPresent()) {
+                // The records that were passed to the consumer before a retry are skipped
+                if (recordIndex++ < skippedRecords) {
+                    continue;
+                }
+
+                state.consumer.accept((WarcRecord<T>) warcRecord.get());
+                state.records.increment();
+                source.deliveredRecords++;
+            }
+
+            state.bytesRead.add(source.bytesRead());
+        } catch (IOException e) {
+            throw new WarcNetworkException("Unable to close WARC file: " + source + "!", e);
+        }
+    }
+
+    private boolean sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+    }
+
+    /**
+     * Splits the sources in half until only one source is left, so the idle threads can steal the halves that are
+     * not yet started.
+     */
+    private class SourcesTask<T extends WarcContentBlock> extends RecursiveAction {
+
+        private final List<WarcSource> sources;
+        private final int from;
+        private final int to;
+        private final ProcessingState<T> state;
+
+        private SourcesTask(final List<WarcSource> sources, final int from, final int to,
+                final ProcessingState<T> state) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.state = state;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    processSource(sources.get(from), state);
+                }
+
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+
+            invokeAll(new SourcesTask<>(sources, from, middle, state), new SourcesTask<>(sources, middle, to, state));
+        }
+    }
+
+    private static class ProcessingState<T extends WarcContentBlock> {
+
+        private final Consumer<WarcRecord<T>> consumer;
+        private final Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+        private final LongAdder processedFiles = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+
+        private ProcessingState(final Consumer<WarcRecord<T>> consumer) {
+            this.consumer = consumer;
+        }
+    }
+
+    private abstract static class WarcSource {
+
+        // The number of the records passed to the consumer, they are skipped when the source is retried
+        private long deliveredRecords;
+
+        abstract WarcReader open(WarcReaderConfiguration configuration);
+
+        abstract long bytesRead();
+
+        abstract boolean isNetworkFailure(RuntimeException exception);
+    }
+
+    private static class FileSource extends WarcSource {
+
+        private final Path warcFileLocation;
+
+        private FileSource(final Path warcFileLocation) {
+            this.warcFileLocation = warcFileLocation;
+        }
+
+        @Override
+        WarcReader open(final WarcReaderConfiguration configuration) {
+            return new WarcReader(warcFileLocation, configuration);
+        }
+
+        @Override
+        long bytesRead() {
+            try {
+                return Files.size(warcFileLocation);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        boolean isNetworkFailure(final RuntimeException exception) {
+            // A missing file is not going to appear by retrying it
+            return exception instanceof WarcNetworkException && !(exception.getCause() instanceof NoSuchFileException);
+        }
+
+        @Override
+        public String toString() {
+            return warcFileLocation.toString();
+        }
+    }
+
+    private static class UrlSource extends WarcSource {
+
+        private final URL warcLocation;
+        private CountingInputStream inputStream;
+
+        private UrlSource(final URL warcLocation) {
+            this.warcLocation = warcLocation;
+        }
+
+        @Override
+        WarcReader open(final WarcReaderConfiguration configuration) {
+            try {
+                final URLConnection connection = warcLocation.openConnection();
+                connection.setConnectTimeout(TIMEOUT);
+                connection.setReadTimeout(TIMEOUT);
+
+                // The reader has its own buffers, so the stream is not wrapped into a BufferedInputStream
+                inputStream = new CountingInputStream(connection.getInputStream(), connection.getContentLengthLong());
+
+                return new WarcReader(inputStream, configuration);
+            } catch (IOException e) {
+                throw new WarcNetworkException("Unable to open WARC location: " + warcLocation + "!", e);
+            }
+        }
+
+        @Override
+        long bytesRead() {
+            return inputStream != null ? inputStream.getBytesRead() : 0;
+        }
+
+        @Override
+        boolean isNetworkFailure(final RuntimeException exception) {
+            // The reader wraps the errors of the stream, so the stream remembers if it failed
+            return exception instanceof WarcNetworkException || (inputStream != null && inputStream.isFailed());
+        }
+
+        @Override
+        public String toString() {
+            return warcLocation.toString();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.bottomlessarchive.warc.service.engine.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * The summary of a run of the {@link com.github.bottomlessarchive.warc.service.engine.WarcProcessingEngine}.
+ */
+@Getter
+@Builder
+@SuppressWarnings("unused")
+public class WarcProcessingResult {
+
+    private static final double BYTES_IN_MEGABYTE = 1048576;
+
+    /**
+     * The number of the files that were processed successfully.
+     */
+    private final long processedFileCount;
+
+    /**
+     * The files that failed, even after the retries, with the last error of each of them. The key is the location of
+     * the file.
+     */
+    private final Map<String, RuntimeException> failures;
+
+    /**
+     * The number of the records that were passed to the consumer.
+     */
+    private final long recordCount;
+
+    /**
+     * The number of bytes read from the sources. These are compressed bytes for compressed files.
+     */
+    private final long bytesRead;
+
+    /**
+     * The number of the retries because of network errors.
+     */
+    private final long retryCount;
+
+    /**
+     * The time spent with the processing, in nanoseconds.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Return the number of the records processed in a second.
+     *
+     * @return the records per second
+     */
+    public double getRecordsPerSecond() {
+        return elapsedNanos > 0 ? recordCount * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * Return the number of megabytes read from the sources in a second.
+     *
+     * @return the megabytes per second
+     */
+    public double getMegabytesPerSecond() {
+        return elapsedNanos > 0 ? bytesRead / BYTES_IN_MEGABYTE * 1e9 / elapsedNanos : 0;
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.bottomlessarchive.warc.service.header;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Helper methods for the byte ranges of raw header blocks, shared by the {@link WarcHeaderTokenizer} and the
+ * {@link WarcHeaders}. The offsets are absolute offsets in the provided buffer, only absolute reads are used.
+ */
+final class HeaderBytes {
+
+    private HeaderBytes() {
+    }
+
+    /**
+     * Check if the bytes at the provided offset start with the provided text. The characters are compared
+     * case-insensitively, only US-ASCII texts are supported.
+     *
+     * @param data  the buffer that contains the bytes
+     * @param start the offset of the first byte to compare
+     * @param text  the text to compare against
+     * @return true if the bytes start with the text
+     */
+    static boolean startsWithIgnoreCase(final ByteBuffer data, final int start, final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (toLowerCase(data.get(start + i)) != toLowerCase((byte) text.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if two ranges of the buffer with the same length are equal. The bytes are compared case-insensitively.
+     *
+     * @param data       the buffer that contains the ranges
+     * @param start      the offset of the first range
+     * @param otherStart the offset of the second range
+     * @param length     the length of the ranges
+     * @return true if the ranges are equal
+     */
+    static boolean rangesEqualIgnoreCase(final ByteBuffer data, final int start, final int otherStart,
+            final int length) {
+        for (int i = 0; i < length; i++) {
+            if (toLowerCase(data.get(start + i)) != toLowerCase(data.get(otherStart + i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if a range of the buffer equals to the provided bytes.
+     *
+     * @param data     the buffer that contains the range
+     * @param start    the start of the range
+     * @param end      the end of the range
+     * @param expected the bytes to compare against
+     * @return true if the range has the same bytes
+     */
+    static boolean rangeEquals(final ByteBuffer data, final int start, final int end, final byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+
+        for (int i = 0; i < expected.length; i++) {
+            if (data.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Decode a range of the buffer.
+     *
+     * @param data    the buffer that contains the range
+     * @param start   the start of the range
+     * @param end     the end of the range
+     * @param charset the character set of the range
+     * @return the decoded range
+     */
+    static String decode(final ByteBuffer data, final int start, final int end, final Charset charset) {
+        if (data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + start, end - start, charset);
+        }
+
+        final byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = data.get(start + i);
+        }
+
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Decode a folded header value. Every whitespace run that contains a line break is replaced with a single
+     * space, the other bytes are kept as they are. The character set must be compatible with US-ASCII, like the
+     * character sets of the WARC headers are.
+     *
+     * @param data    the buffer that contains the value
+     * @param start   the start of the value
+     * @param end     the end of the value
+     * @param charset the character set of the value
+     * @return the decoded value, with its lines joined
+     */
+    static String decodeFolded(final ByteBuffer data, final int start, final int end, final Charset charset) {
+        final byte[] bytes = new byte[end - start];
+        int length = 0;
+
+        int position = start;
+        while (position < end) {
+            if (!isWhitespace(data.get(position))) {
+                bytes[length++] = data.get(position++);
+
+                continue;
+            }
+
+            final int runStart = position;
+            boolean lineBreak = false;
+            while (position < end && isWhitespace(data.get(position))) {
+                lineBreak |= data.get(position) == '\n';
+                position++;
+            }
+
+            if (lineBreak) {
+                bytes[length++] = ' ';
+            } else {
+                for (int i = runStart; i < position; i++) {
+                    bytes[length++] = data.get(i);
+                }
+            }
+        }
+
+        return new String(bytes, 0, length, charset);
+    }
+
+    static boolean isWhitespace(final byte value) {
+        return value <= ' ' && value >= 0;
+    }
+
+    static byte toLowerCase(final byte value) {
+        return value >= 'A' && value <= 'Z' ? (byte) (value + 32) : value;
+    }
+}
@@ -0,0 +1,417 @@
+package com.github.bottomlessarchive.warc.service.header;
+
+import com.github.bottomlessarchive.warc.service.WarcFormatException;
+import com.github.bottomlessarchive.warc.service.io.WarcInputBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Tokenizes the header block of a WARC record directly in the buffer of a {@link WarcInputBuffer}. Instead of
+ * creating a {@link String} for every line, only the start and end offsets of the header names and values are
+ * recorded. The names and values are decoded only when they are requested.
+ * <p>
+ * The tokenizer is reusable, every call to {@link #tokenize(WarcInputBuffer)} overwrites the results of the
+ * previous one. The results are valid only until the next read from the buffer.
+ */
+public class WarcHeaderTokenizer {
+
+    private static final int INITIAL_HEADER_CAPACITY = 32;
+    private static final int FIELDS_PER_HEADER = 4;
+
+    private static final int NAME_START = 0;
+    private static final int NAME_END = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE_END = 3;
+
+    private final Charset charset;
+
+    private int[] ranges = new int[INITIAL_HEADER_CAPACITY * FIELDS_PER_HEADER];
+    private boolean[] folded = new boolean[INITIAL_HEADER_CAPACITY];
+    private int headerCount;
+    private int versionEnd;
+    private int blockLength;
+
+    private ByteBuffer data;
+    private int base;
+    private boolean stableData;
+    private boolean anyFolded;
+
+    // The copy of the last block after it was detached from the buffer, reused by the later blocks
+    private byte[] detachedBlock;
+    private ByteBuffer detachedData;
+
+    public WarcHeaderTokenizer(final Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Tokenize the next header block from the provided buffer. The block starts with the WARC version line and
+     * ends with an empty line. The whole block is consumed from the buffer.
+     *
+     * @param buffer the buffer to read the header block from
+     * @return true if a header block was found, false if the buffer has no more data
+     * @throws IOException         when an error happens while reading the buffer
+     * @throws WarcFormatException when the block doesn't start with a WARC version line or a header line is invalid
+     */
+    public boolean tokenize(final WarcInputBuffer buffer) throws IOException {
+        headerCount = 0;
+        anyFolded = false;
+        stableData = buffer.hasStableData();
+
+        final int firstLineEnd = buffer.lineEnd(0);
+        if (firstLineEnd == -1) {
+            return false;
+        }
+
+        data = buffer.data();
+        base = buffer.position();
+        if (!isWarcVersion(firstLineEnd)) {
+            buffer.consume(firstLineEnd);
+
+            throw new WarcFormatException("Warc version is missing");
+        }
+        versionEnd = trimLineEnd(0, firstLineEnd);
+
+        int lineStart = firstLineEnd;
+        while (true) {
+            final int lineEnd = buffer.lineEnd(lineStart);
+            if (lineEnd == -1) {
+                blockLength = lineStart;
+                break;
+            }
+
+            // The buffer could be compacted or grown while looking for the end of the line
+            data = buffer.data();
+            base = buffer.position();
+
+            final int contentEnd = trimLineEnd(lineStart, lineEnd);
+            if (isBlank(lineStart, contentEnd)) {
+                blockLength = lineEnd;
+                break;
+            }
+
+            final byte firstByte = byteAt(lineStart);
+            if (firstByte == ' ' || firstByte == '\t') {
+                // Folded header, the line continues the value of the previous header
+                if (headerCount > 0) {
+                    ranges[(headerCount - 1) * FIELDS_PER_HEADER + VALUE_END] = trimEnd(lineStart, contentEnd);
+                    folded[headerCount - 1] = true;
+                    anyFolded = true;
+                }
+            } else {
+                addHeader(lineStart, contentEnd);
+            }
+
+            lineStart = lineEnd;
+        }
+
+        buffer.consume(blockLength);
+
+        return true;
+    }
+
+    /**
+     * Return the number of the headers found in the last tokenized block.
+     *
+     * @return the number of headers
+     */
+    public int headerCount() {
+        return headerCount;
+    }
+
+    /**
+     * Return the length of the last tokenized header block in bytes, including the terminating empty line.
+     *
+     * @return the length of the header block
+     */
+    public int blockLength() {
+        return blockLength;
+    }
+
+    /**
+     * Return the WARC version line of the last tokenized block. For example "WARC/1.0".
+     *
+     * @return the version line
+     */
+    public String version() {
+        return decode(0, versionEnd);
+    }
+
+    /**
+     * Return the index of the first header with the provided name. The names are compared case-insensitively.
+     *
+     * @param name the name of the header to look for
+     * @return the index of the header or -1 if no such header is present
+     */
+    public int indexOf(final String name) {
+        for (int i = 0; i < headerCount; i++) {
+            if (nameEquals(i, name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Check if the name of the header on the provided index equals to the provided name. The names are compared
+     * case-insensitively, without decoding the header.
+     *
+     * @param index the index of the header
+     * @param name  the name to compare against, only US-ASCII names are supported
+     * @return true if the header has the provided name
+     */
+    public boolean nameEquals(final int index, final String name) {
+        final int start = ranges[index * FIELDS_PER_HEADER + NAME_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + NAME_END];
+
+        return end - start == name.length() && HeaderBytes.startsWithIgnoreCase(data, base + start, name);
+    }
+
+    /**
+     * Check if the value of the header on the provided index equals to the provided value. The values are compared
+     * case-insensitively, without decoding the header.
+     *
+     * @param index the index of the header
+     * @param value the value to compare against, only US-ASCII values are supported
+     * @return true if the header has the provided value
+     */
+    public boolean valueEqualsIgnoreCase(final int index, final String value) {
+        final int start = ranges[index * FIELDS_PER_HEADER + VALUE_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + VALUE_END];
+
+        return end - start == value.length() && !folded[index]
+                && HeaderBytes.startsWithIgnoreCase(data, base + start, value);
+    }
+
+    /**
+     * Check if the value of the header on the provided index starts with the provided prefix. The values are
+     * compared case-insensitively, without decoding the header.
+     *
+     * @param index  the index of the header
+     * @param prefix the prefix to look for, only US-ASCII prefixes are supported
+     * @return true if the value of the header starts with the provided prefix
+     */
+    public boolean valueStartsWithIgnoreCase(final int index, final String prefix) {
+        final int start = ranges[index * FIELDS_PER_HEADER + VALUE_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + VALUE_END];
+
+        return end - start >= prefix.length() && HeaderBytes.startsWithIgnoreCase(data, base + start, prefix);
+    }
+
+    /**
+     * Copy the raw bytes of the value of the header on the provided index into the provided array, without decoding
+     * them. The value is copied only when it fits into the array.
+     *
+     * @param index  the index of the header
+     * @param target the array to copy the value into
+     * @return the length of the value
+     */
+    public int copyValue(final int index, final byte[] target) {
+        final int start = ranges[index * FIELDS_PER_HEADER + VALUE_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + VALUE_END];
+
+        if (end - start <= target.length) {
+            if (data.hasArray()) {
+                System.arraycopy(data.array(), data.arrayOffset() + base + start, target, 0, end - start);
+            } else {
+                for (int i = start; i < end; i++) {
+                    target[i - start] = byteAt(i);
+                }
+            }
+        }
+
+        return end - start;
+    }
+
+    /**
+     * Return the name of the header on the provided index.
+     *
+     * @param index the index of the header
+     * @return the name of the header
+     */
+    public String name(final int index) {
+        return decode(ranges[index * FIELDS_PER_HEADER + NAME_START], ranges[index * FIELDS_PER_HEADER + NAME_END]);
+    }
+
+    /**
+     * Return the value of the header on the provided index. The lines of folded values are joined with a single
+     * space.
+     *
+     * @param index the index of the header
+     * @return the value of the header
+     */
+    public String value(final int index) {
+        final int start = ranges[index * FIELDS_PER_HEADER + VALUE_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + VALUE_END];
+
+        if (folded[index]) {
+            return HeaderBytes.decodeFolded(data, base + start, base + end, charset);
+        }
+
+        return decode(start, end);
+    }
+
+    /**
+     * Return the headers of the last tokenized block as {@link WarcHeaders}, that stay valid after the buffer is
+     * read further. When the data of the buffer is never overwritten (for example it is a memory mapping) the
+     * headers refer to the buffer directly, otherwise the raw header block is copied. Nothing is decoded.
+     *
+     * @return the headers of the last tokenized block
+     */
+    public WarcHeaders headers() {
+        final int[] headerRanges = Arrays.copyOf(ranges, headerCount * FIELDS_PER_HEADER);
+        final boolean[] headerFolded = anyFolded ? Arrays.copyOf(folded, headerCount) : null;
+
+        if (stableData) {
+            return new WarcHeaders(data, base, headerRanges, headerFolded, headerCount, charset);
+        }
+
+        final byte[] block = new byte[blockLength];
+        if (data.hasArray()) {
+            System.arraycopy(data.array(), data.arrayOffset() + base, block, 0, blockLength);
+        } else {
+            for (int i = 0; i < blockLength; i++) {
+                block[i] = byteAt(i);
+            }
+        }
+
+        return new WarcHeaders(ByteBuffer.wrap(block), 0, headerRanges, headerFolded, headerCount, charset);
+    }
+
+    /**
+     * Copy the last tokenized block out of the buffer, so the results of the tokenizer stay valid after the buffer
+     * is read further. Unlike {@link #headers()}, the copy is made into an array of the tokenizer that is reused by
+     * the later blocks, so nothing is allocated once the array is big enough. Nothing is copied when the data of
+     * the buffer is never overwritten.
+     */
+    public void detach() {
+        if (stableData || data == detachedData) {
+            return;
+        }
+
+        if (detachedBlock == null || detachedBlock.length < blockLength) {
+            detachedBlock = new byte[Math.max(blockLength, detachedBlock == null ? 0 : detachedBlock.length * 2)];
+            detachedData = ByteBuffer.wrap(detachedBlock);
+        }
+
+        if (data.hasArray()) {
+            System.arraycopy(data.array(), data.arrayOffset() + base, detachedBlock, 0, blockLength);
+        } else {
+            for (int i = 0; i < blockLength; i++) {
+                detachedBlock[i] = byteAt(i);
+            }
+        }
+
+        data = detachedData;
+        base = 0;
+    }
+
+    /**
+     * Parse the value of the header on the provided index as a non-negative decimal number, without decoding it to
+     * a {@link String} first.
+     *
+     * @param index the index of the header
+     * @return the value as a number
+     * @throws NumberFormatException when the value is not a valid number
+     */
+    public long valueAsLong(final int index) {
+        final int start = ranges[index * FIELDS_PER_HEADER + VALUE_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + VALUE_END];
+
+        if (start == end || end - start > 18) {
+            throw new NumberFormatException("Invalid number: " + value(index));
+        }
+
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = byteAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid number: " + value(index));
+            }
+
+            result = result * 10 + digit;
+        }
+
+        return result;
+    }
+
+    private void addHeader(final int lineStart, final int contentEnd) {
+        int colon = -1;
+        for (int i = lineStart; i < contentEnd; i++) {
+            if (byteAt(i) == ':') {
+                colon = i;
+                break;
+            }
+        }
+
+        if (colon < 0) {
+            throw new WarcFormatException("Unable to parse header: " + decode(lineStart, contentEnd));
+        }
+
+        if (headerCount == folded.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            folded = Arrays.copyOf(folded, folded.length * 2);
+        }
+
+        final int offset = headerCount * FIELDS_PER_HEADER;
+        final int nameStart = trimStart(lineStart, colon);
+        final int valueStart = trimStart(colon + 1, contentEnd);
+        ranges[offset + NAME_START] = nameStart;
+        ranges[offset + NAME_END] = trimEnd(nameStart, colon);
+        ranges[offset + VALUE_START] = valueStart;
+        ranges[offset + VALUE_END] = trimEnd(valueStart, contentEnd);
+        folded[headerCount] = false;
+
+        headerCount++;
+    }
+
+    private boolean isWarcVersion(final int lineEnd) {
+        return lineEnd >= 5 && HeaderBytes.startsWithIgnoreCase(data, base, "WARC/");
+    }
+
+    private int trimLineEnd(final int start, final int end) {
+        int result = end;
+        if (result > start && byteAt(result - 1) == '\n') {
+            result--;
+        }
+        if (result > start && byteAt(result - 1) == '\r') {
+            result--;
+        }
+
+        return result;
+    }
+
+    private boolean isBlank(final int start, final int end) {
+        return trimStart(start, end) == end;
+    }
+
+    private int trimStart(final int start, final int end) {
+        int result = start;
+        while (result < end && HeaderBytes.isWhitespace(byteAt(result))) {
+            result++;
+        }
+
+        return result;
+    }
+
+    private int trimEnd(final int start, final int end) {
+        int result = end;
+        while (result > start && HeaderBytes.isWhitespace(byteAt(result - 1))) {
+            result--;
+        }
+
+        return result;
+    }
+
+    private String decode(final int start, final int end) {
+        return HeaderBytes.decode(data, base + start, base + end, charset);
+    }
+
+    private byte byteAt(final int offset) {
+        return data.get(base + offset);
+    }
+}
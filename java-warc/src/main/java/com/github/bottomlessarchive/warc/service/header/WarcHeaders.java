@@ -0,0 +1,252 @@
+package com.github.bottomlessarchive.warc.service.header;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The headers of a WARC record, kept as byte ranges of the raw header block. The names and values are decoded only
+ * when they are requested, so the headers that are never looked at cost nothing. The names of the standard WARC
+ * headers are not decoded at all, their interned constants are returned instead.
+ * <p>
+ * The map is read-only. The header names are compared case-insensitively, like the specification requires. When a
+ * header is present multiple times, only the first occurrence is visible.
+ */
+public class WarcHeaders extends AbstractMap<String, String> {
+
+    private static final int FIELDS_PER_HEADER = 4;
+
+    private static final int NAME_START = 0;
+    private static final int NAME_END = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE_END = 3;
+
+    private static final String[] STANDARD_NAMES = {
+            "WARC-Type", "WARC-Record-ID", "WARC-Date", "Content-Length", "Content-Type", "WARC-Concurrent-To",
+            "WARC-Block-Digest", "WARC-Payload-Digest", "WARC-IP-Address", "WARC-Refers-To",
+            "WARC-Refers-To-Target-URI", "WARC-Refers-To-Date", "WARC-Target-URI", "WARC-Truncated",
+            "WARC-Warcinfo-ID", "WARC-Filename", "WARC-Profile", "WARC-Identified-Payload-Type",
+            "WARC-Segment-Number", "WARC-Segment-Origin-ID", "WARC-Segment-Total-Length"
+    };
+    private static final byte[][] STANDARD_NAME_BYTES = new byte[STANDARD_NAMES.length][];
+
+    static {
+        for (int i = 0; i < STANDARD_NAMES.length; i++) {
+            STANDARD_NAME_BYTES[i] = STANDARD_NAMES[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int base;
+    private final int[] ranges;
+    private final boolean[] folded;
+    private final int headerCount;
+    private final Charset charset;
+
+    private String[] decodedValues;
+    private Set<Entry<String, String>> entrySet;
+
+    /**
+     * Create new headers on a raw header block. The content of the provided buffer must not change while the
+     * headers are in use. Only absolute reads are used on the buffer, so its position doesn't matter.
+     *
+     * @param data        the buffer that contains the header block
+     * @param base        the offset of the header block in the buffer
+     * @param ranges      the name start, name end, value start and value end offsets of every header, relative to
+     *                    the base
+     * @param folded      the flags of the headers that have folded values or null if no header is folded
+     * @param headerCount the number of headers
+     * @param charset     the character set of the header block
+     */
+    public WarcHeaders(final ByteBuffer data, final int base, final int[] ranges, final boolean[] folded,
+            final int headerCount, final Charset charset) {
+        this.data = data;
+        this.base = base;
+        this.ranges = ranges;
+        this.folded = folded;
+        this.headerCount = headerCount;
+        this.charset = charset;
+    }
+
+    @Override
+    public String get(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        final int index = indexOf((String) key);
+
+        return index >= 0 ? value(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+
+        return entrySet;
+    }
+
+    /**
+     * Return the index of the first header with the provided name. The names are compared case-insensitively.
+     *
+     * @param name the name of the header to look for
+     * @return the index of the header or -1 if no such header is present
+     */
+    public int indexOf(final String name) {
+        for (int i = 0; i < headerCount; i++) {
+            if (nameEquals(i, name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Return the number of header lines, including the repeated headers.
+     *
+     * @return the number of header lines
+     */
+    public int headerCount() {
+        return headerCount;
+    }
+
+    /**
+     * Return the name of the header on the provided index.
+     *
+     * @param index the index of the header
+     * @return the name of the header
+     */
+    public String name(final int index) {
+        final int start = ranges[index * FIELDS_PER_HEADER + NAME_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + NAME_END];
+
+        for (int i = 0; i < STANDARD_NAMES.length; i++) {
+            if (HeaderBytes.rangeEquals(data, base + start, base + end, STANDARD_NAME_BYTES[i])) {
+                return STANDARD_NAMES[i];
+            }
+        }
+
+        return decode(start, end);
+    }
+
+    /**
+     * Return the value of the header on the provided index. The lines of folded values are joined with a single
+     * space.
+     *
+     * @param index the index of the header
+     * @return the value of the header
+     */
+    public String value(final int index) {
+        if (decodedValues == null) {
+            decodedValues = new String[headerCount];
+        } else if (decodedValues[index] != null) {
+            return decodedValues[index];
+        }
+
+        final int start = ranges[index * FIELDS_PER_HEADER + VALUE_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + VALUE_END];
+        final String value = folded != null && folded[index]
+                ? HeaderBytes.decodeFolded(data, base + start, base + end, charset) : decode(start, end);
+
+        decodedValues[index] = value;
+
+        return value;
+    }
+
+    private boolean nameEquals(final int index, final String name) {
+        final int start = ranges[index * FIELDS_PER_HEADER + NAME_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + NAME_END];
+
+        return end - start == name.length() && HeaderBytes.startsWithIgnoreCase(data, base + start, name);
+    }
+
+    /**
+     * Check if a header with the same name is present before the provided index.
+     */
+    private boolean isRepeated(final int index) {
+        final int start = ranges[index * FIELDS_PER_HEADER + NAME_START];
+        final int end = ranges[index * FIELDS_PER_HEADER + NAME_END];
+
+        for (int i = 0; i < index; i++) {
+            final int otherStart = ranges[i * FIELDS_PER_HEADER + NAME_START];
+            if (ranges[i * FIELDS_PER_HEADER + NAME_END] - otherStart == end - start
+                    && HeaderBytes.rangesEqualIgnoreCase(data, base + start, base + otherStart, end - start)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private String decode(final int start, final int end) {
+        return HeaderBytes.decode(data, base + start, base + end, charset);
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, String>> {
+
+        private int size = -1;
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            return new Iterator<>() {
+
+                private int next = findNext(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next < headerCount;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (next >= headerCount) {
+                        throw new NoSuchElementException();
+                    }
+
+                    final Entry<String, String> entry = new SimpleImmutableEntry<>(name(next), value(next));
+                    next = findNext(next + 1);
+
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            if (size < 0) {
+                int result = 0;
+                for (int i = 0; i < headerCount; i++) {
+                    if (!isRepeated(i)) {
+                        result++;
+                    }
+                }
+
+                size = result;
+            }
+
+            return size;
+        }
+
+        private int findNext(final int from) {
+            int result = from;
+            while (result < headerCount && isRepeated(result)) {
+                result++;
+            }
+
+            return result;
+        }
+    }
+}
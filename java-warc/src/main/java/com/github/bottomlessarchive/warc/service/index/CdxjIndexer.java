@@ -0,0 +1,201 @@
+package com.github.bottomlessarchive.warc.service.index;
+
+import com.github.bottomlessarchive.warc.service.WarcIndexingException;
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.WarcRecordCursor;
+import com.github.bottomlessarchive.warc.service.content.response.ResponseFilter;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.index.domain.CdxjEntry;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+import com.github.bottomlessarchive.warc.service.surt.SurtCanonicalizer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Creates sorted CDXJ indexes of WARC files in a single streaming pass. An index line is created for every response,
+ * revisit and resource record. Only the headers of the records are parsed, the status line and the Content-Type
+ * header of the HTTP messages are scanned in place and the payloads are skipped. The lines are sorted with an
+ * {@link ExternalMergeSorter}, so the memory usage is bounded regardless of the size of the WARC file.
+ *
+ * @see <a href="https://specs.webrecorder.net/cdxj/0.1.0/">https://specs.webrecorder.net/cdxj/0.1.0/</a>
+ */
+public class CdxjIndexer {
+
+    /**
+     * The default amount of memory, in bytes, used to sort the index lines before they are spilled to the disk.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 67108864;
+
+    private static final String REVISIT_MIME_TYPE = "warc/revisit";
+    private static final String DIGEST_PREFIX = "sha1:";
+    private static final int TIMESTAMP_LENGTH = 14;
+
+    private final SurtCanonicalizer surtCanonicalizer = new SurtCanonicalizer();
+
+    private final long memoryLimit;
+    private final Path temporaryDirectory;
+
+    /**
+     * Create a new indexer with the default memory limit that uses the default temporary directory.
+     */
+    public CdxjIndexer() {
+        this(DEFAULT_MEMORY_LIMIT, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Create a new indexer.
+     *
+     * @param memoryLimit        the amount of memory, in bytes, used to sort the index lines
+     * @param temporaryDirectory the directory where the sorted runs are written when the memory limit is reached
+     */
+    public CdxjIndexer(final long memoryLimit, final Path temporaryDirectory) {
+        this.memoryLimit = memoryLimit;
+        this.temporaryDirectory = temporaryDirectory;
+    }
+
+    /**
+     * Index a local WARC file. The file is considered to be compressed when its name ends with ".gz".
+     *
+     * @param warcFile  the WARC file to index
+     * @param indexFile the file to write the index to
+     * @throws WarcIndexingException when the records are not in separate gzip members or the index can't be written
+     */
+    public void index(final Path warcFile, final Path indexFile) {
+        // Every record is visited, so the records that share a gzip member with an indexed record are noticed too
+        final WarcReaderConfiguration configuration = WarcReaderConfiguration.builder()
+                .compressed(warcFile.toString().endsWith(".gz"))
+                .build();
+
+        try (WarcReader warcReader = new WarcReader(warcFile, configuration);
+             Writer output = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8)) {
+            index(warcReader, warcFile.getFileName().toString(), output);
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to index WARC file: " + warcFile + "!", e);
+        }
+    }
+
+    /**
+     * Index every record of the provided reader. The reader is not closed. The indexing fails when two records that
+     * are returned by the reader are in the same gzip member, because the records couldn't be located by their
+     * offsets, for example when the whole WARC file is compressed as a single gzip member.
+     *
+     * @param warcReader the reader to read the records from
+     * @param filename   the name of the WARC file, written into the index lines, can be null
+     * @param output     the writer to write the sorted index lines to
+     * @throws WarcIndexingException when the records are not in separate gzip members or the index can't be written
+     */
+    public void index(final WarcReader warcReader, final String filename, final Writer output) {
+        try (ExternalMergeSorter sorter = new ExternalMergeSorter(memoryLimit, temporaryDirectory)) {
+            final WarcRecordCursor cursor = new WarcRecordCursor(warcReader);
+            final HttpHead httpHead = new HttpHead();
+
+            CdxjEntry.CdxjEntryBuilder pendingEntry = null;
+            while (cursor.advance()) {
+                // A record has no length of its own when it is in the same gzip member as the next one
+                if (cursor.getPreviousCompressedLength() == 0) {
+                    throw new WarcIndexingException("The records of " + filename + " can't be located by their "
+                            + "offsets, every record should be compressed into a separate gzip member!");
+                }
+
+                // The length of a record is known only after the next one is found
+                if (pendingEntry != null) {
+                    sorter.add(pendingEntry.length(cursor.getPreviousCompressedLength()).build().toCdxjLine());
+                }
+
+                pendingEntry = buildEntry(cursor, httpHead, filename);
+            }
+
+            if (pendingEntry != null) {
+                sorter.add(pendingEntry.length(cursor.getPreviousCompressedLength()).build().toCdxjLine());
+            }
+
+            sorter.writeTo(output);
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to write the index of: " + filename + "!", e);
+        }
+    }
+
+    private CdxjEntry.CdxjEntryBuilder buildEntry(final WarcRecordCursor cursor, final HttpHead httpHead,
+            final String filename) {
+        final WarcRecordType type = cursor.getType();
+        if (type != WarcRecordType.RESPONSE && type != WarcRecordType.REVISIT && type != WarcRecordType.RESOURCE) {
+            return null;
+        }
+
+        final String targetUri = cursor.getHeader("WARC-Target-URI");
+        if (targetUri == null) {
+            return null;
+        }
+
+        final String url = SurtCanonicalizer.unwrapTargetUri(targetUri);
+        if (url.isEmpty()) {
+            return null;
+        }
+
+        final CdxjEntry.CdxjEntryBuilder entry = CdxjEntry.builder()
+                .surt(surtCanonicalizer.canonicalize(url))
+                .timestamp(toTimestamp(cursor.getHeader("WARC-Date")))
+                .url(url)
+                .digest(toDigest(cursor.getHeader("WARC-Payload-Digest")))
+                .offset(cursor.getCompressedOffset())
+                .filename(filename);
+
+        if (type == WarcRecordType.RESOURCE) {
+            return entry.mime(cursor.getHeader("Content-Type"));
+        }
+
+        // Only the status line and the Content-Type header are scanned, the HTTP message is not parsed
+        cursor.testHttpHead(httpHead);
+
+        return entry.mime(type == WarcRecordType.REVISIT ? REVISIT_MIME_TYPE : httpHead.mimeType)
+                .status(httpHead.statusCode >= 0 ? String.valueOf(httpHead.statusCode) : null);
+    }
+
+    private String toTimestamp(final String warcDate) {
+        if (warcDate == null) {
+            return "-";
+        }
+
+        final StringBuilder result = new StringBuilder(TIMESTAMP_LENGTH);
+        for (int i = 0; i < warcDate.length() && result.length() < TIMESTAMP_LENGTH; i++) {
+            final char character = warcDate.charAt(i);
+
+            if (character >= '0' && character <= '9') {
+                result.append(character);
+            }
+        }
+
+        return result.toString();
+    }
+
+    private String toDigest(final String payloadDigest) {
+        if (payloadDigest == null) {
+            return null;
+        }
+
+        return payloadDigest.startsWith(DIGEST_PREFIX) ? payloadDigest.substring(DIGEST_PREFIX.length())
+                : payloadDigest;
+    }
+
+    /**
+     * Collects the status code and the mime type of the HTTP message of the current record.
+     */
+    private static class HttpHead implements ResponseFilter {
+
+        private int statusCode;
+        private String mimeType;
+
+        @Override
+        public boolean test(final int statusCode, final String mimeType) {
+            this.statusCode = statusCode;
+            this.mimeType = mimeType;
+
+            return true;
+        }
+    }
+}
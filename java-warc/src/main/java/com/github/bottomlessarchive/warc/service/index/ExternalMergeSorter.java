@@ -0,0 +1,173 @@
+package com.github.bottomlessarchive.warc.service.index;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts text lines with a bounded amount of memory. The lines are collected in memory until their estimated size
+ * reaches the memory limit, then they are sorted and written to a temporary file. When the output is requested
+ * the temporary files are merged together.
+ */
+public class ExternalMergeSorter implements Closeable {
+
+    // The estimated overhead of a String in an ArrayList, on top of its characters
+    private static final int LINE_OVERHEAD = 64;
+
+    private final long memoryLimit;
+    private final Path temporaryDirectory;
+
+    private final List<String> lines = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private long memoryUsed;
+
+    /**
+     * Create a new sorter.
+     *
+     * @param memoryLimit        the estimated amount of memory, in bytes, that can be used to hold the lines
+     * @param temporaryDirectory the directory where the sorted runs are written
+     */
+    public ExternalMergeSorter(final long memoryLimit, final Path temporaryDirectory) {
+        this.memoryLimit = memoryLimit;
+        this.temporaryDirectory = temporaryDirectory;
+    }
+
+    /**
+     * Add a line to the sorted lines.
+     *
+     * @param line the line to add
+     * @throws IOException when unable to write a sorted run to the disk
+     */
+    public void add(final String line) throws IOException {
+        lines.add(line);
+        memoryUsed += LINE_OVERHEAD + line.length() * 2L;
+
+        if (memoryUsed >= memoryLimit) {
+            spill();
+        }
+    }
+
+    /**
+     * Write every added line in sorted order to the provided writer. Each line is terminated by '\n'.
+     *
+     * @param output the writer to write the lines to
+     * @throws IOException when unable to read the sorted runs or write the output
+     */
+    public void writeTo(final Writer output) throws IOException {
+        if (runs.isEmpty()) {
+            Collections.sort(lines);
+            for (String line : lines) {
+                output.write(line);
+                output.write('\n');
+            }
+
+            return;
+        }
+
+        spill();
+        merge(output);
+    }
+
+    /**
+     * Delete the temporary files of the sorted runs.
+     *
+     * @throws IOException when unable to delete a temporary file
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+
+        runs.clear();
+    }
+
+    private void spill() throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(lines);
+
+        final Path run = Files.createTempFile(temporaryDirectory, "warc-index-", ".run");
+        runs.add(run);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+
+        lines.clear();
+        memoryUsed = 0;
+    }
+
+    private void merge(final Writer output) throws IOException {
+        final PriorityQueue<RunReader> queue = new PriorityQueue<>(runs.size());
+
+        try {
+            for (Path run : runs) {
+                final RunReader runReader = new RunReader(Files.newBufferedReader(run, StandardCharsets.UTF_8));
+
+                if (runReader.advance()) {
+                    queue.add(runReader);
+                } else {
+                    runReader.close();
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                final RunReader runReader = queue.poll();
+
+                output.write(runReader.current);
+                output.write('\n');
+
+                if (runReader.advance()) {
+                    queue.add(runReader);
+                } else {
+                    runReader.close();
+                }
+            }
+        } finally {
+            for (RunReader runReader : queue) {
+                runReader.close();
+            }
+        }
+    }
+
+    private static class RunReader implements Comparable<RunReader>, Closeable {
+
+        private final BufferedReader reader;
+        private String current;
+
+        private RunReader(final BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        private boolean advance() throws IOException {
+            current = reader.readLine();
+
+            return current != null;
+        }
+
+        @Override
+        public int compareTo(final RunReader other) {
+            return current.compareTo(other.current);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
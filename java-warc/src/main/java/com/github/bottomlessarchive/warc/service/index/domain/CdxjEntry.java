@@ -0,0 +1,105 @@
+package com.github.bottomlessarchive.warc.service.index.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A line of a CDXJ index. Describes where a capture of an URL can be found in a WARC file.
+ *
+ * @see <a href="https://specs.webrecorder.net/cdxj/0.1.0/">https://specs.webrecorder.net/cdxj/0.1.0/</a>
+ */
+@Getter
+@Builder
+@SuppressWarnings("unused")
+public class CdxjEntry {
+
+    /**
+     * The SURT canonicalized form of the URL. This is the primary sort key of the index.
+     */
+    private final String surt;
+
+    /**
+     * The 14 digit timestamp of the capture, for example "20181015080248".
+     */
+    private final String timestamp;
+
+    /**
+     * The original URL of the capture.
+     */
+    private final String url;
+
+    /**
+     * The mime type of the capture or null if unknown.
+     */
+    private final String mime;
+
+    /**
+     * The HTTP status code of the capture or null if unknown.
+     */
+    private final String status;
+
+    /**
+     * The payload digest of the capture or null if unknown.
+     */
+    private final String digest;
+
+    /**
+     * The offset of the record in the (possibly compressed) WARC file.
+     */
+    private final long offset;
+
+    /**
+     * The length of the record in the (possibly compressed) WARC file.
+     */
+    private final long length;
+
+    /**
+     * The name of the WARC file or null if unknown.
+     */
+    private final String filename;
+
+    /**
+     * Return the entry as a line of a CDXJ index, without the line terminator.
+     *
+     * @return the CDXJ line
+     */
+    public String toCdxjLine() {
+        final StringBuilder result = new StringBuilder(256)
+                .append(surt).append(' ').append(timestamp).append(" {");
+
+        appendField(result, "url", url, true);
+        appendField(result, "mime", mime, false);
+        appendField(result, "status", status, false);
+        appendField(result, "digest", digest, false);
+        appendField(result, "length", String.valueOf(length), false);
+        appendField(result, "offset", String.valueOf(offset), false);
+        appendField(result, "filename", filename, false);
+
+        return result.append('}').toString();
+    }
+
+    private static void appendField(final StringBuilder result, final String name, final String value,
+            final boolean first) {
+        if (value == null) {
+            return;
+        }
+
+        if (!first) {
+            result.append(", ");
+        }
+
+        result.append('"').append(name).append("\": \"");
+        for (int i = 0; i < value.length(); i++) {
+            final char character = value.charAt(i);
+
+            if (character == '"' || character == '\\') {
+                result.append('\\').append(character);
+            } else if (character < 0x20) {
+                result.append(String.format("\\u%04x", (int) character));
+            } else {
+                result.append(character);
+            }
+        }
+        result.append('"');
+    }
+}
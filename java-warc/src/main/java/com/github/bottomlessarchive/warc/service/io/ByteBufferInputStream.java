@@ -0,0 +1,74 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} that reads the remaining bytes of a {@link ByteBuffer}. When the buffer is a slice of a
+ * memory mapped file, no data is copied until it is actually read.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Create a new stream on the remaining bytes of the provided buffer.
+     *
+     * @param buffer the buffer to read
+     */
+    public ByteBufferInputStream(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Return a read-only view of the unread part of the stream. Reading the view doesn't move the position of the
+     * stream.
+     *
+     * @return the unread part of the stream
+     */
+    public ByteBuffer asByteBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    @Override
+    public int read() {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+
+        final int read = Math.min(length, buffer.remaining());
+        buffer.get(target, offset, read);
+
+        return read;
+    }
+
+    @Override
+    public long skip(final long length) {
+        if (length <= 0) {
+            return 0;
+        }
+
+        final int skipped = (int) Math.min(length, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
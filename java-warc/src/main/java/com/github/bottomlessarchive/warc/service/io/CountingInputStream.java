@@ -0,0 +1,96 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream and remembers if reading it failed. When the length of the stream is known,
+ * then a stream that ends early is considered to be failed too, because the connection was lost. The readers wrap
+ * the errors of their streams, so this is how a network failure can be told apart from a malformed file.
+ */
+public class CountingInputStream extends InputStream {
+
+    // The stream can be read by the thread of a read-ahead
+    private final InputStream source;
+    private final long expectedLength;
+    private volatile long bytesRead;
+    private volatile boolean failed;
+
+    /**
+     * Create a new stream.
+     *
+     * @param source         the stream to read
+     * @param expectedLength the length of the stream in bytes, or -1 if it is unknown
+     */
+    public CountingInputStream(final InputStream source, final long expectedLength) {
+        this.source = source;
+        this.expectedLength = expectedLength;
+    }
+
+    /**
+     * Return the number of the bytes that were read from the stream.
+     *
+     * @return the number of the read bytes
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Check if reading the stream failed, or it ended before its expected length.
+     *
+     * @return true if reading the stream failed
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public int read() throws IOException {
+        try {
+            final int result = source.read();
+            if (result >= 0) {
+                bytesRead++;
+            } else {
+                verifyLength();
+            }
+
+            return result;
+        } catch (IOException e) {
+            failed = true;
+
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) throws IOException {
+        try {
+            final int read = source.read(target, offset, length);
+            if (read > 0) {
+                bytesRead += read;
+            } else if (read < 0) {
+                verifyLength();
+            }
+
+            return read;
+        } catch (IOException e) {
+            failed = true;
+
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private void verifyLength() throws IOException {
+        if (expectedLength >= 0 && bytesRead < expectedLength) {
+            throw new EOFException("The connection was closed after " + bytesRead + " bytes of the expected "
+                    + expectedLength + " bytes!");
+        }
+    }
+}
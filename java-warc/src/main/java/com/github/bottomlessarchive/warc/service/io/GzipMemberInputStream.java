@@ -0,0 +1,507 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import com.github.bottomlessarchive.warc.service.metrics.WarcReaderListener;
+import com.github.bottomlessarchive.warc.service.metrics.WarcReaderStage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a stream that consists of one or more concatenated gzip members. Unlike
+ * {@link java.util.zip.GZIPInputStream} it doesn't depend on {@link InputStream#available()} to find the next
+ * member, and it uses only one {@link Inflater} that is reset at every member boundary.
+ * <p>
+ * The offset of every member is recorded, both in the compressed source and in the decompressed data, so the
+ * decompressed offsets can be mapped back to the compressed member that contains them. Compressed WARC files
+ * usually contain one record per member, so this gives the compressed offset of the records.
+ * <p>
+ * In recovery mode a corrupt or truncated member, or garbage between the members, doesn't fail the stream. The
+ * compressed data is scanned for the header of the next member instead, and the decompression continues there. The
+ * already decompressed data of the corrupt member is kept, so the stream can contain a partial record before the
+ * data of the next member.
+ */
+public class GzipMemberInputStream extends InputStream {
+
+    /**
+     * The default size of the buffer used to read the compressed data.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    private static final int INITIAL_BOUNDARY_CAPACITY = 16;
+
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+    private static final int DEFLATE_METHOD = 8;
+    private static final int SKIP_BUFFER_SIZE = 8192;
+
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    private final InputStream source;
+    private final WarcReaderListener listener;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] input;
+    private final boolean recovery;
+    private byte[] skipBuffer;
+
+    private int inputPosition;
+    private int inputLimit;
+    private long inputStartOffset;
+
+    private boolean inMember;
+    private boolean endOfStream;
+    private long memberCount;
+    private long memberStartOffset;
+    private volatile long skippedBytes;
+    private long memberUncompressedSize;
+    private long uncompressedPosition;
+
+    // The member boundaries that are not yet queried by compressedOffsetOf, stored in a ring buffer
+    private long[] boundaryUncompressedOffsets = new long[INITIAL_BOUNDARY_CAPACITY];
+    private long[] boundaryCompressedOffsets = new long[INITIAL_BOUNDARY_CAPACITY];
+    private int boundaryHead;
+    private int boundaryCount;
+
+    /**
+     * Create a new decompressing stream.
+     *
+     * @param source the stream of the compressed data
+     */
+    public GzipMemberInputStream(final InputStream source) {
+        this(source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new decompressing stream.
+     *
+     * @param source     the stream of the compressed data
+     * @param bufferSize the size of the buffer used to read the compressed data
+     */
+    public GzipMemberInputStream(final InputStream source, final int bufferSize) {
+        this(source, bufferSize, 0);
+    }
+
+    /**
+     * Create a new decompressing stream on a source that doesn't start at the beginning of the compressed file.
+     * The source should start at a member boundary.
+     *
+     * @param source      the stream of the compressed data
+     * @param bufferSize  the size of the buffer used to read the compressed data
+     * @param startOffset the offset of the source's first byte in the compressed file
+     */
+    public GzipMemberInputStream(final InputStream source, final int bufferSize, final long startOffset) {
+        this(source, bufferSize, startOffset, null);
+    }
+
+    /**
+     * Create a new decompressing stream that reports the time spent with the decompression to the provided listener.
+     *
+     * @param source      the stream of the compressed data
+     * @param bufferSize  the size of the buffer used to read the compressed data
+     * @param startOffset the offset of the source's first byte in the compressed file
+     * @param listener    the listener to report to, null if nothing should be reported
+     */
+    public GzipMemberInputStream(final InputStream source, final int bufferSize, final long startOffset,
+            final WarcReaderListener listener) {
+        this(source, bufferSize, startOffset, listener, false);
+    }
+
+    /**
+     * Create a new decompressing stream that optionally recovers from the corrupt members.
+     *
+     * @param source      the stream of the compressed data
+     * @param bufferSize  the size of the buffer used to read the compressed data
+     * @param startOffset the offset of the source's first byte in the compressed file
+     * @param listener    the listener to report to, null if nothing should be reported
+     * @param recovery    true if the corrupt members should be skipped instead of failing the stream
+     */
+    public GzipMemberInputStream(final InputStream source, final int bufferSize, final long startOffset,
+            final WarcReaderListener listener, final boolean recovery) {
+        this.source = source;
+        this.listener = listener;
+        this.input = new byte[bufferSize];
+        this.inputStartOffset = startOffset;
+        this.recovery = recovery;
+    }
+
+    /**
+     * Return the compressed offset of the member that contains the provided decompressed offset. The offsets must
+     * be queried in ascending order, the boundaries before the queried offset are discarded. When the provided
+     * offset is the end of the decompressed data, then the length of the compressed stream is returned.
+     *
+     * <p>
+     * This method can be called while an other thread is reading the stream, for example when the stream is read
+     * by a {@link ReadAheadInputStream}.
+     *
+     * @param uncompressedOffset the offset in the decompressed data
+     * @return the offset of the containing member in the compressed data
+     */
+    public synchronized long compressedOffsetOf(final long uncompressedOffset) {
+        while (boundaryCount > 1 && boundaryUncompressedOffsets[(boundaryHead + 1) % boundaryCapacity()]
+                <= uncompressedOffset) {
+            boundaryHead = (boundaryHead + 1) % boundaryCapacity();
+            boundaryCount--;
+        }
+
+        return boundaryCount > 0 ? boundaryCompressedOffsets[boundaryHead] : 0;
+    }
+
+    /**
+     * Return the number of the members that were started so far.
+     *
+     * @return the number of the members
+     */
+    public long memberCount() {
+        return memberCount;
+    }
+
+    /**
+     * Return the number of the compressed bytes that were skipped while recovering from corrupt members.
+     *
+     * @return the number of the skipped bytes
+     */
+    public long skippedBytes() {
+        return skippedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] result = new byte[1];
+
+        return read(result, 0, 1) == -1 ? -1 : result[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!recovery) {
+            return readMembers(target, offset, length);
+        }
+
+        while (true) {
+            try {
+                return readMembers(target, offset, length);
+            } catch (ZipException | EOFException e) {
+                resynchronize();
+            }
+        }
+    }
+
+    private int readMembers(final byte[] target, final int offset, final int length) throws IOException {
+        while (true) {
+            if (endOfStream) {
+                return -1;
+            }
+
+            if (!inMember) {
+                if (!startMember()) {
+                    endOfStream = true;
+                    addBoundary(uncompressedPosition, compressedPosition());
+
+                    return -1;
+                }
+
+                continue;
+            }
+
+            final int inflated = inflate(target, offset, length);
+            if (inflated > 0) {
+                crc.update(target, offset, inflated);
+                memberUncompressedSize += inflated;
+                uncompressedPosition += inflated;
+
+                return inflated;
+            }
+
+            if (inflater.finished()) {
+                finishMember();
+            } else if (inflater.needsDictionary()) {
+                throw new ZipException("Unsupported gzip member, a preset dictionary is required!");
+            } else if (inflater.needsInput()) {
+                if (!fillInput()) {
+                    throw new EOFException("Unexpected end of a gzip member!");
+                }
+
+                inflater.setInput(input, inputPosition, inputLimit - inputPosition);
+                inputPosition = inputLimit;
+            }
+        }
+    }
+
+    @Override
+    public long skip(final long length) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+
+        // The skipped data is decompressed into the same buffer every time, instead of a new one per call
+        if (skipBuffer == null) {
+            skipBuffer = new byte[SKIP_BUFFER_SIZE];
+        }
+
+        final int read = read(skipBuffer, 0, (int) Math.min(length, SKIP_BUFFER_SIZE));
+
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return endOfStream ? 0 : 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        source.close();
+    }
+
+    private int inflate(final byte[] target, final int offset, final int length) throws ZipException {
+        try {
+            if (listener == null) {
+                return inflater.inflate(target, offset, length);
+            }
+
+            final long start = System.nanoTime();
+            final int inflated = inflater.inflate(target, offset, length);
+            listener.stageCompleted(WarcReaderStage.INFLATION, System.nanoTime() - start);
+
+            return inflated;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflate data in the gzip member starting at compressed offset "
+                    + lastBoundaryCompressedOffset() + "!");
+        }
+    }
+
+    /**
+     * Parse the header of the next member and prepare the inflater to decompress it.
+     *
+     * @return true if a new member was found, false if the stream is ended
+     */
+    private boolean startMember() throws IOException {
+        if (inputPosition == inputLimit && !fillInput()) {
+            return false;
+        }
+
+        final long memberOffset = compressedPosition();
+        memberStartOffset = memberOffset;
+
+        final int firstMagic = readUnsignedByte();
+        final int secondMagic = inputPosition < inputLimit || fillInput() ? readUnsignedByte() : -1;
+        if (firstMagic != GZIP_MAGIC_FIRST || secondMagic != GZIP_MAGIC_SECOND) {
+            if (recovery) {
+                throw new ZipException("Invalid gzip member header at compressed offset " + memberOffset + "!");
+            }
+
+            if (memberCount == 0) {
+                throw new ZipException("Not in GZIP format!");
+            }
+
+            // Trailing garbage after the last member is ignored, just like GZIPInputStream does
+            return false;
+        }
+
+        if (readUnsignedByte() != DEFLATE_METHOD) {
+            throw new ZipException("Unsupported compression method in the gzip member starting at compressed offset "
+                    + memberOffset + "!");
+        }
+
+        final int flags = readUnsignedByte();
+
+        // Modification time, extra flags and operating system
+        skipBytes(6);
+
+        if ((flags & FLAG_EXTRA) != 0) {
+            skipBytes(readUnsignedByte() | (readUnsignedByte() << 8));
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            skipBytes(2);
+        }
+
+        inflater.reset();
+        crc.reset();
+        memberUncompressedSize = 0;
+        memberCount++;
+        inMember = true;
+
+        addBoundary(uncompressedPosition, memberOffset);
+
+        if (inputPosition < inputLimit) {
+            inflater.setInput(input, inputPosition, inputLimit - inputPosition);
+            inputPosition = inputLimit;
+        }
+
+        return true;
+    }
+
+    /**
+     * Give back the unused input to the buffer and verify the trailer of the member.
+     */
+    private void finishMember() throws IOException {
+        inputPosition = inputLimit - inflater.getRemaining();
+
+        final long expectedCrc = readUnsignedInt();
+        final long expectedSize = readUnsignedInt();
+        if (expectedCrc != crc.getValue() || expectedSize != (memberUncompressedSize & 0xFFFFFFFFL)) {
+            throw new ZipException("Corrupt trailer in the gzip member ending at compressed offset "
+                    + compressedPosition() + "!");
+        }
+
+        inMember = false;
+    }
+
+    /**
+     * Find the header of the next member after a corrupt member. The search starts right after the start of the
+     * corrupt member when it is still in the input buffer, because the inflater could read into the next member
+     * before it noticed the corruption.
+     */
+    private void resynchronize() throws IOException {
+        inMember = false;
+
+        final long corruptOffset = memberStartOffset;
+        inputPosition = (int) Math.min(Math.max(corruptOffset + 1 - inputStartOffset, 0), inputLimit);
+
+        while (true) {
+            for (int i = inputPosition; i + 2 < inputLimit; i++) {
+                if ((input[i] & 0xFF) == GZIP_MAGIC_FIRST && (input[i + 1] & 0xFF) == GZIP_MAGIC_SECOND
+                        && input[i + 2] == DEFLATE_METHOD) {
+                    inputPosition = i;
+                    reportSkipped(compressedPosition() - corruptOffset);
+
+                    return;
+                }
+            }
+
+            // The last two bytes could be the start of a header
+            if (!fillInputKeeping(Math.max(inputPosition, inputLimit - 2))) {
+                inputPosition = inputLimit;
+                reportSkipped(compressedPosition() - corruptOffset);
+
+                endOfStream = true;
+                addBoundary(uncompressedPosition, compressedPosition());
+
+                return;
+            }
+        }
+    }
+
+    private void reportSkipped(final long length) {
+        skippedBytes += length;
+
+        if (listener != null) {
+            listener.corruptDataSkipped(length, true);
+        }
+    }
+
+    private long compressedPosition() {
+        return inputStartOffset + inputPosition;
+    }
+
+    private boolean fillInput() throws IOException {
+        int read;
+        do {
+            read = source.read(input, 0, input.length);
+        } while (read == 0);
+
+        if (read < 0) {
+            return false;
+        }
+
+        inputStartOffset += inputLimit;
+        inputPosition = 0;
+        inputLimit = read;
+
+        return true;
+    }
+
+    private boolean fillInputKeeping(final int keptStart) throws IOException {
+        final int kept = inputLimit - keptStart;
+        System.arraycopy(input, keptStart, input, 0, kept);
+
+        inputStartOffset += keptStart;
+        inputPosition = 0;
+        inputLimit = kept;
+
+        int read;
+        do {
+            read = source.read(input, kept, input.length - kept);
+        } while (read == 0);
+
+        if (read < 0) {
+            return false;
+        }
+
+        inputLimit += read;
+
+        return true;
+    }
+
+    private int readUnsignedByte() throws IOException {
+        if (inputPosition == inputLimit && !fillInput()) {
+            throw new EOFException("Unexpected end of a gzip member!");
+        }
+
+        return input[inputPosition++] & 0xFF;
+    }
+
+    private long readUnsignedInt() throws IOException {
+        return readUnsignedByte() | (readUnsignedByte() << 8) | (readUnsignedByte() << 16)
+                | ((long) readUnsignedByte() << 24);
+    }
+
+    private void skipBytes(final int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            readUnsignedByte();
+        }
+    }
+
+    private void skipZeroTerminated() throws IOException {
+        while (readUnsignedByte() != 0) {
+            // Skipping until the terminating zero
+        }
+    }
+
+    private synchronized void addBoundary(final long uncompressedOffset, final long compressedOffset) {
+        if (boundaryCount == boundaryCapacity()) {
+            final long[] uncompressedOffsets = new long[boundaryCount * 2];
+            final long[] compressedOffsets = new long[boundaryCount * 2];
+            for (int i = 0; i < boundaryCount; i++) {
+                uncompressedOffsets[i] = boundaryUncompressedOffsets[(boundaryHead + i) % boundaryCount];
+                compressedOffsets[i] = boundaryCompressedOffsets[(boundaryHead + i) % boundaryCount];
+            }
+
+            boundaryUncompressedOffsets = uncompressedOffsets;
+            boundaryCompressedOffsets = compressedOffsets;
+            boundaryHead = 0;
+        }
+
+        final int index = (boundaryHead + boundaryCount) % boundaryCapacity();
+        boundaryUncompressedOffsets[index] = uncompressedOffset;
+        boundaryCompressedOffsets[index] = compressedOffset;
+        boundaryCount++;
+    }
+
+    private synchronized long lastBoundaryCompressedOffset() {
+        return boundaryCompressedOffsets[(boundaryHead + boundaryCount - 1) % boundaryCapacity()];
+    }
+
+    private int boundaryCapacity() {
+        return boundaryUncompressedOffsets.length;
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Helper methods for reading {@link InputStream}s.
+ */
+public final class InputStreams {
+
+    private InputStreams() {
+    }
+
+    /**
+     * Skip exactly the provided amount of bytes. Unlike {@link InputStream#skip(long)}, it doesn't stop early, the
+     * bytes are read when the stream is not able to skip them.
+     *
+     * @param inputStream the stream to skip
+     * @param length      the amount of bytes to skip
+     * @throws EOFException when the stream ends before the bytes are skipped
+     * @throws IOException  when an error happens while reading the stream
+     */
+    public static void skipFully(final InputStream inputStream, final long length) throws IOException {
+        long remaining = length;
+
+        while (remaining > 0) {
+            final long skipped = inputStream.skip(remaining);
+
+            if (skipped > 0) {
+                remaining -= skipped;
+            } else if (inputStream.read() < 0) {
+                throw new EOFException("The stream ended after skipping " + (length - remaining) + " bytes of the "
+                        + length + " bytes!");
+            } else {
+                remaining--;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A byte sequence that is searched at the start of the lines, for example the "WARC/1." prefix of the version lines
+ * of the records. The search uses the Boyer-Moore-Horspool algorithm, so it usually looks at only a fraction of the
+ * scanned bytes.
+ */
+public class LineMarker {
+
+    private final byte[] marker;
+    private final int[] shifts = new int[256];
+
+    /**
+     * Create a new marker.
+     *
+     * @param marker the bytes to search for
+     */
+    public LineMarker(final byte[] marker) {
+        if (marker.length == 0) {
+            throw new IllegalArgumentException("The marker can't be empty!");
+        }
+
+        this.marker = marker.clone();
+
+        Arrays.fill(shifts, marker.length);
+        for (int i = 0; i < marker.length - 1; i++) {
+            shifts[marker[i] & 0xFF] = marker.length - 1 - i;
+        }
+    }
+
+    /**
+     * Return the length of the marker.
+     *
+     * @return the length of the marker
+     */
+    public int length() {
+        return marker.length;
+    }
+
+    /**
+     * Find the first occurrence of the marker that starts a line in the provided range of the data. An occurrence
+     * starts a line when it is preceded by a '\n' byte. The occurrence at the start of the range can't be checked,
+     * so it is accepted only when the start of the range is known to be the start of a line.
+     *
+     * @param data            the data to search in
+     * @param from            the start of the range, inclusive
+     * @param to              the end of the range, exclusive
+     * @param fromIsLineStart true if the start of the range is the start of a line
+     * @return the index of the occurrence, or -1 when the marker is not found
+     */
+    public int indexOf(final ByteBuffer data, final int from, final int to, final boolean fromIsLineStart) {
+        final int last = marker.length - 1;
+        final byte lastByte = marker[last];
+
+        int index = from;
+        while (index + last < to) {
+            final byte value = data.get(index + last);
+
+            if (value == lastByte && matchesAt(data, index)
+                    && (index == from ? fromIsLineStart : data.get(index - 1) == '\n')) {
+                return index;
+            }
+
+            index += shifts[value & 0xFF];
+        }
+
+        return -1;
+    }
+
+    private boolean matchesAt(final ByteBuffer data, final int index) {
+        for (int i = 0; i < marker.length - 1; i++) {
+            if (data.get(index + i) != marker[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
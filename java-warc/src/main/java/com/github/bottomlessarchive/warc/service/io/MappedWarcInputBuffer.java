@@ -0,0 +1,348 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link WarcInputBuffer} that reads an uncompressed WARC file through a memory mapped window of the file. The
+ * headers are parsed straight from the mapping and the blocks are returned as slices of it, so no data is copied
+ * until it is actually read. Skipping a block only moves the read position.
+ * <p>
+ * A mapping can't be bigger than 2 GB, so bigger files are read through a window that is remapped when the read
+ * position leaves it.
+ */
+public class MappedWarcInputBuffer extends WarcInputBuffer {
+
+    /**
+     * The default size of the mapped window.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1073741824;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+
+    /**
+     * Create a new buffer on the provided channel with the default window size.
+     *
+     * @param channel the channel of the file to read
+     * @throws IOException when unable to map the file
+     */
+    public MappedWarcInputBuffer(final FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Create a new buffer on the provided channel with the provided window size.
+     *
+     * @param channel    the channel of the file to read
+     * @param windowSize the maximum size of the mapped window
+     * @throws IOException when unable to map the file
+     */
+    public MappedWarcInputBuffer(final FileChannel channel, final int windowSize) throws IOException {
+        this(channel, windowSize, 0);
+    }
+
+    /**
+     * Create a new buffer on the provided channel that starts reading at the provided offset.
+     *
+     * @param channel     the channel of the file to read
+     * @param windowSize  the maximum size of the mapped window
+     * @param startOffset the offset to start reading at
+     * @throws IOException when unable to map the file
+     */
+    public MappedWarcInputBuffer(final FileChannel channel, final int windowSize, final long startOffset)
+            throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+
+        map(Math.min(startOffset, fileSize));
+    }
+
+    @Override
+    public int lineEnd(final int offset) throws IOException {
+        return lineEnd(offset, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int lineEnd(final int offset, final int maximumOffset) throws IOException {
+        int scanFrom = position + offset;
+
+        while (true) {
+            final int limit = window.limit();
+            final int scanLimit = (int) Math.min(limit, (long) position + maximumOffset);
+            for (int i = scanFrom; i < scanLimit; i++) {
+                if (window.get(i) == '\n') {
+                    return i + 1 - position;
+                }
+            }
+
+            if (scanLimit - position >= maximumOffset) {
+                return -1;
+            }
+
+            final int scanned = limit - position;
+            if (windowStart + limit >= fileSize || (position == 0 && limit == windowSize)) {
+                return scanned > offset ? scanned : -1;
+            }
+
+            // Move the window to the current position, so the whole line can fit into it
+            map(windowStart + position);
+
+            scanFrom = position + Math.max(scanned, offset);
+        }
+    }
+
+    @Override
+    public long skipTo(final LineMarker marker) throws IOException {
+        final long start = windowStart + position;
+        boolean lineStart = true;
+
+        while (true) {
+            final int found = marker.indexOf(window, position, window.limit(), lineStart);
+            if (found >= 0) {
+                position = found;
+
+                return windowStart + position - start;
+            }
+
+            if (windowStart + window.limit() >= fileSize) {
+                position = window.limit();
+
+                return windowStart + position - start;
+            }
+
+            // The last bytes could be the start of a marker, the byte before them is kept for the line start check
+            final long nextWindowStart = windowStart + window.limit() - marker.length();
+            if (nextWindowStart > windowStart + position) {
+                map(nextWindowStart);
+                lineStart = false;
+            } else {
+                map(windowStart + position);
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer data() {
+        return window;
+    }
+
+    @Override
+    public boolean hasStableData() {
+        // A remapping creates a new window, the previous windows stay valid until they are garbage collected
+        return true;
+    }
+
+    @Override
+    public int position() {
+        return position;
+    }
+
+    @Override
+    public long offset() {
+        return windowStart + position;
+    }
+
+    @Override
+    public void consume(final int length) {
+        if (length > window.limit() - position) {
+            throw new IllegalArgumentException("Unable to consume more bytes than the buffered ones!");
+        }
+
+        position += length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+
+        return window.get(position++) & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!ensureAvailable()) {
+            return -1;
+        }
+
+        final int read = Math.min(length, window.limit() - position);
+        window.position(position);
+        window.get(target, offset, read);
+        position += read;
+
+        return read;
+    }
+
+    @Override
+    public long skip(final long length) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+
+        final long start = windowStart + position;
+        final long skipped = Math.min(length, fileSize - start);
+        seek(start + skipped);
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(fileSize - windowStart - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public InputStream openBlock(final long length) throws IOException {
+        final long start = windowStart + position;
+        final long blockLength = Math.min(length, fileSize - start);
+
+        if (position + blockLength > window.limit() && blockLength <= windowSize) {
+            map(start);
+        }
+
+        if (position + blockLength <= window.limit()) {
+            final ByteBuffer block = window.duplicate();
+            block.position(position);
+            block.limit(position + (int) blockLength);
+
+            position += blockLength;
+
+            return new ByteBufferInputStream(block.slice());
+        }
+
+        seek(start + blockLength);
+
+        return new WindowedBlockInputStream(start, blockLength);
+    }
+
+    @Override
+    public void skipBlock() {
+        // The read position is moved to the end of the block when the block is opened
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        if (position < window.limit()) {
+            return true;
+        }
+
+        if (windowStart + window.limit() >= fileSize) {
+            return false;
+        }
+
+        map(windowStart + position);
+
+        return true;
+    }
+
+    private void seek(final long offset) throws IOException {
+        if (offset >= windowStart && offset <= windowStart + window.limit()) {
+            position = (int) (offset - windowStart);
+        } else {
+            map(offset);
+        }
+    }
+
+    private void map(final long start) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * Reads a block that is bigger than the window size by mapping it window by window.
+     */
+    private class WindowedBlockInputStream extends InputStream {
+
+        private long nextWindowStart;
+        private long remaining;
+        private ByteBufferInputStream current;
+
+        private WindowedBlockInputStream(final long start, final long length) {
+            this.nextWindowStart = start;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureWindow()) {
+                return -1;
+            }
+
+            return current.read();
+        }
+
+        @Override
+        public int read(final byte[] target, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!ensureWindow()) {
+                return -1;
+            }
+
+            return current.read(target, offset, length);
+        }
+
+        @Override
+        public long skip(final long length) throws IOException {
+            if (length <= 0) {
+                return 0;
+            }
+
+            final long buffered = current != null ? current.available() : 0;
+            if (length <= buffered) {
+                return current.skip(length);
+            }
+
+            final long skipped = Math.min(length - buffered, remaining);
+            nextWindowStart += skipped;
+            remaining -= skipped;
+            current = null;
+
+            return buffered + skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min((current != null ? current.available() : 0) + remaining, Integer.MAX_VALUE);
+        }
+
+        private boolean ensureWindow() throws IOException {
+            if (current != null && current.available() > 0) {
+                return true;
+            }
+
+            if (remaining == 0) {
+                return false;
+            }
+
+            final long length = Math.min(windowSize, remaining);
+            current = new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, nextWindowStart, length));
+            nextWindowStart += length;
+            remaining -= length;
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.ref.Cleaner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a source stream ahead on a background thread. The data is read into a fixed number of pooled buffers, that
+ * are handed over to the reading thread when they are full, then given back to the pool after they are read. The
+ * background thread stops when every buffer is full, so the memory usage is bounded by the size of the pool.
+ * <p>
+ * This is useful when reading the source is expensive, for example when it is a {@link GzipMemberInputStream},
+ * because the decompression runs in parallel with the processing of the already decompressed data.
+ * <p>
+ * The stream must be closed. The background thread doesn't refer to the stream, so when an unclosed stream is
+ * garbage collected, the thread is stopped and the source is closed, but only after a garbage collection.
+ */
+@Slf4j
+public class ReadAheadInputStream extends InputStream {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // Marks the end of the source in the queue of the filled buffers
+    private static final Chunk END_OF_SOURCE = new Chunk(0);
+
+    private final BlockingQueue<Chunk> freeChunks;
+    private final BlockingQueue<Chunk> filledChunks;
+    private final Background background;
+    private final Cleaner.Cleanable cleanable;
+
+    private Chunk current;
+    private int currentPosition;
+    private Throwable failure;
+    private boolean closed;
+
+    /**
+     * Create a new read-ahead stream and start reading the source in the background.
+     *
+     * @param source     the stream to read ahead
+     * @param depth      the number of buffers that can be filled ahead
+     * @param bufferSize the size of one buffer
+     */
+    public ReadAheadInputStream(final InputStream source, final int depth, final int bufferSize) {
+        if (depth < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("The depth and the buffer size should be positive!");
+        }
+
+        this.freeChunks = new ArrayBlockingQueue<>(depth);
+        this.filledChunks = new ArrayBlockingQueue<>(depth + 1);
+
+        for (int i = 0; i < depth; i++) {
+            freeChunks.add(new Chunk(bufferSize));
+        }
+
+        this.background = new Background(source, freeChunks, filledChunks);
+        this.cleanable = CLEANER.register(this, background::abandon);
+
+        background.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+
+        return current.data[currentPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!ensureData()) {
+            return -1;
+        }
+
+        final int read = Math.min(length, current.length - currentPosition);
+        System.arraycopy(current.data, currentPosition, target, offset, read);
+        currentPosition += read;
+
+        return read;
+    }
+
+    @Override
+    public long skip(final long length) throws IOException {
+        if (length <= 0 || !ensureData()) {
+            return 0;
+        }
+
+        final int skipped = (int) Math.min(length, current.length - currentPosition);
+        currentPosition += skipped;
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return current != null && current != END_OF_SOURCE ? current.length - currentPosition : 0;
+    }
+
+    /**
+     * Stop the background thread and close the source.
+     *
+     * @throws IOException when unable to close the source
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            background.stop();
+        } finally {
+            cleanable.clean();
+        }
+    }
+
+    private boolean ensureData() throws IOException {
+        if (current != null && currentPosition < current.length) {
+            return true;
+        }
+
+        if (failure instanceof IOException) {
+            throw new IOException(failure.getMessage(), failure);
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+
+        if (current == END_OF_SOURCE) {
+            return false;
+        }
+
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+
+        if (current != null) {
+            freeChunks.add(current);
+        }
+
+        try {
+            current = filledChunks.take();
+            currentPosition = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            current = null;
+
+            throw new InterruptedIOException("Interrupted while waiting for the read-ahead data!");
+        }
+
+        if (current.failure != null) {
+            failure = current.failure;
+            current = null;
+
+            return ensureData();
+        }
+
+        return current != END_OF_SOURCE;
+    }
+
+    /**
+     * Reads the source on the background thread. It must not refer to the stream itself, otherwise an abandoned
+     * stream would never become unreachable, and its thread would wait for a free buffer forever.
+     */
+    private static class Background {
+
+        private final InputStream source;
+        private final BlockingQueue<Chunk> freeChunks;
+        private final BlockingQueue<Chunk> filledChunks;
+        private final Thread thread;
+
+        private volatile boolean stopped;
+
+        private Background(final InputStream source, final BlockingQueue<Chunk> freeChunks,
+                final BlockingQueue<Chunk> filledChunks) {
+            this.source = source;
+            this.freeChunks = freeChunks;
+            this.filledChunks = filledChunks;
+            this.thread = new Thread(this::readAhead, "warc-read-ahead-" + THREAD_COUNTER.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        /**
+         * Stop the thread and close the source.
+         */
+        private void stop() throws IOException {
+            if (stopped) {
+                return;
+            }
+
+            stopped = true;
+
+            // Closing the source unblocks the thread when it waits for the source, the failure it gets because of
+            // this is ignored
+            thread.interrupt();
+            source.close();
+        }
+
+        /**
+         * Stop the thread of a stream that was garbage collected without closing it.
+         */
+        private void abandon() {
+            try {
+                stop();
+            } catch (IOException e) {
+                log.debug("Unable to close the source of an abandoned read-ahead stream!", e);
+            }
+        }
+
+        private void readAhead() {
+            Chunk chunk = null;
+
+            try {
+                while (!stopped) {
+                    chunk = freeChunks.take();
+                    chunk.length = 0;
+
+                    fill(chunk);
+                    if (chunk.length > 0) {
+                        filledChunks.put(chunk);
+                    }
+
+                    if (chunk.length < chunk.data.length) {
+                        filledChunks.put(END_OF_SOURCE);
+
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // The stream was closed or abandoned
+            } catch (IOException | RuntimeException e) {
+                if (!stopped) {
+                    // The data that was read before the failure is still handed over
+                    if (chunk != null && chunk.length > 0) {
+                        filledChunks.offer(chunk);
+                    }
+
+                    final Chunk failedChunk = new Chunk(0);
+                    failedChunk.failure = e;
+
+                    filledChunks.offer(failedChunk);
+                }
+            }
+        }
+
+        /**
+         * Fill the provided chunk from the source. The chunk is not full after the call only at the end of the
+         * source.
+         */
+        private void fill(final Chunk chunk) throws IOException {
+            while (chunk.length < chunk.data.length) {
+                final int read = source.read(chunk.data, chunk.length, chunk.data.length - chunk.length);
+                if (read < 0) {
+                    return;
+                }
+
+                chunk.length += read;
+            }
+        }
+    }
+
+    private static class Chunk {
+
+        private final byte[] data;
+        private int length;
+        private Throwable failure;
+
+        private Chunk(final int size) {
+            this.data = new byte[size];
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import com.github.bottomlessarchive.warc.service.WarcFormatException;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link WarcInputBuffer} that reads its data from an {@link InputStream} into a reusable heap buffer. When the
+ * data is read from a {@link GzipMemberInputStream}, the source offsets are the offsets of the gzip members.
+ */
+public class StreamWarcInputBuffer extends WarcInputBuffer {
+
+    /**
+     * The default size of the internal buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    /**
+     * The maximum size that the internal buffer can grow to while searching for the end of a line. A single header
+     * block bigger than this is considered to be corrupt.
+     */
+    public static final int MAXIMUM_BUFFER_SIZE = 16777216;
+
+    private final InputStream source;
+    private final GzipMemberInputStream compressedSource;
+
+    private byte[] buffer;
+    private ByteBuffer bufferView;
+    private int position;
+    private int limit;
+    private boolean endOfSource;
+    private long sourcePosition;
+
+    private BoundedInputStream currentBlock;
+
+    /**
+     * Create a new buffer with the default buffer size.
+     *
+     * @param source the stream to read the data from
+     */
+    public StreamWarcInputBuffer(final InputStream source) {
+        this(source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new buffer with the provided initial buffer size.
+     *
+     * @param source     the stream to read the data from
+     * @param bufferSize the initial size of the internal buffer
+     */
+    public StreamWarcInputBuffer(final InputStream source, final int bufferSize) {
+        this(source, bufferSize, 0);
+    }
+
+    /**
+     * Create a new buffer on a source that doesn't start at the beginning of the WARC file.
+     *
+     * @param source      the stream to read the data from
+     * @param bufferSize  the initial size of the internal buffer
+     * @param startOffset the offset of the source's first byte in the WARC file
+     */
+    public StreamWarcInputBuffer(final InputStream source, final int bufferSize, final long startOffset) {
+        this(source, null, bufferSize);
+
+        this.sourcePosition = startOffset;
+    }
+
+    /**
+     * Create a new buffer on a compressed source with the default buffer size.
+     *
+     * @param source the stream to read the data from
+     */
+    public StreamWarcInputBuffer(final GzipMemberInputStream source) {
+        this(source, source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new buffer on a compressed source that is read through an other stream, for example a
+     * {@link ReadAheadInputStream}. The data is read from the provided source, while the offsets of the gzip
+     * members are provided by the compressed source.
+     *
+     * @param source           the stream to read the data from
+     * @param compressedSource the decompressing stream that provides the data to the source
+     * @param bufferSize       the initial size of the internal buffer
+     */
+    public StreamWarcInputBuffer(final InputStream source, final GzipMemberInputStream compressedSource,
+            final int bufferSize) {
+        this.source = source;
+        this.compressedSource = compressedSource;
+        this.buffer = new byte[bufferSize];
+        this.bufferView = ByteBuffer.wrap(buffer);
+    }
+
+    @Override
+    public int lineEnd(final int offset) throws IOException {
+        return lineEnd(offset, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int lineEnd(final int offset, final int maximumOffset) throws IOException {
+        int scanFrom = position + offset;
+
+        while (true) {
+            final int scanLimit = (int) Math.min(limit, (long) position + maximumOffset);
+            for (int i = scanFrom; i < scanLimit; i++) {
+                if (buffer[i] == '\n') {
+                    return i + 1 - position;
+                }
+            }
+
+            if (scanLimit - position >= maximumOffset) {
+                return -1;
+            }
+
+            final int scanned = limit - position;
+            if (!fill()) {
+                return scanned > offset ? scanned : -1;
+            }
+
+            scanFrom = position + Math.max(scanned, offset);
+        }
+    }
+
+    @Override
+    public long skipTo(final LineMarker marker) throws IOException {
+        long skipped = 0;
+        boolean lineStart = true;
+
+        while (true) {
+            final int found = marker.indexOf(bufferView, position, limit, lineStart);
+            if (found >= 0) {
+                skipped += found - position;
+                position = found;
+
+                return skipped;
+            }
+
+            // The last bytes could be the start of a marker, the byte before them is kept for the line start check
+            final int kept = Math.min(limit - position, marker.length());
+            if (limit - position > kept) {
+                skipped += limit - position - kept;
+                position = limit - kept;
+                lineStart = false;
+            }
+
+            if (!fill()) {
+                skipped += limit - position;
+                position = limit;
+
+                return skipped;
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer data() {
+        return bufferView;
+    }
+
+    @Override
+    public int position() {
+        return position;
+    }
+
+    @Override
+    public long offset() {
+        return sourcePosition - (limit - position);
+    }
+
+    @Override
+    public long sourceOffsetOf(final long offset) {
+        return compressedSource != null ? compressedSource.compressedOffsetOf(offset) : offset;
+    }
+
+    @Override
+    public void consume(final int length) {
+        if (length > limit - position) {
+            throw new IllegalArgumentException("Unable to consume more bytes than the buffered ones!");
+        }
+
+        position += length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        final int buffered = limit - position;
+        if (buffered > 0) {
+            final int copied = Math.min(buffered, length);
+            System.arraycopy(buffer, position, target, offset, copied);
+            position += copied;
+
+            return copied;
+        }
+
+        // Big reads bypass the buffer, there is no point in copying the data twice
+        if (length >= buffer.length) {
+            final int read = source.read(target, offset, length);
+            if (read > 0) {
+                sourcePosition += read;
+            }
+
+            return read;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        return read(target, offset, length);
+    }
+
+    @Override
+    public long skip(final long length) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+
+        final int buffered = limit - position;
+        if (buffered > 0) {
+            final int skipped = (int) Math.min(buffered, length);
+            position += skipped;
+
+            return skipped;
+        }
+
+        final long skipped = source.skip(length);
+        sourcePosition += skipped;
+
+        return skipped;
+    }
+
+    @Override
+    public InputStream openBlock(final long length) {
+        currentBlock = new BoundedInputStream(this, length);
+
+        return currentBlock;
+    }
+
+    @Override
+    public void skipBlock() throws IOException {
+        if (currentBlock == null) {
+            return;
+        }
+
+        // A single skip call could return early, for example at the end of the buffered data
+        while (currentBlock.skip(Long.MAX_VALUE) > 0 || currentBlock.read() != -1) {
+            // Skipping until the end of the block
+        }
+
+        currentBlock = null;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (limit - position) + source.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Read more data from the source into the buffer. The unread data is moved to the start of the buffer first,
+     * and the buffer is grown when it is full.
+     *
+     * @return true if at least one byte was read, false when the source is exhausted
+     */
+    private boolean fill() throws IOException {
+        if (endOfSource) {
+            return false;
+        }
+
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+
+        if (limit == buffer.length) {
+            if (buffer.length >= MAXIMUM_BUFFER_SIZE) {
+                throw new WarcFormatException("Unable to find the end of a line in " + MAXIMUM_BUFFER_SIZE
+                        + " bytes!");
+            }
+
+            final byte[] grownBuffer = new byte[Math.min(buffer.length * 2, MAXIMUM_BUFFER_SIZE)];
+            System.arraycopy(buffer, 0, grownBuffer, 0, limit);
+            buffer = grownBuffer;
+            bufferView = ByteBuffer.wrap(buffer);
+        }
+
+        int read;
+        do {
+            read = source.read(buffer, limit, buffer.length - limit);
+        } while (read == 0);
+
+        if (read < 0) {
+            endOfSource = true;
+
+            return false;
+        }
+
+        limit += read;
+        sourcePosition += read;
+
+        return true;
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.bottomlessarchive.warc.service.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A buffered {@link InputStream} that gives direct access to its buffered data. It allows the header parsers to
+ * look for line endings in bulk and to parse the header lines in place, without copying them out of the buffer
+ * line by line.
+ * <p>
+ * Here is a list of known implementations of this class
+ * <ul>
+ * <li> StreamWarcInputBuffer
+ * <li> MappedWarcInputBuffer
+ * </ul>
+ */
+public abstract class WarcInputBuffer extends InputStream {
+
+    /**
+     * Search for the end of the line that starts at the provided offset. The offset is relative to the current read
+     * position of the buffer. The buffer is refilled as necessary, so after the call every byte between the
+     * current position and the returned offset is available in {@link #data()}.
+     *
+     * @param offset the offset of the line's start, relative to the current position
+     * @return the offset right after the line's '\n' terminator relative to the current position, the offset of
+     * the end of the data when the source ends before a terminator is found or -1 when no data is available at
+     * the provided offset at all
+     * @throws IOException when an error happens while reading from the source
+     */
+    public abstract int lineEnd(int offset) throws IOException;
+
+    /**
+     * Search for the end of the line that starts at the provided offset, like {@link #lineEnd(int)} does, but don't
+     * look further than the provided maximum offset. It can be used to look into data that is not known to be
+     * textual, without buffering a lot of data when it has no line terminators.
+     *
+     * @param offset        the offset of the line's start, relative to the current position
+     * @param maximumOffset the offset where the search stops, relative to the current position
+     * @return the offset right after the line's '\n' terminator relative to the current position, the offset of
+     * the end of the data when the source ends before a terminator is found or -1 when no terminator is found
+     * before the maximum offset or no data is available at the provided offset at all
+     * @throws IOException when an error happens while reading from the source
+     */
+    public abstract int lineEnd(int offset, int maximumOffset) throws IOException;
+
+    /**
+     * Skip the data until the next occurrence of the marker that starts a line. The current position is considered
+     * to be the start of a line. When the marker is not found, then every remaining byte is skipped.
+     *
+     * @param marker the marker to search for
+     * @return the number of the skipped bytes
+     * @throws IOException when an error happens while reading from the source
+     */
+    public abstract long skipTo(LineMarker marker) throws IOException;
+
+    /**
+     * Return a {@link ByteBuffer} that contains the buffered data. The content of the buffer is only valid until
+     * the next read from this buffer.
+     *
+     * @return the buffered data
+     */
+    public abstract ByteBuffer data();
+
+    /**
+     * Return true if the content of {@link #data()} is never overwritten, so ranges of it can be referenced even
+     * after the buffer is read further. Otherwise the content is only valid until the next read.
+     *
+     * @return true if the data is never overwritten
+     */
+    public boolean hasStableData() {
+        return false;
+    }
+
+    /**
+     * Return the current read position in {@link #data()}.
+     *
+     * @return the current read position
+     */
+    public abstract int position();
+
+    /**
+     * Return the offset of the next unread byte in the data provided by this buffer.
+     *
+     * @return the offset of the next unread byte
+     */
+    public abstract long offset();
+
+    /**
+     * Translate an offset of the data provided by this buffer to an offset in the source of the data. When the
+     * source is compressed, the offset of the compressed unit (for example the gzip member) that contains the
+     * provided offset is returned. For uncompressed sources the two offsets are the same.
+     *
+     * @param offset the offset in the data of this buffer
+     * @return the offset in the source
+     */
+    public long sourceOffsetOf(final long offset) {
+        return offset;
+    }
+
+    /**
+     * Mark the provided amount of bytes as read. The bytes should be already available in the buffer, for example
+     * by calling {@link #lineEnd(int)} first.
+     *
+     * @param length the amount of bytes to mark as read
+     */
+    public abstract void consume(int length);
+
+    /**
+     * Open a stream on the next block of data with the provided length. The read position of the buffer is
+     * considered to be at the end of the block after {@link #skipBlock()} is called.
+     *
+     * @param length the length of the block
+     * @return the stream of the block
+     * @throws IOException when an error happens while reading from the source
+     */
+    public abstract InputStream openBlock(long length) throws IOException;
+
+    /**
+     * Skip the unread part of the block that was opened last by {@link #openBlock(long)}.
+     *
+     * @throws IOException when an error happens while reading from the source
+     */
+    public abstract void skipBlock() throws IOException;
+
+    /**
+     * Skip the provided amount of bytes without opening a block on them. Less bytes are skipped only when the
+     * source ends.
+     *
+     * @param length the amount of bytes to skip
+     * @throws IOException when an error happens while reading from the source
+     */
+    public void skipFully(final long length) throws IOException {
+        long remaining = length;
+
+        // A single skip call could return early, for example at the end of the buffered data
+        while (remaining > 0) {
+            final long skipped = skip(remaining);
+
+            if (skipped > 0) {
+                remaining -= skipped;
+            } else if (read() != -1) {
+                remaining--;
+            } else {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.bottomlessarchive.warc.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe histogram of durations in nanoseconds. The values are counted in buckets that have power of two
+ * upper bounds, so recording a value is a few atomic additions and the memory usage is fixed. Because of this the
+ * percentiles are approximations, they are rounded up to the upper bound of their bucket.
+ */
+public class NanoHistogram {
+
+    /**
+     * The number of the buckets. The bucket of index i holds the values that are less than 2^i and not less than
+     * 2^(i - 1).
+     */
+    public static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative values are counted as zero
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+
+        buckets.incrementAndGet(Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(value)));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Return the number of the recorded durations.
+     *
+     * @return the number of the durations
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Return the sum of the recorded durations.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Return the longest recorded duration.
+     *
+     * @return the longest duration in nanoseconds, zero if nothing was recorded
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Return the average of the recorded durations.
+     *
+     * @return the average in nanoseconds, zero if nothing was recorded
+     */
+    public double getMeanNanos() {
+        final long currentCount = getCount();
+
+        return currentCount == 0 ? 0 : (double) getTotalNanos() / currentCount;
+    }
+
+    /**
+     * Return the number of the durations in a bucket.
+     *
+     * @param index the index of the bucket
+     * @return the number of the durations in the bucket
+     */
+    public long getBucketCount(final int index) {
+        return buckets.get(index);
+    }
+
+    /**
+     * Return the exclusive upper bound of a bucket.
+     *
+     * @param index the index of the bucket
+     * @return the upper bound in nanoseconds
+     */
+    public long getBucketUpperBound(final int index) {
+        return index == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << index;
+    }
+
+    /**
+     * Return the approximate value at the provided percentile. The result is the upper bound of the bucket that
+     * contains the percentile, but never more than the longest recorded duration.
+     *
+     * @param percentile the percentile, between 0 and 1
+     * @return the value at the percentile in nanoseconds, zero if nothing was recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long remaining = (long) Math.ceil(getCount() * percentile);
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            remaining -= buckets.get(i);
+
+            if (remaining <= 0 && buckets.get(i) > 0) {
+                return Math.min(getBucketUpperBound(i), getMaxNanos());
+            }
+        }
+
+        return getMaxNanos();
+    }
+}
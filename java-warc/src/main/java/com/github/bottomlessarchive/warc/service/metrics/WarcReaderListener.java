@@ -0,0 +1,77 @@
+package com.github.bottomlessarchive.warc.service.metrics;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestVerificationResult;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+
+/**
+ * Receives the events of a {@link WarcReader}. Every method does nothing by default, so an implementation needs to
+ * override only the events it is interested in. The reader doesn't measure anything when no listener is set.
+ * <p>
+ * The methods can be called from multiple threads, for example when the data source is read ahead or a file is
+ * processed in parallel, so the implementations must be thread safe. They are called on the hot path of the
+ * reading, so they should return quickly. To report the events to a metrics registry (like Micrometer) implement
+ * this interface with the meters of the registry, or use a {@link WarcReaderMetrics} and register its getters as
+ * gauges.
+ */
+public interface WarcReaderListener {
+
+    /**
+     * Called when a record was read. It is called for every record, including the ones that are skipped by the
+     * filters of the reader. Because the length of a record is known only when the next record is found, this is
+     * called after the next record is parsed.
+     *
+     * @param type               the type of the record
+     * @param compressedLength   the length of the record in the data source, equals to the uncompressed length when
+     *                           the data source is not compressed
+     * @param uncompressedLength the length of the record after decompression
+     */
+    default void recordRead(final WarcRecordType type, final long compressedLength, final long uncompressedLength) {
+    }
+
+    /**
+     * Called when a record was skipped because it was not accepted by the record type or header filters of the
+     * reader.
+     *
+     * @param type the type of the skipped record
+     */
+    default void recordSkipped(final WarcRecordType type) {
+    }
+
+    /**
+     * Called when a record is malformed and skipped by a lenient iterator.
+     *
+     * @param exception the error that happened while parsing the record
+     */
+    default void recordMalformed(final RuntimeException exception) {
+    }
+
+    /**
+     * Called when corrupt data was skipped while the reader recovered from a malformed record or a corrupt gzip
+     * member. The lost data is measured in the decompressed data for the malformed records, and in the compressed
+     * data source for the corrupt members.
+     *
+     * @param length     the number of the skipped bytes
+     * @param compressed true if the bytes were skipped in the compressed data source
+     */
+    default void corruptDataSkipped(final long length, final boolean compressed) {
+    }
+
+    /**
+     * Called when a stage of the reading is completed.
+     *
+     * @param stage the completed stage
+     * @param nanos the time spent in the stage, in nanoseconds
+     */
+    default void stageCompleted(final WarcReaderStage stage, final long nanos) {
+    }
+
+    /**
+     * Called when the digests of a record are verified. It is called only when the verification of the digests is
+     * turned on. When the digests are calculated on an executor, it is called on the threads of the executor.
+     *
+     * @param result the result of the verification
+     */
+    default void digestVerified(final DigestVerificationResult result) {
+    }
+}
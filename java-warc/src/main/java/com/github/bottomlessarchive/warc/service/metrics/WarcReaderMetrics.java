@@ -0,0 +1,192 @@
+package com.github.bottomlessarchive.warc.service.metrics;
+
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestVerificationResult;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link WarcReaderListener} that collects the events into counters and histograms. It is thread safe, so the
+ * same instance can be shared by multiple readers to get the aggregated metrics of all of them.
+ * <p>
+ * The getters return the current values, they can be registered as gauges or function counters in a metrics
+ * registry, for example:
+ * <pre>
+ * FunctionCounter.builder("warc.bytes.compressed", metrics, WarcReaderMetrics::getCompressedBytes)
+ *     .register(registry);
+ * </pre>
+ */
+public class WarcReaderMetrics implements WarcReaderListener {
+
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder skippedRecords = new LongAdder();
+    private final LongAdder malformedRecords = new LongAdder();
+    private final LongAdder invalidDigestRecords = new LongAdder();
+    private final LongAdder skippedCorruptBytes = new LongAdder();
+    private final LongAdder skippedCorruptCompressedBytes = new LongAdder();
+    private final LongAccumulator largestRecordSize = new LongAccumulator(Math::max, 0);
+    private final Map<WarcRecordType, LongAdder> recordsByType = new EnumMap<>(WarcRecordType.class);
+    private final Map<WarcReaderStage, NanoHistogram> stageHistograms = new EnumMap<>(WarcReaderStage.class);
+
+    /**
+     * Create a new metrics collector with every value set to zero.
+     */
+    public WarcReaderMetrics() {
+        for (WarcRecordType type : WarcRecordType.values()) {
+            recordsByType.put(type, new LongAdder());
+        }
+
+        for (WarcReaderStage stage : WarcReaderStage.values()) {
+            stageHistograms.put(stage, new NanoHistogram());
+        }
+    }
+
+    @Override
+    public void recordRead(final WarcRecordType type, final long compressedLength, final long uncompressedLength) {
+        recordsByType.get(type).increment();
+        compressedBytes.add(compressedLength);
+        uncompressedBytes.add(uncompressedLength);
+        largestRecordSize.accumulate(uncompressedLength);
+    }
+
+    @Override
+    public void recordSkipped(final WarcRecordType type) {
+        skippedRecords.increment();
+    }
+
+    @Override
+    public void recordMalformed(final RuntimeException exception) {
+        malformedRecords.increment();
+    }
+
+    @Override
+    public void corruptDataSkipped(final long length, final boolean compressed) {
+        if (compressed) {
+            skippedCorruptCompressedBytes.add(length);
+        } else {
+            skippedCorruptBytes.add(length);
+        }
+    }
+
+    @Override
+    public void digestVerified(final DigestVerificationResult result) {
+        if (!result.isValid()) {
+            invalidDigestRecords.increment();
+        }
+    }
+
+    @Override
+    public void stageCompleted(final WarcReaderStage stage, final long nanos) {
+        stageHistograms.get(stage).record(nanos);
+    }
+
+    /**
+     * Return the number of bytes read from the data source.
+     *
+     * @return the number of the compressed bytes
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Return the number of bytes read after decompression.
+     *
+     * @return the number of the uncompressed bytes
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * Return the number of the read records, including the skipped ones.
+     *
+     * @return the number of the records
+     */
+    public long getRecordCount() {
+        long result = 0;
+        for (LongAdder records : recordsByType.values()) {
+            result += records.sum();
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the number of the read records of the provided type, including the skipped ones.
+     *
+     * @param type the type of the records
+     * @return the number of the records
+     */
+    public long getRecordCount(final WarcRecordType type) {
+        return recordsByType.get(type).sum();
+    }
+
+    /**
+     * Return the number of the records that were skipped by the filters of the reader.
+     *
+     * @return the number of the skipped records
+     */
+    public long getSkippedRecordCount() {
+        return skippedRecords.sum();
+    }
+
+    /**
+     * Return the number of the malformed records that were skipped.
+     *
+     * @return the number of the malformed records
+     */
+    public long getMalformedRecordCount() {
+        return malformedRecords.sum();
+    }
+
+    /**
+     * Return the number of the records that have an invalid block or payload digest.
+     *
+     * @return the number of the records with invalid digests
+     */
+    public long getInvalidDigestRecordCount() {
+        return invalidDigestRecords.sum();
+    }
+
+    /**
+     * Return the number of the decompressed bytes that were skipped while recovering from malformed records.
+     *
+     * @return the number of the skipped bytes
+     */
+    public long getSkippedCorruptBytes() {
+        return skippedCorruptBytes.sum();
+    }
+
+    /**
+     * Return the number of the compressed bytes that were skipped while recovering from corrupt gzip members.
+     *
+     * @return the number of the skipped bytes
+     */
+    public long getSkippedCorruptCompressedBytes() {
+        return skippedCorruptCompressedBytes.sum();
+    }
+
+    /**
+     * Return the uncompressed size of the largest record.
+     *
+     * @return the size of the largest record in bytes
+     */
+    public long getLargestRecordSize() {
+        return largestRecordSize.get();
+    }
+
+    /**
+     * Return the histogram of the time spent in the provided stage.
+     *
+     * @param stage the stage of the reading
+     * @return the histogram of the stage
+     */
+    public NanoHistogram getStageHistogram(final WarcReaderStage stage) {
+        return stageHistograms.get(stage);
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.bottomlessarchive.warc.service.metrics;
+
+/**
+ * The stages of the reading that are timed by a {@link WarcReaderListener}.
+ */
+public enum WarcReaderStage {
+
+    /**
+     * The decompression of the compressed data. On streams that are not read ahead it happens while the other stages
+     * pull the data, so it is included in their time too.
+     */
+    INFLATION,
+
+    /**
+     * The parsing of the WARC headers of a record, including the reading of the headers from the data source.
+     */
+    HEADER_PARSING,
+
+    /**
+     * The parsing of the content block of a record, for example the HTTP message of a response.
+     */
+    CONTENT_BLOCK_PARSING,
+
+    /**
+     * The skipping of the unread part of a record's block before the next record is read.
+     */
+    PAYLOAD_SKIPPING
+}
@@ -0,0 +1,397 @@
+package com.github.bottomlessarchive.warc.service.payload;
+
+import com.github.bottomlessarchive.warc.service.WarcParsingException;
+import com.github.bottomlessarchive.warc.service.io.ByteBufferInputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A payload that is copied out of the data source of the reader, so it can be read repeatedly, from any thread and
+ * after the reader moved on to the next record. The small payloads are held in the buffers of a
+ * {@link PayloadBufferPool}, the big ones are spilled to a temporary file.
+ * <p>
+ * A payload should be closed when it is not needed anymore, so its buffer can be reused, or its file can be deleted.
+ * When streams of the payload are still open, the resources are released only after the last one is closed or read
+ * until its end. The streams keep the payload reachable, so a payload that is not closed is released only after it
+ * and its streams are garbage collected. A buffer returned by {@link #asByteBuffer()} can't keep the payload
+ * reachable, so once it was requested, the memory of the payload is never reused by the pool.
+ */
+@Slf4j
+public class BufferedPayload implements Closeable {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final int TRANSFER_BUFFER_SIZE = 65536;
+    private static final ThreadLocal<byte[]> TRANSFER_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[TRANSFER_BUFFER_SIZE]);
+
+    private final ByteBuffer memory;
+    private final Path file;
+    private final long length;
+    private final Release release;
+    private final Cleaner.Cleanable cleanable;
+
+    private boolean closed;
+    private int openStreams;
+
+    private BufferedPayload(final ByteBuffer memory, final Path file, final long length,
+            final PayloadBufferPool pool) {
+        this.memory = memory;
+        this.file = file;
+        this.length = length;
+        this.release = new Release(memory, file, pool);
+        this.cleanable = CLEANER.register(this, release);
+    }
+
+    /**
+     * Copy the rest of the provided stream into a new payload. The payload is held in a buffer of the pool when the
+     * expected size is not over the spill threshold and the memory limit of the pool is not reached, otherwise it
+     * is spilled to a temporary file.
+     *
+     * @param payload  the stream to copy, it is read until its end but it is not closed
+     * @param sizeHint the expected maximum size of the payload or -1 if it is unknown
+     * @param pool     the pool of the buffers
+     * @return the copied payload
+     * @throws IOException when an error happens while reading the stream or writing the temporary file
+     */
+    public static BufferedPayload copyOf(final InputStream payload, final long sizeHint, final PayloadBufferPool pool)
+            throws IOException {
+        final ByteBuffer buffer = sizeHint >= 0 && sizeHint <= pool.getSpillThreshold()
+                ? pool.acquire((int) sizeHint) : null;
+
+        if (buffer == null) {
+            return spill(null, -1, payload, pool);
+        }
+
+        try {
+            read(payload, buffer);
+
+            // The payload is bigger than expected when it doesn't end at the end of the buffer
+            final int next = buffer.hasRemaining() ? -1 : payload.read();
+            buffer.flip();
+
+            if (next == -1) {
+                return new BufferedPayload(buffer, null, buffer.limit(), pool);
+            }
+
+            final BufferedPayload result = spill(buffer, next, payload, pool);
+            pool.release(buffer);
+
+            return result;
+        } catch (IOException | RuntimeException e) {
+            pool.release(buffer);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Return the length of the payload.
+     *
+     * @return the length of the payload in bytes
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Check if the payload was spilled to a temporary file.
+     *
+     * @return true if the payload is in a file, false if it is in memory
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Open a new stream that reads the payload from its start. Every call returns an independent stream. The
+     * resources of the payload are not released while the stream is open, even if the payload is closed.
+     *
+     * @return the stream of the payload
+     * @throws WarcParsingException when unable to open the file of a spilled payload
+     */
+    public synchronized InputStream openStream() {
+        ensureOpen();
+
+        final InputStream stream;
+        if (memory != null) {
+            stream = new ByteBufferInputStream(memory.asReadOnlyBuffer());
+        } else {
+            try {
+                stream = new BufferedInputStream(Files.newInputStream(file));
+            } catch (IOException e) {
+                throw new WarcParsingException("Unable to open the spilled payload: " + file + "!", e);
+            }
+        }
+
+        openStreams++;
+
+        return new PayloadInputStream(stream);
+    }
+
+    /**
+     * Return a new read-only buffer on the payload. The spilled payloads are mapped into memory, so they are not
+     * copied to the heap either. The memory of the payload is not given back to the pool after the buffer was
+     * requested, because the pool can't know when the buffer is not used anymore.
+     *
+     * @return the buffer of the payload
+     * @throws IllegalStateException when the payload is too big to fit into a single buffer
+     * @throws WarcParsingException  when unable to map the file of a spilled payload
+     */
+    public synchronized ByteBuffer asByteBuffer() {
+        ensureOpen();
+
+        if (memory != null) {
+            release.shared = true;
+
+            return memory.asReadOnlyBuffer();
+        }
+
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The payload is too big to fit into a single buffer!");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+            throw new WarcParsingException("Unable to map the spilled payload: " + file + "!", e);
+        }
+    }
+
+    /**
+     * Release the buffer of the payload or delete its temporary file. When streams of the payload are still open,
+     * the release is delayed until the last one is closed or read until its end.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+
+        if (openStreams == 0) {
+            cleanable.clean();
+        }
+    }
+
+    private synchronized void streamFinished() {
+        openStreams--;
+
+        if (closed && openStreams == 0) {
+            cleanable.clean();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("The payload is already closed!");
+        }
+    }
+
+    private static void read(final InputStream payload, final ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            while (buffer.hasRemaining()) {
+                final int read = payload.read(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        buffer.remaining());
+                if (read == -1) {
+                    return;
+                }
+
+                buffer.position(buffer.position() + read);
+            }
+
+            return;
+        }
+
+        final byte[] transfer = TRANSFER_BUFFER.get();
+        while (buffer.hasRemaining()) {
+            final int read = payload.read(transfer, 0, Math.min(transfer.length, buffer.remaining()));
+            if (read == -1) {
+                return;
+            }
+
+            buffer.put(transfer, 0, read);
+        }
+    }
+
+    private static BufferedPayload spill(final ByteBuffer prefix, final int pendingByte, final InputStream payload,
+            final PayloadBufferPool pool) throws IOException {
+        final Path file = pool.getSpillDirectory() != null
+                ? Files.createTempFile(pool.getSpillDirectory(), "java-warc-payload-", ".tmp")
+                : Files.createTempFile("java-warc-payload-", ".tmp");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (prefix != null) {
+                write(channel, prefix.duplicate());
+            }
+
+            final byte[] transfer = TRANSFER_BUFFER.get();
+            int transferLength = 0;
+            if (pendingByte >= 0) {
+                transfer[transferLength++] = (byte) pendingByte;
+            }
+
+            int read;
+            while ((read = payload.read(transfer, transferLength, transfer.length - transferLength)) != -1) {
+                transferLength += read;
+
+                if (transferLength == transfer.length) {
+                    write(channel, ByteBuffer.wrap(transfer, 0, transferLength));
+                    transferLength = 0;
+                }
+            }
+            write(channel, ByteBuffer.wrap(transfer, 0, transferLength));
+
+            return new BufferedPayload(null, file, channel.position(), null);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+
+            throw e;
+        }
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    /**
+     * A stream of the payload. It refers to the payload, so the payload can't be garbage collected and its buffer
+     * can't be reused by the pool while the stream is reachable. Once the stream is closed or read until its end,
+     * the buffer is not touched anymore.
+     */
+    private class PayloadInputStream extends InputStream {
+
+        private final InputStream delegate;
+
+        private boolean finished;
+        private boolean streamClosed;
+
+        private PayloadInputStream(final InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ensureStreamOpen();
+
+            if (finished) {
+                return -1;
+            }
+
+            final int result = delegate.read();
+            if (result == -1) {
+                finish();
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] target, final int offset, final int length) throws IOException {
+            ensureStreamOpen();
+
+            if (finished) {
+                return length == 0 ? 0 : -1;
+            }
+
+            final int read = delegate.read(target, offset, length);
+            if (read == -1) {
+                finish();
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(final long length) throws IOException {
+            ensureStreamOpen();
+
+            return finished ? 0 : delegate.skip(length);
+        }
+
+        @Override
+        public int available() throws IOException {
+            ensureStreamOpen();
+
+            return finished ? 0 : delegate.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (streamClosed) {
+                return;
+            }
+
+            streamClosed = true;
+            finish();
+        }
+
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+
+            finished = true;
+
+            try {
+                delegate.close();
+            } finally {
+                streamFinished();
+            }
+        }
+
+        private void ensureStreamOpen() throws IOException {
+            if (streamClosed) {
+                throw new IOException("The stream of the payload is closed!");
+            }
+        }
+    }
+
+    /**
+     * Releases the resources of a payload, when it is closed or garbage collected. It must not refer to the payload
+     * itself, otherwise the payload would never become unreachable.
+     */
+    private static class Release implements Runnable {
+
+        private final ByteBuffer memory;
+        private final Path file;
+        private final PayloadBufferPool pool;
+
+        // Set when a buffer on the memory was handed out, that may be used after the payload is released
+        private volatile boolean shared;
+
+        private Release(final ByteBuffer memory, final Path file, final PayloadBufferPool pool) {
+            this.memory = memory;
+            this.file = file;
+            this.pool = pool;
+        }
+
+        @Override
+        public void run() {
+            if (memory != null) {
+                if (shared) {
+                    pool.discard(memory);
+                } else {
+                    pool.release(memory);
+                }
+            }
+
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.debug("Unable to delete the spilled payload: {}!", file, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.bottomlessarchive.warc.service.payload;
+
+import lombok.Builder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of the buffers that hold the {@link BufferedPayload}s in memory. The buffers are allocated in power of two
+ * size classes and they are reused after the payloads are closed. The total size of the allocated buffers, including
+ * the ones that are waiting in the pool, never exceeds the memory limit. When a payload doesn't fit into the limit,
+ * or it is bigger than the spill threshold, it is spilled to a temporary file instead, so even multi-gigabyte records
+ * can't exhaust the memory.
+ * <p>
+ * The pool is thread safe, it can be shared by many readers.
+ */
+public class PayloadBufferPool {
+
+    /**
+     * The default total size of the buffers of the pool, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 268435456;
+
+    /**
+     * The default size of the biggest payload that is held in memory, in bytes.
+     */
+    public static final int DEFAULT_SPILL_THRESHOLD = 8388608;
+
+    private static final int MINIMUM_BUFFER_SIZE_SHIFT = 12;
+    private static final int MAXIMUM_BUFFER_SIZE = 1 << 30;
+
+    private final long memoryLimit;
+    private final int spillThreshold;
+    private final boolean direct;
+    private final Path spillDirectory;
+
+    private final List<Queue<ByteBuffer>> freeBuffers;
+    private final AtomicLong allocatedMemory = new AtomicLong();
+
+    /**
+     * Create a new pool.
+     *
+     * @param memoryLimit    the total size of the buffers, {@link #DEFAULT_MEMORY_LIMIT} if it is not positive
+     * @param spillThreshold the size of the biggest payload that is held in memory, {@link #DEFAULT_SPILL_THRESHOLD}
+     *                       if it is not positive
+     * @param direct         true if the buffers should be allocated outside of the heap
+     * @param spillDirectory the directory of the spilled payloads, the default temporary directory if it is null
+     */
+    @Builder
+    public PayloadBufferPool(final long memoryLimit, final int spillThreshold, final boolean direct,
+            final Path spillDirectory) {
+        this.memoryLimit = memoryLimit > 0 ? memoryLimit : DEFAULT_MEMORY_LIMIT;
+        this.spillThreshold = (int) Math.min(Math.min(spillThreshold > 0 ? spillThreshold : DEFAULT_SPILL_THRESHOLD,
+                MAXIMUM_BUFFER_SIZE), this.memoryLimit);
+        this.direct = direct;
+        this.spillDirectory = spillDirectory;
+
+        final int sizeClassCount = sizeClassOf(this.spillThreshold) + 1;
+        this.freeBuffers = new ArrayList<>(sizeClassCount);
+        for (int i = 0; i < sizeClassCount; i++) {
+            freeBuffers.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * Return the size of the biggest payload that is held in memory.
+     *
+     * @return the spill threshold in bytes
+     */
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * Return the directory of the spilled payloads.
+     *
+     * @return the directory or null if the default temporary directory is used
+     */
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Return the total size of the buffers that are allocated by the pool, including the ones that are not in use.
+     *
+     * @return the allocated memory in bytes
+     */
+    public long getAllocatedMemory() {
+        return allocatedMemory.get();
+    }
+
+    /**
+     * Acquire a buffer that can hold at least the provided amount of bytes.
+     *
+     * @param size the required capacity
+     * @return the cleared buffer or null if the size is over the spill threshold or the memory limit is reached
+     */
+    ByteBuffer acquire(final int size) {
+        if (size > spillThreshold) {
+            return null;
+        }
+
+        final int sizeClass = sizeClassOf(size);
+        final ByteBuffer pooled = freeBuffers.get(sizeClass).poll();
+        if (pooled != null) {
+            return pooled;
+        }
+
+        final int capacity = 1 << (sizeClass + MINIMUM_BUFFER_SIZE_SHIFT);
+        if (!reserve(capacity)) {
+            // The idle buffers of the other size classes are given up to make room for this one
+            trimFreeBuffers(capacity);
+
+            if (!reserve(capacity)) {
+                return null;
+            }
+        }
+
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Give back a buffer to the pool.
+     *
+     * @param buffer the buffer that was acquired from this pool
+     */
+    void release(final ByteBuffer buffer) {
+        buffer.clear();
+
+        freeBuffers.get(sizeClassOf(buffer.capacity())).offer(buffer);
+    }
+
+    /**
+     * Give up a buffer that was acquired from this pool, without reusing it. The buffer may still be in use outside
+     * of the pool, it is simply left to the garbage collector.
+     *
+     * @param buffer the buffer that was acquired from this pool
+     */
+    void discard(final ByteBuffer buffer) {
+        allocatedMemory.addAndGet(-buffer.capacity());
+    }
+
+    private boolean reserve(final int capacity) {
+        while (true) {
+            final long allocated = allocatedMemory.get();
+            if (allocated + capacity > memoryLimit) {
+                return false;
+            }
+
+            if (allocatedMemory.compareAndSet(allocated, allocated + capacity)) {
+                return true;
+            }
+        }
+    }
+
+    private void trimFreeBuffers(final int requiredCapacity) {
+        for (int i = freeBuffers.size() - 1; i >= 0; i--) {
+            ByteBuffer buffer;
+            while (memoryLimit - allocatedMemory.get() < requiredCapacity
+                    && (buffer = freeBuffers.get(i).poll()) != null) {
+                allocatedMemory.addAndGet(-buffer.capacity());
+            }
+        }
+    }
+
+    private static int sizeClassOf(final int size) {
+        if (size <= 1 << MINIMUM_BUFFER_SIZE_SHIFT) {
+            return 0;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MINIMUM_BUFFER_SIZE_SHIFT;
+    }
+}
@@ -0,0 +1,284 @@
+package com.github.bottomlessarchive.warc.service.reactive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Downloads the body of an HTTP request with the non-blocking {@link HttpClient} and makes it readable as an
+ * {@link InputStream}. The downloaded data is buffered up to a limit, then the download is paused until the data is
+ * read, so the memory usage of a download is bounded.
+ * <p>
+ * The stream tells when enough data is buffered to read it without waiting for the network, so a reader can be
+ * scheduled only when its source is readable, instead of blocking a thread while the data arrives. Reading more than
+ * the buffered data still blocks, until the rest of the data is downloaded.
+ */
+public class HttpBodyInputStream extends InputStream implements Flow.Subscriber<List<ByteBuffer>> {
+
+    /**
+     * The default amount of data, in bytes, that is buffered before the download is paused.
+     */
+    public static final long DEFAULT_BUFFER_LIMIT = 1048576;
+
+    /**
+     * The default amount of buffered data, in bytes, that makes the stream readable.
+     */
+    public static final long DEFAULT_READABLE_THRESHOLD = 262144;
+
+    private final HttpClient httpClient;
+    private final HttpRequest httpRequest;
+    private final long bufferLimit;
+    private final long readableThreshold;
+
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+    private long bufferedBytes;
+    private boolean paused;
+    private boolean completed;
+    private Throwable failure;
+    private boolean closed;
+
+    private Flow.Subscription subscription;
+    private Runnable readableListener;
+
+    /**
+     * Create a new stream with the default buffer limit and readable threshold.
+     *
+     * @param httpClient  the client that downloads the body
+     * @param httpRequest the request of the body
+     */
+    public HttpBodyInputStream(final HttpClient httpClient, final HttpRequest httpRequest) {
+        this(httpClient, httpRequest, DEFAULT_BUFFER_LIMIT, DEFAULT_READABLE_THRESHOLD);
+    }
+
+    /**
+     * Create a new stream.
+     *
+     * @param httpClient        the client that downloads the body
+     * @param httpRequest       the request of the body
+     * @param bufferLimit       the amount of data, in bytes, that is buffered before the download is paused
+     * @param readableThreshold the amount of buffered data, in bytes, that makes the stream readable
+     */
+    public HttpBodyInputStream(final HttpClient httpClient, final HttpRequest httpRequest, final long bufferLimit,
+            final long readableThreshold) {
+        this.httpClient = httpClient;
+        this.httpRequest = httpRequest;
+        this.bufferLimit = bufferLimit;
+        this.readableThreshold = Math.min(readableThreshold, bufferLimit);
+    }
+
+    /**
+     * Start the download.
+     *
+     * @param readableListener called, on an arbitrary thread, every time the stream becomes readable or more data
+     *                         arrives to a readable stream
+     */
+    public void start(final Runnable readableListener) {
+        synchronized (this) {
+            this.readableListener = readableListener;
+        }
+
+        httpClient.sendAsync(httpRequest, responseInfo -> {
+            if (responseInfo.statusCode() >= 400) {
+                fail(new IOException("Unable to download " + httpRequest.uri() + ", the server responded "
+                        + "with HTTP status " + responseInfo.statusCode() + "!"));
+
+                return HttpResponse.BodySubscribers.discarding();
+            }
+
+            return HttpResponse.BodySubscribers.fromSubscriber(this);
+        }).whenComplete((response, error) -> {
+            if (error != null) {
+                fail(error);
+            }
+        });
+    }
+
+    /**
+     * Return true if enough data is buffered to read it without waiting for the network, or if the download ended.
+     *
+     * @return true if the stream is readable
+     */
+    public synchronized boolean isReadable() {
+        return completed || bufferedBytes >= readableThreshold;
+    }
+
+    /**
+     * Return the error that ended the download.
+     *
+     * @return the error of the download, null if it didn't fail
+     */
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        synchronized (this) {
+            this.subscription = subscription;
+
+            if (closed) {
+                subscription.cancel();
+
+                return;
+            }
+        }
+
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(final List<ByteBuffer> items) {
+        final boolean requestMore;
+        synchronized (this) {
+            for (ByteBuffer item : items) {
+                if (item.hasRemaining()) {
+                    buffers.addLast(item);
+                    bufferedBytes += item.remaining();
+                }
+            }
+
+            requestMore = bufferedBytes < bufferLimit;
+            paused = !requestMore;
+
+            notifyAll();
+        }
+
+        if (requestMore) {
+            subscription.request(1);
+        }
+
+        notifyReadable();
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            completed = true;
+
+            notifyAll();
+        }
+
+        notifyReadable();
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] result = new byte[1];
+
+        return read(result, 0, 1) == -1 ? -1 : result[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        final int read;
+        final boolean resume;
+        synchronized (this) {
+            // Waiting happens only when a record is bigger than the buffered data
+            while (buffers.isEmpty() && !completed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new InterruptedIOException("Interrupted while waiting for the body of "
+                            + httpRequest.uri() + "!");
+                }
+            }
+
+            if (buffers.isEmpty()) {
+                if (failure != null) {
+                    throw new IOException("Unable to download " + httpRequest.uri() + "!", failure);
+                }
+
+                return -1;
+            }
+
+            final ByteBuffer buffer = buffers.peekFirst();
+            read = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, read);
+            bufferedBytes -= read;
+
+            if (!buffer.hasRemaining()) {
+                buffers.removeFirst();
+            }
+
+            // The download is resumed when half of the buffer limit is read, so it isn't resumed after every read
+            resume = paused && bufferedBytes <= bufferLimit / 2;
+            if (resume) {
+                paused = false;
+            }
+        }
+
+        if (resume) {
+            subscription.request(1);
+        }
+
+        return read;
+    }
+
+    @Override
+    public synchronized int available() {
+        return (int) Math.min(bufferedBytes, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        final Flow.Subscription currentSubscription;
+        synchronized (this) {
+            closed = true;
+            completed = true;
+            buffers.clear();
+            bufferedBytes = 0;
+            currentSubscription = subscription;
+
+            notifyAll();
+        }
+
+        if (currentSubscription != null) {
+            currentSubscription.cancel();
+        }
+    }
+
+    private void fail(final Throwable throwable) {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+
+            failure = throwable;
+            completed = true;
+
+            notifyAll();
+        }
+
+        notifyReadable();
+    }
+
+    private void notifyReadable() {
+        final Runnable listener;
+        synchronized (this) {
+            listener = isReadable() ? readableListener : null;
+        }
+
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
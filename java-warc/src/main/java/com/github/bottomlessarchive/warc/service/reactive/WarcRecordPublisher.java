@@ -0,0 +1,229 @@
+package com.github.bottomlessarchive.warc.service.reactive;
+
+import com.github.bottomlessarchive.warc.service.WarcNetworkException;
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Flow.Publisher} of the records of a WARC file. The records are read only when the subscriber requested
+ * them. The reading runs in short tasks on the provided {@link Executor}: a task ends when there is no more demand,
+ * when the source has no buffered data to read, or after a batch of records, so many publishers can share a few
+ * threads. No thread is held while a publisher waits for demand, or while it waits for the readable threshold of
+ * its {@link HttpBodyInputStream} to be reached.
+ * <p>
+ * The reader can't pause in the middle of a record. When a record is bigger than the data that is buffered for it,
+ * the task blocks a thread of the executor until the rest of the record is downloaded. Records that are larger than
+ * the readable threshold (256 KB by default) are common in web archives, so the executor should have more threads
+ * than the number of the big records that are expected to be read at the same time, or the readable threshold
+ * should be raised, otherwise a few slow downloads of big records can stall every publisher of the executor.
+ * <p>
+ * The records are passed to {@link Flow.Subscriber#onNext(Object)} one by one. Their content blocks must be
+ * requested in onNext, because the reader moves to the next record after it returns. A publisher can have only one
+ * subscriber, because the data source can be read only once. A malformed record ends the publishing with an error.
+ *
+ * @param <T> the type of the content blocks
+ */
+@Slf4j
+public class WarcRecordPublisher<T extends WarcContentBlock> implements Flow.Publisher<WarcRecord<T>> {
+
+    /**
+     * The maximum number of the records published by one task. After a batch the task is rescheduled, so the other
+     * publishers that share the same executor get their turn.
+     */
+    public static final int BATCH_SIZE = 64;
+
+    private final Supplier<WarcReader> warcReaderSupplier;
+    private final Executor executor;
+    private final HttpBodyInputStream asyncSource;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Create a new publisher on a blocking data source, like a local file.
+     *
+     * @param warcReaderSupplier opens the reader of the data source when the first record is requested
+     * @param executor           the executor that runs the reading
+     */
+    public WarcRecordPublisher(final Supplier<WarcReader> warcReaderSupplier, final Executor executor) {
+        this(warcReaderSupplier, executor, null);
+    }
+
+    /**
+     * Create a new publisher on a data source that is downloaded asynchronously. The records are read only when the
+     * source has enough buffered data.
+     *
+     * @param warcReaderSupplier opens the reader of the data source when the first record is requested
+     * @param executor           the executor that runs the reading
+     * @param asyncSource        the asynchronously downloaded source that is read by the reader, it is started when
+     *                           the subscriber subscribes
+     */
+    public WarcRecordPublisher(final Supplier<WarcReader> warcReaderSupplier, final Executor executor,
+            final HttpBodyInputStream asyncSource) {
+        this.warcReaderSupplier = warcReaderSupplier;
+        this.executor = executor;
+        this.asyncSource = asyncSource;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super WarcRecord<T>> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A WARC record publisher can have only one subscriber!"));
+
+            return;
+        }
+
+        final RecordSubscription subscription = new RecordSubscription(subscriber);
+
+        subscriber.onSubscribe(subscription);
+
+        if (asyncSource != null) {
+            asyncSource.start(subscription::signal);
+        }
+    }
+
+    private class RecordSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super WarcRecord<T>> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        // Accessed only by the drain tasks, that never run concurrently
+        private WarcReader warcReader;
+        private boolean done;
+
+        private RecordSubscription(final Flow.Subscriber<? super WarcRecord<T>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("The number of the requested records must be "
+                        + "positive, but it was " + n + "!");
+            } else {
+                requested.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE
+                        : current + added);
+            }
+
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+
+            signal();
+        }
+
+        private void signal() {
+            if (workInProgress.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void drain() {
+            int missed = 1;
+            int emitted = 0;
+
+            do {
+                while (!done) {
+                    if (cancelled) {
+                        finish();
+                        break;
+                    }
+
+                    if (invalidRequest != null) {
+                        finish();
+                        subscriber.onError(invalidRequest);
+                        break;
+                    }
+
+                    if (requested.get() == 0 || (asyncSource != null && !asyncSource.isReadable())) {
+                        break;
+                    }
+
+                    if (emitted == BATCH_SIZE) {
+                        // Give the other publishers of the executor a chance, the pending signals are kept
+                        executor.execute(this::drain);
+
+                        return;
+                    }
+
+                    final Optional<WarcRecord<WarcContentBlock>> warcRecord;
+                    try {
+                        if (warcReader == null) {
+                            warcReader = warcReaderSupplier.get();
+                        }
+
+                        warcRecord = warcReader.readRecord();
+                    } catch (RuntimeException e) {
+                        finish();
+                        subscriber.onError(asyncSource != null && asyncSource.getFailure() != null
+                                ? new WarcNetworkException("Unable to download the WARC file!", asyncSource.getFailure())
+                                : e);
+                        break;
+                    }
+
+                    if (warcRecord.isEmpty()) {
+                        finish();
+                        subscriber.onComplete();
+                        break;
+                    }
+
+                    if (requested.get() != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                    emitted++;
+
+                    try {
+                        subscriber.onNext((WarcRecord<T>) warcRecord.get());
+                    } catch (RuntimeException e) {
+                        // A subscriber that throws is considered to be cancelled
+                        log.debug("The subscriber failed to process a WARC record! Cancelling the subscription.", e);
+
+                        finish();
+                    }
+                }
+
+                missed = workInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void finish() {
+            done = true;
+
+            try {
+                if (warcReader != null) {
+                    warcReader.close();
+                } else if (asyncSource != null) {
+                    asyncSource.close();
+                }
+            } catch (IOException e) {
+                log.debug("Unable to close the WARC reader!", e);
+            }
+        }
+    }
+}
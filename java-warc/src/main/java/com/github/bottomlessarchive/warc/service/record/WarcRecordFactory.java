@@ -1,16 +1,27 @@
 package com.github.bottomlessarchive.warc.service.record;
 
+import com.github.bottomlessarchive.warc.service.WarcFormatException;
 import com.github.bottomlessarchive.warc.service.content.domain.DefaultContentBlock;
 import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
 import com.github.bottomlessarchive.warc.service.content.request.RequestContentBlockFactory;
+import com.github.bottomlessarchive.warc.service.content.request.domain.RequestContentBlock;
 import com.github.bottomlessarchive.warc.service.content.response.ResponseContentBlockFactory;
+import com.github.bottomlessarchive.warc.service.content.response.domain.ResponseContentBlock;
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestVerificationResult;
 import com.github.bottomlessarchive.warc.service.header.HeaderParser;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaderTokenizer;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaders;
+import com.github.bottomlessarchive.warc.service.payload.BufferedPayload;
+import com.github.bottomlessarchive.warc.service.payload.PayloadBufferPool;
 import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
 import com.github.bottomlessarchive.warc.service.record.domain.WarcRecordType;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.input.BoundedInputStream;
@@ -20,6 +31,8 @@ import org.apache.http.message.HeaderGroup;
 @Slf4j
 public class WarcRecordFactory {
 
+    private static final WarcRecordType[] WARC_RECORD_TYPES = WarcRecordType.values();
+
     private final ResponseContentBlockFactory responseContentBlockFactory =
         new ResponseContentBlockFactory(new HeaderParser());
 
@@ -36,28 +49,157 @@ public class WarcRecordFactory {
     public WarcRecord<WarcContentBlock> createWarcRecord(final HeaderGroup warcHeaders,
         final BoundedInputStream contentBlockStream) {
         WarcRecordType type = null;
-        WarcContentBlock warcContentBlock = null;
         if (warcHeaders != null) {
             type = WarcRecordType.valueOf(
                 warcHeaders.getFirstHeader("WARC-Type").getValue().toUpperCase());
         }
+
+        return buildWarcRecord(type, parseHeaders(warcHeaders), contentBlockStream, -1);
+    }
+
+    /**
+     * Creates a WARC record from the headers of a tokenized WARC header block. The headers are taken from the
+     * tokenizer before the content block is parsed, so the tokenizer's buffer can be safely reused by the content
+     * block. The headers are not decoded until they are requested from the record.
+     *
+     * @param warcHeaders        the tokenized WARC Headers of the WARC record
+     * @param contentBlockStream Content block stream
+     * @param compressedOffset   the offset of the record in the source
+     * @return the created warc record
+     */
+    public WarcRecord<WarcContentBlock> createWarcRecord(final WarcHeaderTokenizer warcHeaders,
+        final InputStream contentBlockStream, final long compressedOffset) {
+        return buildWarcRecord(parseType(warcHeaders), warcHeaders.headers(), contentBlockStream, compressedOffset);
+    }
+
+    /**
+     * Creates a WARC record from already parsed headers. The content block is created by the provided supplier
+     * when it is first requested from the record.
+     *
+     * @param type                 the type of the WARC record
+     * @param warcHeaders          WARC Headers of the WARC record
+     * @param contentBlockSupplier the supplier that creates the content block
+     * @param compressedOffset     the offset of the record in the source
+     * @return the created warc record
+     */
+    public WarcRecord<WarcContentBlock> createWarcRecord(final WarcRecordType type, final WarcHeaders warcHeaders,
+        final Supplier<WarcContentBlock> contentBlockSupplier, final long compressedOffset) {
+        return createWarcRecord(type, warcHeaders, contentBlockSupplier, compressedOffset, null);
+    }
+
+    /**
+     * Creates a WARC record from already parsed headers, with the result of the verification of its digests. The
+     * content block is created by the provided supplier when it is first requested from the record.
+     *
+     * @param type                 the type of the WARC record
+     * @param warcHeaders          WARC Headers of the WARC record
+     * @param contentBlockSupplier the supplier that creates the content block
+     * @param compressedOffset     the offset of the record in the source
+     * @param digestVerification   the result of the verification of the digests, can be null
+     * @return the created warc record
+     */
+    public WarcRecord<WarcContentBlock> createWarcRecord(final WarcRecordType type, final WarcHeaders warcHeaders,
+        final Supplier<WarcContentBlock> contentBlockSupplier, final long compressedOffset,
+        final CompletableFuture<DigestVerificationResult> digestVerification) {
+        return WarcRecord.builder()
+            .type(type)
+            .headers(warcHeaders)
+            .contentBlockSupplier(contentBlockSupplier)
+            .compressedOffset(compressedOffset)
+            .digestVerification(digestVerification)
+            .build();
+    }
+
+    /**
+     * Creates the content block of a WARC record. The HTTP messages of the response and request records are parsed,
+     * the other records get a {@link DefaultContentBlock}.
+     *
+     * @param type               the type of the WARC record
+     * @param warcHeaders        WARC Headers of the WARC record
+     * @param contentBlockStream Content block stream
+     * @return the created content block or null if the HTTP message of the block is not parsable
+     */
+    public WarcContentBlock createContentBlock(final WarcRecordType type, final Map<String, String> warcHeaders,
+        final InputStream contentBlockStream) {
         try {
             if (type == WarcRecordType.RESPONSE) {
-                warcContentBlock = responseContentBlockFactory.newResponseContentBlock(contentBlockStream);
+                return responseContentBlockFactory.newResponseContentBlock(contentBlockStream);
             } else if (type == WarcRecordType.REQUEST) {
-                warcContentBlock = requestContentBlockFactory.createWarcRecord(contentBlockStream);
+                return requestContentBlockFactory.createWarcRecord(contentBlockStream);
             } else {
-                warcContentBlock = new DefaultContentBlock(contentBlockStream);
+                return new DefaultContentBlock(contentBlockStream);
             }
         } catch (IOException e) {
             log.debug("WARNING: cannot parse content block of WARC record " +
-                warcHeaders.getFirstHeader("WARC-Record-ID").getValue());
+                warcHeaders.get("WARC-Record-ID"));
+
+            return null;
+        }
+    }
+
+    /**
+     * Copy the payload of a content block into a {@link BufferedPayload}, so it can be read repeatedly, and after the
+     * data source of the content block is read further. The rest of the payload stream is read by this method.
+     *
+     * @param contentBlock      the content block to buffer, can be null
+     * @param sizeHint          the expected maximum size of the payload, for example the length of the block
+     * @param payloadBufferPool the pool of the buffers
+     * @return the content block with the buffered payload or null if the provided content block is null
+     * @throws IOException when an error happens while reading the payload or spilling it to the disk
+     */
+    public WarcContentBlock bufferPayload(final WarcContentBlock contentBlock, final long sizeHint,
+        final PayloadBufferPool payloadBufferPool) throws IOException {
+        if (contentBlock == null) {
+            return null;
+        }
+
+        final BufferedPayload bufferedPayload = BufferedPayload.copyOf(contentBlock.getPayload(), sizeHint,
+            payloadBufferPool);
+
+        if (contentBlock instanceof ResponseContentBlock) {
+            return ((ResponseContentBlock) contentBlock).toBuilder()
+                .payload(null)
+                .bufferedPayload(bufferedPayload)
+                .build();
+        } else if (contentBlock instanceof RequestContentBlock) {
+            return ((RequestContentBlock) contentBlock).toBuilder()
+                .payload(null)
+                .bufferedPayload(bufferedPayload)
+                .build();
+        } else {
+            return new DefaultContentBlock(bufferedPayload);
         }
+    }
+
+    /**
+     * Parse the type of the record from a tokenized WARC header block, without decoding the WARC-Type header.
+     *
+     * @param warcHeaders the tokenized WARC Headers of the WARC record
+     * @return the type of the record
+     * @throws WarcFormatException when the WARC-Type header is missing
+     */
+    public WarcRecordType parseType(final WarcHeaderTokenizer warcHeaders) {
+        final int typeIndex = warcHeaders.indexOf("WARC-Type");
+        if (typeIndex < 0) {
+            throw new WarcFormatException("The WARC-Type header is missing!");
+        }
+
+        for (WarcRecordType type : WARC_RECORD_TYPES) {
+            if (warcHeaders.valueEqualsIgnoreCase(typeIndex, type.name())) {
+                return type;
+            }
+        }
+
+        return WarcRecordType.valueOf(warcHeaders.value(typeIndex).toUpperCase());
+    }
 
+    private WarcRecord<WarcContentBlock> buildWarcRecord(final WarcRecordType type,
+        final Map<String, String> warcHeaders, final InputStream contentBlockStream, final long compressedOffset) {
         return WarcRecord.builder()
             .type(type)
-            .headers(parseHeaders(warcHeaders))
-            .warcContentBlock(warcContentBlock)
+            .headers(warcHeaders)
+            .warcContentBlock(createContentBlock(type, warcHeaders, contentBlockStream))
+            .compressedOffset(compressedOffset)
             .build();
     }
 
@@ -1,10 +1,13 @@
 package com.github.bottomlessarchive.warc.service.record.domain;
 
 import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestVerificationResult;
 
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import lombok.Builder;
 
@@ -20,15 +23,37 @@ public class WarcRecord<T extends WarcContentBlock> {
 
     private final WarcRecordType type;
     private final Map<String, String> headers;
-    private final T warcContentBlock;
+    private T warcContentBlock;
+    private Supplier<T> contentBlockSupplier;
+
+    @Builder.Default
+    private final long compressedOffset = -1;
+
+    @Builder.Default
+    private long compressedLength = -1;
+
+    private final CompletableFuture<DigestVerificationResult> digestVerification;
 
     /**
      * Returns the WARC record's {@link WarcContentBlock}. The returned content block may refer to different classes
      * based on the type of the WARC record.
+     * <p>
+     * The records read by the {@link com.github.bottomlessarchive.warc.service.WarcReader} create their content
+     * blocks (and parse their HTTP messages) only when this method is first called. Because of this, the content
+     * block must be requested before the reader moves to the next record, otherwise an
+     * {@link IllegalStateException} is thrown. Streams that buffer the records, for example with {@code sorted()} or
+     * {@code collect(...)}, move the reader before the records are processed. The readers that have a payload buffer
+     * pool create the content blocks while the records are read, so those records don't have this limitation.
      *
      * @return the content block of a WARC record
+     * @throws IllegalStateException when the content block is requested after the reader moved to the next record
      */
     public T getContentBlock() {
+        if (contentBlockSupplier != null) {
+            warcContentBlock = contentBlockSupplier.get();
+            contentBlockSupplier = null;
+        }
+
         return warcContentBlock;
     }
 
@@ -40,7 +65,7 @@ public class WarcRecord<T extends WarcContentBlock> {
      */
     @Deprecated(since = "1.1.0", forRemoval = true)
     public T getWarcContentBlock() {
-        return warcContentBlock;
+        return getContentBlock();
     }
 
     /**
@@ -66,10 +91,66 @@ public class WarcRecord<T extends WarcContentBlock> {
         return Optional.ofNullable(headers.get("WARC-Record-ID"));
     }
 
+    /**
+     * Returns the offset of the record in the source of the reader. For compressed sources this is the offset of
+     * the gzip member that contains the record. For uncompressed sources this is the offset of the record's first
+     * byte in the source.
+     *
+     * @return the offset of the record or -1 if the offset is unknown
+     */
+    public long getCompressedOffset() {
+        return compressedOffset;
+    }
+
+    /**
+     * Returns the length of the record in the source of the reader, measured from {@link #getCompressedOffset()}
+     * to the offset of the next record. The length is only known after the reader moved past the record.
+     *
+     * @return the length of the record or -1 if the length is not yet known
+     */
+    public long getCompressedLength() {
+        return compressedLength;
+    }
+
+    /**
+     * Sets the length of the record in the source. Called by the reader when it reached the end of the record.
+     *
+     * @param compressedLength the length of the record in the source
+     */
+    public void setCompressedLength(final long compressedLength) {
+        this.compressedLength = compressedLength;
+    }
+
+    /**
+     * Returns the result of the verification of the WARC-Block-Digest and WARC-Payload-Digest headers of the record.
+     * The digests are verified only when the reader is configured to do so. The result is completed when the reader
+     * moved past the record and the digests are calculated, the bytes of the block that are not read by the
+     * consumer are verified too.
+     *
+     * @return the result of the verification or null if the digests are not verified
+     */
+    public CompletableFuture<DigestVerificationResult> getDigestVerification() {
+        return digestVerification;
+    }
+
+    /**
+     * Returns the value of a WARC header of the record. The records created by the
+     * {@link com.github.bottomlessarchive.warc.service.WarcReader} decode their headers only when they are
+     * requested, and compare the header names case-insensitively.
+     *
+     * @param headerName the name of the header
+     * @return the value of the header or null if the record has no such header
+     */
     public String getHeader(final String headerName) {
         return headers.get(headerName);
     }
 
+    /**
+     * Returns every WARC header of the record. When a header is present multiple times only the first occurrence
+     * is returned.
+     *
+     * @return the headers of the record
+     */
     public Map<String, String> getHeaders() {
         return Collections.unmodifiableMap(headers);
     }
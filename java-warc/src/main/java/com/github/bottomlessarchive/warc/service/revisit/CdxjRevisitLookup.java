@@ -0,0 +1,234 @@
+package com.github.bottomlessarchive.warc.service.revisit;
+
+import com.github.bottomlessarchive.warc.service.WarcIndexingException;
+import com.github.bottomlessarchive.warc.service.revisit.domain.RecordLocation;
+import com.github.bottomlessarchive.warc.service.surt.SurtCanonicalizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link RevisitLookup} that finds the original records in a sorted CDXJ index, like the ones created by the
+ * {@link com.github.bottomlessarchive.warc.service.index.CdxjIndexer}. The lines of the URL are found with a binary
+ * search in the file, so only a few blocks of the index are read for a lookup, regardless of its size.
+ */
+public class CdxjRevisitLookup implements RevisitLookup, Closeable {
+
+    private static final String REVISIT_MIME_TYPE = "warc/revisit";
+    private static final String DIGEST_PREFIX = "sha1:";
+    private static final int TIMESTAMP_LENGTH = 14;
+    private static final int READ_SIZE = 4096;
+
+    private final SurtCanonicalizer surtCanonicalizer = new SurtCanonicalizer();
+
+    private final Path indexFile;
+    private final FileChannel channel;
+    private final long size;
+
+    /**
+     * Create a new lookup on the provided index file.
+     *
+     * @param indexFile the sorted CDXJ index
+     */
+    public CdxjRevisitLookup(final Path indexFile) {
+        this.indexFile = indexFile;
+
+        try {
+            this.channel = FileChannel.open(indexFile, StandardOpenOption.READ);
+            this.size = channel.size();
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to open the index: " + indexFile + "!", e);
+        }
+    }
+
+    @Override
+    public RecordLocation lookup(final String targetUri, final String date, final String payloadDigest) {
+        final String key = surtCanonicalizer.canonicalize(targetUri) + " ";
+        final String digest = payloadDigest.startsWith(DIGEST_PREFIX) ? payloadDigest.substring(DIGEST_PREFIX.length())
+                : payloadDigest;
+        final String timestamp = toTimestamp(date);
+
+        try {
+            RecordLocation result = null;
+
+            long lineStart = findFirstLine(key);
+            while (lineStart < size) {
+                final byte[] line = readLine(lineStart);
+                final String text = new String(line, StandardCharsets.UTF_8);
+                if (!text.startsWith(key)) {
+                    break;
+                }
+
+                lineStart += line.length + 1;
+
+                if (!digest.equals(field(text, "digest")) || REVISIT_MIME_TYPE.equals(field(text, "mime"))) {
+                    continue;
+                }
+
+                final RecordLocation location = RecordLocation.builder()
+                        .filename(field(text, "filename"))
+                        .offset(Long.parseLong(field(text, "offset")))
+                        .length(Long.parseLong(field(text, "length")))
+                        .build();
+
+                // The capture with the same date is preferred, otherwise the first capture with the same digest
+                if (timestamp != null && text.startsWith(key + timestamp + " ")) {
+                    return location;
+                }
+
+                if (result == null) {
+                    result = location;
+                }
+            }
+
+            return result;
+        } catch (IOException e) {
+            throw new WarcIndexingException("Unable to read the index: " + indexFile + "!", e);
+        } catch (NumberFormatException e) {
+            throw new WarcIndexingException("Invalid offset or length in the index: " + indexFile + "!", e);
+        }
+    }
+
+    /**
+     * Close the index file.
+     *
+     * @throws IOException when unable to close the index file
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Find the start of the first line that is not less than the provided key. A position belongs to the line that
+     * starts at or after it, and the lines are sorted, so it is enough to search for the first position whose line
+     * is not less than the key.
+     */
+    private long findFirstLine(final String key) throws IOException {
+        long low = 0;
+        long high = size;
+
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            final long lineStart = nextLineStart(middle);
+
+            if (lineStart < size && new String(readLine(lineStart), StandardCharsets.UTF_8).compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return nextLineStart(low);
+    }
+
+    private long nextLineStart(final long position) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+
+            offset += read;
+        }
+
+        return size;
+    }
+
+    private byte[] readLine(final long lineStart) throws IOException {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream(256);
+        final ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+
+        long offset = lineStart;
+        while (offset < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    result.write(buffer.array(), 0, i);
+
+                    return result.toByteArray();
+                }
+            }
+
+            result.write(buffer.array(), 0, read);
+            offset += read;
+        }
+
+        return result.toByteArray();
+    }
+
+    /**
+     * Read a string field of the JSON block of a CDXJ line.
+     */
+    private static String field(final String line, final String name) {
+        final String prefix = "\"" + name + "\": \"";
+        final int start = line.indexOf(prefix);
+        if (start < 0) {
+            return null;
+        }
+
+        final StringBuilder result = new StringBuilder();
+        for (int i = start + prefix.length(); i < line.length(); i++) {
+            final char character = line.charAt(i);
+
+            if (character == '"') {
+                return result.toString();
+            } else if (character == '\\' && i + 1 < line.length()) {
+                final char escaped = line.charAt(++i);
+
+                if (escaped == 'u' && i + 4 < line.length()) {
+                    result.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                    i += 4;
+                } else {
+                    result.append(escaped);
+                }
+            } else {
+                result.append(character);
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static String toTimestamp(final String warcDate) {
+        if (warcDate == null) {
+            return null;
+        }
+
+        final StringBuilder result = new StringBuilder(TIMESTAMP_LENGTH);
+        for (int i = 0; i < warcDate.length() && result.length() < TIMESTAMP_LENGTH; i++) {
+            final char character = warcDate.charAt(i);
+
+            if (character >= '0' && character <= '9') {
+                result.append(character);
+            }
+        }
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.bottomlessarchive.warc.service.revisit;
+
+import com.github.bottomlessarchive.warc.service.revisit.domain.RecordLocation;
+
+/**
+ * Finds the original record of a revisit record, when it is not in the cache of the {@link RevisitResolver}
+ * anymore. For example it can look it up in an index of the crawl.
+ */
+public interface RevisitLookup {
+
+    /**
+     * Find the location of the record that has the provided payload digest and was captured from the provided URL.
+     *
+     * @param targetUri     the URL of the original capture
+     * @param date          the WARC-Date of the original capture or null if unknown
+     * @param payloadDigest the payload digest of the original capture, for example "sha1:PHGRZMLKNUJMX6ZWHQQSF34D6W5ZUEOC"
+     * @return the location of the original record or null if it is not found
+     */
+    RecordLocation lookup(String targetUri, String date, String payloadDigest);
+}
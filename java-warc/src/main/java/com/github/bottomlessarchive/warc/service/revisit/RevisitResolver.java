@@ -0,0 +1,220 @@
+package com.github.bottomlessarchive.warc.service.revisit;
+
+import com.github.bottomlessarchive.warc.service.WarcNetworkException;
+import com.github.bottomlessarchive.warc.service.WarcRecordFetcher;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import com.github.bottomlessarchive.warc.service.revisit.domain.RecordLocation;
+import lombok.Builder;
+import lombok.NonNull;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Resolves the revisit records of a WARC file to the payload of the records they refer to. While the records are
+ * streamed, the locations of the response and resource records are cached by their payload digests, so the
+ * original of a revisit record can be fetched with its offset, without reading the file again. The cache is bounded,
+ * it keeps the least recently used locations. When the original record is not in the cache anymore, it is looked up
+ * with an optional {@link RevisitLookup}, for example in the CDXJ index of the crawl.
+ * <p>
+ * Only the revisit records with the "identical-payload-digest" profile are resolved. A resolved revisit record
+ * keeps its type and WARC headers, but its content block is the content block of the original record. The original
+ * is fetched only when the content block is requested. The other records are returned as they are.
+ * <p>
+ * A resolver belongs to the stream of a single WARC file and it is not thread safe. The files that are named in the
+ * results of the lookup are expected to be next to the streamed file.
+ */
+public class RevisitResolver {
+
+    /**
+     * The default number of the locations that are kept in the cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 65536;
+
+    private static final String IDENTICAL_PAYLOAD_DIGEST_PROFILE = "/revisit/identical-payload-digest";
+
+    private final Path warcFile;
+    private final URL warcUrl;
+    private final WarcRecordFetcher fetcher;
+    private final RevisitLookup lookup;
+    private final Map<String, CachedLocation> cache;
+
+    // The length of a record is known only after the next record is read
+    private WarcRecord<?> pendingRecord;
+    private CachedLocation pendingLocation;
+    private WarcRecord<?> pendingResolvedRecord;
+
+    /**
+     * Create a new resolver. Either the file or the URL of the streamed WARC file must be set.
+     *
+     * @param warcFile  the location of the streamed local WARC file
+     * @param warcUrl   the location of the streamed remote WARC file
+     * @param fetcher   the fetcher that reads the original records, it is not closed by the resolver
+     * @param lookup    the lookup of the original records that are not in the cache, can be null
+     * @param cacheSize the number of the locations that are kept in the cache, {@link #DEFAULT_CACHE_SIZE} if
+     *                  it is not positive
+     */
+    @Builder
+    public RevisitResolver(final Path warcFile, final URL warcUrl, @NonNull final WarcRecordFetcher fetcher,
+            final RevisitLookup lookup, final int cacheSize) {
+        if ((warcFile == null) == (warcUrl == null)) {
+            throw new IllegalArgumentException("Either the file or the URL of the WARC file must be set!");
+        }
+
+        final int maximumSize = cacheSize > 0 ? cacheSize : DEFAULT_CACHE_SIZE;
+
+        this.warcFile = warcFile;
+        this.warcUrl = warcUrl;
+        this.fetcher = fetcher;
+        this.lookup = lookup;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedLocation> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Resolve the revisit records of a stream. The stream must be sequential.
+     *
+     * @param warcRecords the records of the WARC file
+     * @param <T>         the type of the content blocks
+     * @return the stream of the records with the revisit records resolved
+     */
+    public <T extends WarcContentBlock> Stream<WarcRecord<T>> resolve(final Stream<WarcRecord<T>> warcRecords) {
+        return warcRecords.map(this::resolve);
+    }
+
+    /**
+     * Resolve a record. The records of the WARC file must be passed in the order they are read, including the ones
+     * that are not revisit records, because their locations are cached.
+     *
+     * @param warcRecord the record to resolve
+     * @param <T>        the type of the content blocks
+     * @return the resolved revisit record, or the provided record when it is not a revisit record or the original
+     * record is not found
+     */
+    public <T extends WarcContentBlock> WarcRecord<T> resolve(final WarcRecord<T> warcRecord) {
+        completePendingRecord();
+
+        pendingRecord = warcRecord;
+
+        if (warcRecord.isResponse() || warcRecord.isResource()) {
+            final String payloadDigest = warcRecord.getHeader("WARC-Payload-Digest");
+
+            if (payloadDigest != null && warcRecord.getCompressedOffset() >= 0) {
+                pendingLocation = new CachedLocation(warcRecord.getCompressedOffset());
+                cache.put(payloadDigest.trim(), pendingLocation);
+            }
+
+            return warcRecord;
+        }
+
+        if (!warcRecord.isRevisit() || !isIdenticalPayloadRevisit(warcRecord)) {
+            return warcRecord;
+        }
+
+        final RecordLocation location = findOriginal(warcRecord);
+        if (location == null) {
+            return warcRecord;
+        }
+
+        final WarcRecord<T> resolvedRecord = WarcRecord.<T>builder()
+                .type(warcRecord.getType())
+                .headers(warcRecord.getHeaders())
+                .contentBlockSupplier(() -> this.<T>fetchOriginal(location).getContentBlock())
+                .compressedOffset(warcRecord.getCompressedOffset())
+                .digestVerification(warcRecord.getDigestVerification())
+                .build();
+
+        pendingResolvedRecord = resolvedRecord;
+
+        return resolvedRecord;
+    }
+
+    private RecordLocation findOriginal(final WarcRecord<?> revisitRecord) {
+        final String payloadDigest = revisitRecord.getHeader("WARC-Payload-Digest");
+        if (payloadDigest == null) {
+            return null;
+        }
+
+        // A record in the same gzip member as the next record has no length of its own, so it can't be fetched,
+        // like the records of a file that is compressed as a single gzip member
+        final CachedLocation cachedLocation = cache.get(payloadDigest.trim());
+        if (cachedLocation != null && cachedLocation.length > 0) {
+            return RecordLocation.builder()
+                    .offset(cachedLocation.offset)
+                    .length(cachedLocation.length)
+                    .build();
+        }
+
+        if (lookup == null) {
+            return null;
+        }
+
+        final String refersToTargetUri = revisitRecord.getHeader("WARC-Refers-To-Target-URI");
+        final String refersToDate = revisitRecord.getHeader("WARC-Refers-To-Date");
+
+        final RecordLocation location = lookup.lookup(refersToTargetUri != null ? refersToTargetUri
+                : revisitRecord.getHeader("WARC-Target-URI"), refersToDate, payloadDigest.trim());
+
+        return location != null && location.getLength() > 0 ? location : null;
+    }
+
+    private <T extends WarcContentBlock> WarcRecord<T> fetchOriginal(final RecordLocation location) {
+        if (warcFile != null) {
+            return fetcher.fetch(location.getFilename() != null ? warcFile.resolveSibling(location.getFilename())
+                    : warcFile, location.getOffset(), location.getLength());
+        }
+
+        try {
+            return fetcher.fetch(location.getFilename() != null ? new URL(warcUrl, location.getFilename()) : warcUrl,
+                    location.getOffset(), location.getLength());
+        } catch (MalformedURLException e) {
+            throw new WarcNetworkException("Invalid WARC location: " + location.getFilename() + "!", e);
+        }
+    }
+
+    private void completePendingRecord() {
+        if (pendingRecord == null) {
+            return;
+        }
+
+        if (pendingLocation != null) {
+            pendingLocation.length = pendingRecord.getCompressedLength();
+        }
+
+        if (pendingResolvedRecord != null) {
+            pendingResolvedRecord.setCompressedLength(pendingRecord.getCompressedLength());
+        }
+
+        pendingRecord = null;
+        pendingLocation = null;
+        pendingResolvedRecord = null;
+    }
+
+    private static boolean isIdenticalPayloadRevisit(final WarcRecord<?> warcRecord) {
+        final String profile = warcRecord.getHeader("WARC-Profile");
+
+        return profile != null && profile.trim().endsWith(IDENTICAL_PAYLOAD_DIGEST_PROFILE);
+    }
+
+    /**
+     * The location of a record in the streamed file. The length is set when the next record is read.
+     */
+    private static class CachedLocation {
+
+        private final long offset;
+        private long length = -1;
+
+        private CachedLocation(final long offset) {
+            this.offset = offset;
+        }
+    }
+}
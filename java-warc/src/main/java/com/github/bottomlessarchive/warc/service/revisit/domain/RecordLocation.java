@@ -0,0 +1,28 @@
+package com.github.bottomlessarchive.warc.service.revisit.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The location of a record in a WARC file.
+ */
+@Getter
+@Builder
+@SuppressWarnings("unused")
+public class RecordLocation {
+
+    /**
+     * The name of the WARC file that contains the record or null if it is the file that is being read.
+     */
+    private final String filename;
+
+    /**
+     * The offset of the record in the (possibly compressed) WARC file.
+     */
+    private final long offset;
+
+    /**
+     * The length of the record in the (possibly compressed) WARC file.
+     */
+    private final long length;
+}
@@ -0,0 +1,141 @@
+package com.github.bottomlessarchive.warc.service.split;
+
+import com.github.bottomlessarchive.warc.service.WarcFormatException;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaderTokenizer;
+import com.github.bottomlessarchive.warc.service.io.GzipMemberInputStream;
+import com.github.bottomlessarchive.warc.service.io.StreamWarcInputBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Finds the start of the next record in a local WARC file, starting from an arbitrary offset. In compressed files the
+ * next gzip member is looked for that decompresses to the start of a WARC record. In uncompressed files the next
+ * line that starts with "WARC/" and is followed by a valid WARC header block is looked for.
+ */
+public class RecordBoundaryFinder {
+
+    private static final int SCAN_BUFFER_SIZE = 65536;
+    private static final int MEMBER_PROBE_SIZE = 4096;
+    private static final int HEADER_PROBE_SIZE = 65536;
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1F, (byte) 0x8B, (byte) 0x08};
+    private static final byte[] WARC_MAGIC = "WARC/".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final boolean compressed;
+
+    /**
+     * Create a new finder.
+     *
+     * @param channel    the channel of the file to scan, only positional reads are used on it
+     * @param charset    the character set of the WARC headers
+     * @param compressed true if the file is compressed, false otherwise
+     */
+    public RecordBoundaryFinder(final FileChannel channel, final Charset charset, final boolean compressed) {
+        this.channel = channel;
+        this.charset = charset;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Find the offset of the first record that starts in the provided range.
+     *
+     * @param from the start of the range (inclusive)
+     * @param to   the end of the range (exclusive)
+     * @return the offset of the record or -1 if no record starts in the range
+     * @throws IOException when unable to read the file
+     */
+    public long find(final long from, final long to) throws IOException {
+        final byte[] magic = compressed ? GZIP_MAGIC : WARC_MAGIC;
+        final ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+        long scanStart = from;
+        while (scanStart < to) {
+            final int read = read(scanBuffer, scanStart);
+            if (read < magic.length) {
+                return -1;
+            }
+
+            final byte[] data = scanBuffer.array();
+            for (int i = 0; i <= read - magic.length && scanStart + i < to; i++) {
+                if (startsWith(data, i, magic) && isRecordStart(scanStart + i)) {
+                    return scanStart + i;
+                }
+            }
+
+            // The candidates that were cut in half by the end of the buffer are checked in the next round
+            scanStart += read - magic.length + 1;
+        }
+
+        return -1;
+    }
+
+    private boolean isRecordStart(final long offset) throws IOException {
+        return compressed ? isMemberStart(offset) : isHeaderStart(offset);
+    }
+
+    private boolean isMemberStart(final long offset) throws IOException {
+        final ByteBuffer probe = ByteBuffer.allocate(MEMBER_PROBE_SIZE);
+        final int read = read(probe, offset);
+
+        try (InputStream member = new GzipMemberInputStream(
+                new ByteArrayInputStream(probe.array(), 0, read), MEMBER_PROBE_SIZE)) {
+            final byte[] start = member.readNBytes(WARC_MAGIC.length);
+
+            return start.length == WARC_MAGIC.length && startsWith(start, 0, WARC_MAGIC);
+        } catch (IOException e) {
+            // Not a gzip member, just some compressed data that looks like a member header
+            return false;
+        }
+    }
+
+    private boolean isHeaderStart(final long offset) throws IOException {
+        if (offset > 0) {
+            final ByteBuffer previous = ByteBuffer.allocate(1);
+            if (read(previous, offset - 1) != 1 || previous.get(0) != '\n') {
+                return false;
+            }
+        }
+
+        final ByteBuffer probe = ByteBuffer.allocate(HEADER_PROBE_SIZE);
+        final int read = read(probe, offset);
+
+        final WarcHeaderTokenizer headerTokenizer = new WarcHeaderTokenizer(charset);
+        try (StreamWarcInputBuffer input = new StreamWarcInputBuffer(
+                new ByteArrayInputStream(probe.array(), 0, read))) {
+            return headerTokenizer.tokenize(input) && headerTokenizer.indexOf("WARC-Type") >= 0
+                    && headerTokenizer.indexOf("Content-Length") >= 0;
+        } catch (WarcFormatException e) {
+            return false;
+        }
+    }
+
+    private int read(final ByteBuffer target, final long offset) throws IOException {
+        target.clear();
+
+        while (target.hasRemaining()) {
+            final int read = channel.read(target, offset + target.position());
+            if (read < 0) {
+                break;
+            }
+        }
+
+        return target.position();
+    }
+
+    private static boolean startsWith(final byte[] data, final int offset, final byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.bottomlessarchive.warc.service.split;
+
+import com.github.bottomlessarchive.warc.service.SafeWarcRecordIterator;
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the records of a local WARC file that can be split for parallel processing. Every
+ * spliterator covers a byte range of the file and returns the records that start in that range. The range is split
+ * at its middle, then the split point is moved forward to the start of the next record with a
+ * {@link RecordBoundaryFinder}. Compressed files can be split only if every record is compressed into its own gzip
+ * member, like the specification recommends, otherwise the whole file is read by one spliterator.
+ * <p>
+ * The size of the ranges is known, but the number of records in them isn't, so the size of the spliterator is only
+ * estimated from the length of its range. Every spliterator opens its own reader when its first record is requested.
+ * The readers are closed when the spliterators are exhausted or when {@link #close()} is called on the spliterator
+ * that was created first.
+ */
+@Slf4j
+public class WarcFileSpliterator implements Spliterator<WarcRecord<WarcContentBlock>>, Closeable {
+
+    /**
+     * The smallest range that is split in half.
+     */
+    public static final long MINIMUM_SPLIT_SIZE = 8388608;
+
+    // Rough averages of web crawls, only used to estimate the number of records in a range
+    private static final long AVERAGE_COMPRESSED_RECORD_SIZE = 16384;
+    private static final long AVERAGE_RECORD_SIZE = 65536;
+
+    private final Path warcFileLocation;
+    private final WarcReaderConfiguration configuration;
+    private final Queue<WarcReader> openReaders;
+
+    private long start;
+    private final long end;
+
+    private WarcReader warcReader;
+    private SafeWarcRecordIterator iterator;
+    private boolean finished;
+
+    /**
+     * Create a new spliterator that covers the whole file.
+     *
+     * @param warcFileLocation the location of the WARC file
+     * @param configuration    the configuration of the readers
+     * @throws IOException when unable to read the size of the file
+     */
+    public WarcFileSpliterator(final Path warcFileLocation, final WarcReaderConfiguration configuration)
+            throws IOException {
+        this(warcFileLocation, configuration, new ConcurrentLinkedQueue<>(), 0, Files.size(warcFileLocation));
+    }
+
+    private WarcFileSpliterator(final Path warcFileLocation, final WarcReaderConfiguration configuration,
+            final Queue<WarcReader> openReaders, final long start, final long end) {
+        this.warcFileLocation = warcFileLocation;
+        this.configuration = configuration;
+        this.openReaders = openReaders;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super WarcRecord<WarcContentBlock>> action) {
+        if (finished) {
+            return false;
+        }
+
+        if (iterator == null) {
+            warcReader = new WarcReader(warcFileLocation, configuration, start, end);
+            openReaders.add(warcReader);
+            iterator = new SafeWarcRecordIterator(warcReader);
+        }
+
+        if (!iterator.hasNext()) {
+            finish();
+
+            return false;
+        }
+
+        action.accept(iterator.next());
+
+        return true;
+    }
+
+    @Override
+    public Spliterator<WarcRecord<WarcContentBlock>> trySplit() {
+        if (iterator != null || finished || end - start < MINIMUM_SPLIT_SIZE) {
+            return null;
+        }
+
+        final long splitOffset;
+        try (FileChannel channel = FileChannel.open(warcFileLocation, StandardOpenOption.READ)) {
+            splitOffset = new RecordBoundaryFinder(channel, configuration.getCharset(),
+                    configuration.isCompressed())
+                    .find(start + (end - start) / 2, end);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to split WARC file: " + warcFileLocation + "!", e);
+        }
+
+        if (splitOffset == -1) {
+            return null;
+        }
+
+        // An ordered spliterator must return the prefix of its elements
+        final WarcFileSpliterator prefix = new WarcFileSpliterator(warcFileLocation, configuration, openReaders,
+                start, splitOffset);
+        start = splitOffset;
+
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (finished) {
+            return 0;
+        }
+
+        return Math.max(1, (end - start) / (configuration.isCompressed() ? AVERAGE_COMPRESSED_RECORD_SIZE : AVERAGE_RECORD_SIZE));
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Close every reader that was opened by this spliterator or by the spliterators that were split from it.
+     *
+     * @throws IOException when unable to close a reader
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+
+        WarcReader openReader;
+        while ((openReader = openReaders.poll()) != null) {
+            try {
+                openReader.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void finish() {
+        finished = true;
+
+        if (openReaders.remove(warcReader)) {
+            try {
+                warcReader.close();
+            } catch (IOException e) {
+                log.debug("Unable to close the WARC reader of: {}!", warcFileLocation, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.bottomlessarchive.warc.service.surt;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Converts URLs to their canonicalized SURT (Sort-friendly URI Reordering Transform) form. For example
+ * "http://www.example.com:80/Path?b=2&a=1#fragment" is converted to "com,example)/path?a=1&b=2". The
+ * canonicalization follows the default rules of the IA/pywb indexers: the scheme, the user info, the fragment,
+ * the default port and the "www" prefix of the host are removed, the URL is lowercased and the query parameters
+ * are sorted.
+ *
+ * @see <a href="http://crawler.archive.org/articles/user_manual/glossary.html#surt">
+ * http://crawler.archive.org/articles/user_manual/glossary.html#surt</a>
+ */
+public class SurtCanonicalizer {
+
+    /**
+     * Remove the surrounding whitespace and the angle brackets that WARC/1.0 writers put around the value of the
+     * WARC-Target-URI header. The {@link SurtPrefixMatcher} does the same on the raw bytes of the header.
+     *
+     * @param targetUri the value of a target URI header
+     * @return the target URI without the angle brackets
+     */
+    public static String unwrapTargetUri(final String targetUri) {
+        final String trimmedUri = targetUri.trim();
+
+        // WARC 1.0 writers put the target URI between angle brackets
+        if (trimmedUri.length() >= 2 && trimmedUri.charAt(0) == '<'
+                && trimmedUri.charAt(trimmedUri.length() - 1) == '>') {
+            return trimmedUri.substring(1, trimmedUri.length() - 1);
+        }
+
+        return trimmedUri;
+    }
+
+    /**
+     * Convert the provided URL to canonicalized SURT form.
+     *
+     * @param url the url to convert
+     * @return the SURT form of the url
+     */
+    public String canonicalize(final String url) {
+        final String trimmedUrl = unwrapTargetUri(url);
+
+        final int schemeEnd = trimmedUrl.indexOf("://");
+        final String scheme = schemeEnd > 0 ? trimmedUrl.substring(0, schemeEnd).toLowerCase(Locale.ROOT) : "http";
+        String rest = schemeEnd > 0 ? trimmedUrl.substring(schemeEnd + 3) : trimmedUrl;
+
+        final int fragmentStart = rest.indexOf('#');
+        if (fragmentStart >= 0) {
+            rest = rest.substring(0, fragmentStart);
+        }
+
+        final int pathStart = indexOfPathStart(rest);
+        String authority = rest.substring(0, pathStart).toLowerCase(Locale.ROOT);
+        String pathAndQuery = rest.substring(pathStart).toLowerCase(Locale.ROOT);
+        if (pathAndQuery.isEmpty() || pathAndQuery.charAt(0) == '?') {
+            pathAndQuery = "/" + pathAndQuery;
+        }
+
+        final int userInfoEnd = authority.lastIndexOf('@');
+        if (userInfoEnd >= 0) {
+            authority = authority.substring(userInfoEnd + 1);
+        }
+
+        String port = null;
+        final int portStart = authority.lastIndexOf(':');
+        if (portStart >= 0 && authority.indexOf(']', portStart) < 0) {
+            port = authority.substring(portStart + 1);
+            authority = authority.substring(0, portStart);
+
+            if (port.isEmpty() || isDefaultPort(scheme, port)) {
+                port = null;
+            }
+        }
+
+        final StringBuilder result = new StringBuilder(url.length());
+        result.append(reverseHost(stripWww(stripTrailingDots(authority))));
+        if (port != null) {
+            result.append(':').append(port);
+        }
+        result.append(')');
+
+        final int queryStart = pathAndQuery.indexOf('?');
+        if (queryStart < 0) {
+            result.append(pathAndQuery);
+        } else {
+            result.append(pathAndQuery, 0, queryStart);
+
+            final String query = pathAndQuery.substring(queryStart + 1);
+            if (!query.isEmpty()) {
+                final String[] parameters = query.split("&");
+                Arrays.sort(parameters);
+
+                result.append('?').append(String.join("&", parameters));
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Convert a host to its SURT form, without the closing parenthesis. For example "www.example.com" is converted to
+     * "com,example". IP addresses are not reversed.
+     *
+     * @param host the host to convert
+     * @return the SURT form of the host
+     */
+    public String canonicalizeHost(final String host) {
+        return reverseHost(stripWww(stripTrailingDots(host.toLowerCase(Locale.ROOT))));
+    }
+
+    private int indexOfPathStart(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char character = value.charAt(i);
+            if (character == '/' || character == '?') {
+                return i;
+            }
+        }
+
+        return value.length();
+    }
+
+    private boolean isDefaultPort(final String scheme, final String port) {
+        return ("http".equals(scheme) && "80".equals(port)) || ("https".equals(scheme) && "443".equals(port));
+    }
+
+    private String stripTrailingDots(final String host) {
+        int end = host.length();
+        while (end > 0 && host.charAt(end - 1) == '.') {
+            end--;
+        }
+
+        return host.substring(0, end);
+    }
+
+    private String stripWww(final String host) {
+        if (!host.startsWith("www")) {
+            return host;
+        }
+
+        int position = 3;
+        while (position < host.length() && Character.isDigit(host.charAt(position))) {
+            position++;
+        }
+
+        if (position < host.length() && host.charAt(position) == '.') {
+            return host.substring(position + 1);
+        }
+
+        return host;
+    }
+
+    private String reverseHost(final String host) {
+        if (isIpAddress(host)) {
+            return host;
+        }
+
+        final String[] labels = host.split("\\.");
+        final StringBuilder result = new StringBuilder(host.length());
+        for (int i = labels.length - 1; i >= 0; i--) {
+            result.append(labels[i]);
+
+            if (i > 0) {
+                result.append(',');
+            }
+        }
+
+        return result.toString();
+    }
+
+    private boolean isIpAddress(final String host) {
+        if (host.startsWith("[")) {
+            return true;
+        }
+
+        for (int i = 0; i < host.length(); i++) {
+            final char character = host.charAt(i);
+            if (character != '.' && !Character.isDigit(character)) {
+                return false;
+            }
+        }
+
+        return !host.isEmpty();
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.bottomlessarchive.warc.service.surt;
+
+import lombok.Builder;
+import lombok.Singular;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A filter that accepts the URLs whose SURT form starts with one of its prefixes. The prefixes are compiled into a
+ * byte-level trie, so a URL is matched with a single walk over its bytes, regardless of the number of the prefixes.
+ * <p>
+ * The prefixes can be provided in SURT form ("com,example)/news"), as URL prefixes ("http://example.com/news"), as
+ * hosts ("example.com", only the host itself) or as domains ("example.com", the host and its subdomains). The
+ * prefixes should not contain query strings, because the query parameters of the matched URLs are not sorted.
+ * <p>
+ * The filter is immutable and thread safe. The URLs are matched with a {@link SurtPrefixMatcher}, that is created
+ * by {@link #matcher()} and reuses its buffers.
+ */
+public class SurtPrefixFilter {
+
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
+    // The nodes of the trie, the edges of a node are stored next to each other, sorted by their labels
+    private final int[] edgeStart;
+    private final boolean[] terminal;
+    private final byte[] edgeLabels;
+    private final int[] edgeTargets;
+
+    /**
+     * Compile a new filter.
+     *
+     * @param surtPrefixes the prefixes in SURT form
+     * @param urlPrefixes  the prefixes as URLs, they are converted to SURT form
+     * @param hosts        the hosts that are accepted with every path, their subdomains are not accepted
+     * @param domains      the domains that are accepted with every path, including their subdomains
+     */
+    @Builder
+    public SurtPrefixFilter(@Singular("surtPrefix") final Collection<String> surtPrefixes,
+            @Singular("urlPrefix") final Collection<String> urlPrefixes, @Singular final Collection<String> hosts,
+            @Singular final Collection<String> domains) {
+        final SurtCanonicalizer canonicalizer = new SurtCanonicalizer();
+        final BuildNode root = new BuildNode();
+
+        for (String surtPrefix : surtPrefixes) {
+            root.add(surtPrefix.toLowerCase(Locale.ROOT));
+        }
+
+        for (String urlPrefix : urlPrefixes) {
+            root.add(toSurtPrefix(canonicalizer, urlPrefix));
+        }
+
+        for (String host : hosts) {
+            root.add(canonicalizer.canonicalizeHost(host) + ")");
+        }
+
+        for (String domain : domains) {
+            final String surtHost = canonicalizer.canonicalizeHost(domain);
+
+            root.add(surtHost + ")");
+            root.add(surtHost + ",");
+        }
+
+        final List<BuildNode> nodes = root.flatten();
+
+        int edgeCount = 0;
+        for (BuildNode node : nodes) {
+            edgeCount += node.children.size();
+        }
+
+        edgeStart = new int[nodes.size() + 1];
+        terminal = new boolean[nodes.size()];
+        edgeLabels = new byte[edgeCount];
+        edgeTargets = new int[edgeCount];
+
+        int edge = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            final BuildNode node = nodes.get(i);
+
+            edgeStart[i] = edge;
+            terminal[i] = node.terminal;
+
+            for (Map.Entry<Byte, BuildNode> child : node.children.entrySet()) {
+                edgeLabels[edge] = child.getKey();
+                edgeTargets[edge] = child.getValue().index;
+                edge++;
+            }
+        }
+        edgeStart[nodes.size()] = edge;
+    }
+
+    /**
+     * Create a new matcher of this filter. A matcher is not thread safe, every thread should have its own.
+     *
+     * @return the created matcher
+     */
+    public SurtPrefixMatcher matcher() {
+        return new SurtPrefixMatcher(this);
+    }
+
+    /**
+     * Check if the provided URL is accepted by the filter.
+     *
+     * @param url the URL to check
+     * @return true if the SURT form of the URL starts with one of the prefixes
+     */
+    public boolean matches(final String url) {
+        final byte[] urlBytes = url.getBytes(StandardCharsets.ISO_8859_1);
+
+        return matcher().matches(urlBytes, 0, urlBytes.length);
+    }
+
+    /**
+     * Walk the trie on a SURT key.
+     *
+     * @param key    the array that contains the key
+     * @param length the length of the key
+     * @return true if a prefix of the key is in the trie
+     */
+    boolean matchesSurt(final byte[] key, final int length) {
+        int node = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (terminal[node]) {
+                return true;
+            }
+
+            node = child(node, key[i]);
+            if (node < 0) {
+                return false;
+            }
+        }
+
+        return terminal[node];
+    }
+
+    private int child(final int node, final byte label) {
+        int low = edgeStart[node];
+        int high = edgeStart[node + 1] - 1;
+
+        if (high - low < LINEAR_SEARCH_LIMIT) {
+            for (int i = low; i <= high; i++) {
+                if (edgeLabels[i] == label) {
+                    return edgeTargets[i];
+                }
+            }
+
+            return -1;
+        }
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+
+            if (edgeLabels[middle] < label) {
+                low = middle + 1;
+            } else if (edgeLabels[middle] > label) {
+                high = middle - 1;
+            } else {
+                return edgeTargets[middle];
+            }
+        }
+
+        return -1;
+    }
+
+    private static String toSurtPrefix(final SurtCanonicalizer canonicalizer, final String urlPrefix) {
+        final String surt = canonicalizer.canonicalize(urlPrefix);
+
+        // A URL prefix without a path matches every path of the host
+        return surt.endsWith(")/") && !urlPrefix.trim().endsWith("/") ? surt.substring(0, surt.length() - 1) : surt;
+    }
+
+    /**
+     * A node of the trie while it is built.
+     */
+    private static class BuildNode {
+
+        private final Map<Byte, BuildNode> children = new TreeMap<>();
+        private boolean terminal;
+        private int index;
+
+        private void add(final String prefix) {
+            BuildNode node = this;
+
+            for (byte label : prefix.getBytes(StandardCharsets.ISO_8859_1)) {
+                if (node.terminal) {
+                    // A shorter prefix already accepts everything below this node
+                    return;
+                }
+
+                node = node.children.computeIfAbsent(label, key -> new BuildNode());
+            }
+
+            node.terminal = true;
+            node.children.clear();
+        }
+
+        private List<BuildNode> flatten() {
+            final List<BuildNode> result = new ArrayList<>();
+            final Deque<BuildNode> queue = new ArrayDeque<>();
+            queue.add(this);
+
+            while (!queue.isEmpty()) {
+                final BuildNode node = queue.poll();
+                node.index = result.size();
+                result.add(node);
+
+                queue.addAll(node.children.values());
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.bottomlessarchive.warc.service.surt;
+
+/**
+ * Matches raw URL bytes against a {@link SurtPrefixFilter}. The URL is converted to its SURT form in a reused
+ * buffer, following the same rules as the {@link SurtCanonicalizer}, except that the query parameters are not
+ * sorted. Nothing is allocated while matching.
+ * <p>
+ * A matcher is not thread safe, create it with {@link SurtPrefixFilter#matcher()}.
+ */
+public class SurtPrefixMatcher {
+
+    private static final int INITIAL_KEY_SIZE = 256;
+
+    private final SurtPrefixFilter filter;
+
+    private byte[] key = new byte[INITIAL_KEY_SIZE];
+    private int keyLength;
+
+    SurtPrefixMatcher(final SurtPrefixFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Check if the URL in the provided bytes is accepted by the filter.
+     *
+     * @param url    the array that contains the URL
+     * @param offset the offset of the URL in the array
+     * @param length the length of the URL
+     * @return true if the SURT form of the URL starts with one of the prefixes of the filter
+     */
+    public boolean matches(final byte[] url, final int offset, final int length) {
+        int start = offset;
+        int end = offset + length;
+
+        while (start < end && isWhitespace(url[start])) {
+            start++;
+        }
+
+        while (end > start && isWhitespace(url[end - 1])) {
+            end--;
+        }
+
+        // Same as SurtCanonicalizer.unwrapTargetUri, without creating a String
+        if (end - start >= 2 && url[start] == '<' && url[end - 1] == '>') {
+            start++;
+            end--;
+        }
+
+        if (key.length < (end - start) * 2 + 2) {
+            key = new byte[(end - start) * 2 + 2];
+        }
+        keyLength = 0;
+
+        final int schemeEnd = indexOf(url, start, end, (byte) ':', (byte) '/', (byte) '/');
+        final boolean https = schemeEnd - start == 5 && startsWithIgnoreCase(url, start, "https");
+        final boolean http = schemeEnd - start == 4 && startsWithIgnoreCase(url, start, "http");
+
+        final int authorityStart = schemeEnd >= 0 ? schemeEnd + 3 : start;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < end && url[authorityEnd] != '/' && url[authorityEnd] != '?'
+                && url[authorityEnd] != '#') {
+            authorityEnd++;
+        }
+
+        int hostStart = authorityStart;
+        for (int i = authorityEnd - 1; i >= authorityStart; i--) {
+            if (url[i] == '@') {
+                hostStart = i + 1;
+                break;
+            }
+        }
+
+        int hostEnd = authorityEnd;
+        int portStart = -1;
+        for (int i = authorityEnd - 1; i >= hostStart; i--) {
+            if (url[i] == ']') {
+                break;
+            }
+
+            if (url[i] == ':') {
+                hostEnd = i;
+                portStart = i + 1;
+                break;
+            }
+        }
+
+        while (hostEnd > hostStart && url[hostEnd - 1] == '.') {
+            hostEnd--;
+        }
+
+        hostStart = skipWww(url, hostStart, hostEnd);
+        appendHost(url, hostStart, hostEnd);
+
+        if (portStart >= 0 && portStart < authorityEnd && !isDefaultPort(url, portStart, authorityEnd, http, https)) {
+            append((byte) ':');
+            appendLowerCase(url, portStart, authorityEnd);
+        }
+        append((byte) ')');
+
+        int pathEnd = authorityEnd;
+        while (pathEnd < end && url[pathEnd] != '#') {
+            pathEnd++;
+        }
+
+        if (authorityEnd == pathEnd || url[authorityEnd] == '?') {
+            append((byte) '/');
+        }
+        appendLowerCase(url, authorityEnd, pathEnd);
+
+        return filter.matchesSurt(key, keyLength);
+    }
+
+    private void appendHost(final byte[] url, final int start, final int end) {
+        if (isIpAddress(url, start, end)) {
+            appendLowerCase(url, start, end);
+
+            return;
+        }
+
+        // The labels of the host are written in reverse order
+        int labelEnd = end;
+        for (int i = end - 1; i >= start - 1; i--) {
+            if (i < start || url[i] == '.') {
+                appendLowerCase(url, i + 1, labelEnd);
+
+                if (i >= start) {
+                    append((byte) ',');
+                }
+
+                labelEnd = i;
+            }
+        }
+    }
+
+    private void appendLowerCase(final byte[] url, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final byte value = url[i];
+
+            key[keyLength++] = value >= 'A' && value <= 'Z' ? (byte) (value + ('a' - 'A')) : value;
+        }
+    }
+
+    private void append(final byte value) {
+        key[keyLength++] = value;
+    }
+
+    private static int skipWww(final byte[] url, final int start, final int end) {
+        if (end - start < 3 || !startsWithIgnoreCase(url, start, "www")) {
+            return start;
+        }
+
+        int position = start + 3;
+        while (position < end && url[position] >= '0' && url[position] <= '9') {
+            position++;
+        }
+
+        return position < end && url[position] == '.' ? position + 1 : start;
+    }
+
+    private static boolean isDefaultPort(final byte[] url, final int start, final int end, final boolean http,
+            final boolean https) {
+        return (http && end - start == 2 && url[start] == '8' && url[start + 1] == '0')
+                || (https && end - start == 3 && url[start] == '4' && url[start + 1] == '4' && url[start + 2] == '3');
+    }
+
+    private static boolean isIpAddress(final byte[] url, final int start, final int end) {
+        if (start < end && url[start] == '[') {
+            return true;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (url[i] != '.' && (url[i] < '0' || url[i] > '9')) {
+                return false;
+            }
+        }
+
+        return start < end;
+    }
+
+    private static int indexOf(final byte[] url, final int start, final int end, final byte first, final byte second,
+            final byte third) {
+        for (int i = start; i < end - 2; i++) {
+            if (url[i] == first && url[i + 1] == second && url[i + 2] == third) {
+                return i;
+            }
+
+            // The scheme ends before the first slash or question mark
+            if (url[i] == '/' || url[i] == '?') {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean startsWithIgnoreCase(final byte[] url, final int start, final String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            final byte value = url[start + i];
+
+            if ((value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isWhitespace(final byte value) {
+        return value == ' ' || value == '\t' || value == '\r' || value == '\n';
+    }
+}
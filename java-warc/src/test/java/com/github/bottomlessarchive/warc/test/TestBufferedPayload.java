@@ -0,0 +1,102 @@
+package com.github.bottomlessarchive.warc.test;
+
+import com.github.bottomlessarchive.warc.service.payload.BufferedPayload;
+import com.github.bottomlessarchive.warc.service.payload.PayloadBufferPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Checks that the buffer of a payload is not reused by the pool while a stream or a buffer of the payload can still
+ * read it, even when the payload itself is closed or garbage collected.
+ */
+public class TestBufferedPayload {
+
+    private static final int PAYLOAD_LENGTH = 100;
+
+    public static void main(final String... arg) throws Exception {
+        final PayloadBufferPool pool = PayloadBufferPool.builder().build();
+
+        checkStreamOfCollectedPayload(pool);
+        checkStreamOfClosedPayload(pool);
+        checkBufferOfClosedPayload(pool);
+
+        System.out.println("The buffers of the payloads are not reused while they are read.");
+    }
+
+    private static void checkStreamOfCollectedPayload(final PayloadBufferPool pool) throws IOException {
+        final InputStream streamA = openAndReadOneByte(pool, 'A');
+
+        // Only the stream is kept, the payload itself is unreachable
+        System.gc();
+        Thread.yield();
+        System.gc();
+
+        try (BufferedPayload payloadB = copyPayload(pool, 'B')) {
+            expect(streamA.read(), 'A', "The stream of a collected payload read the data of another payload!");
+            expect(readFirstByte(payloadB), 'B', "The stream of a new payload returned wrong data!");
+        }
+    }
+
+    private static void checkStreamOfClosedPayload(final PayloadBufferPool pool) throws IOException {
+        final BufferedPayload payloadA = copyPayload(pool, 'A');
+        final InputStream streamA = payloadA.openStream();
+        payloadA.close();
+
+        try (BufferedPayload payloadB = copyPayload(pool, 'B')) {
+            expect(streamA.read(), 'A', "The stream of a closed payload read the data of another payload!");
+            expect(readFirstByte(payloadB), 'B', "The stream of a new payload returned wrong data!");
+        }
+
+        // The buffer is released once the stream is read until its end
+        final long allocatedMemory = pool.getAllocatedMemory();
+        streamA.readAllBytes();
+
+        try (BufferedPayload payloadC = copyPayload(pool, 'C')) {
+            expect((int) pool.getAllocatedMemory(), (int) allocatedMemory,
+                    "The buffer of a fully read payload was not reused!");
+            expect(readFirstByte(payloadC), 'C', "The stream of a payload in a reused buffer returned wrong data!");
+        }
+    }
+
+    private static void checkBufferOfClosedPayload(final PayloadBufferPool pool) throws IOException {
+        final BufferedPayload payloadA = copyPayload(pool, 'A');
+        final ByteBuffer bufferA = payloadA.asByteBuffer();
+        payloadA.close();
+
+        try (BufferedPayload payloadB = copyPayload(pool, 'B')) {
+            expect(bufferA.get(0), 'A', "The buffer of a closed payload read the data of another payload!");
+            expect(readFirstByte(payloadB), 'B', "The stream of a new payload returned wrong data!");
+        }
+    }
+
+    private static InputStream openAndReadOneByte(final PayloadBufferPool pool, final char content)
+            throws IOException {
+        final InputStream stream = copyPayload(pool, content).openStream();
+        expect(stream.read(), content, "The stream returned wrong data!");
+
+        return stream;
+    }
+
+    private static int readFirstByte(final BufferedPayload payload) throws IOException {
+        try (InputStream stream = payload.openStream()) {
+            return stream.read();
+        }
+    }
+
+    private static BufferedPayload copyPayload(final PayloadBufferPool pool, final char content) throws IOException {
+        final byte[] data = new byte[PAYLOAD_LENGTH];
+        Arrays.fill(data, (byte) content);
+
+        return BufferedPayload.copyOf(new ByteArrayInputStream(data), data.length, pool);
+    }
+
+    private static void expect(final int actual, final int expected, final String message) {
+        if (actual != expected) {
+            throw new IllegalStateException(message + " Expected: " + expected + ", actual: " + actual + ".");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.bottomlessarchive.warc.test;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.content.response.ResponseFilter;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Filters a generated WARC file by status code and mime type. The file has responses without a Content-Type header
+ * and without a valid HTTP message, they are skipped instead of failing the reading.
+ */
+public class TestResponseFilter {
+
+    public static void main(final String... arg) throws Exception {
+        final String warcFile = buildResponseRecord(0, "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nno")
+                + buildResponseRecord(1, "HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=UTF-8\r\n"
+                + "Content-Length: 3\r\n\r\nyes")
+                + buildResponseRecord(2, "not an HTTP message")
+                + buildResponseRecord(3, "HTTP/1.1 404 Not Found\r\nContent-Type: text/html\r\n"
+                + "Content-Length: 2\r\n\r\nno");
+
+        final WarcReaderConfiguration configuration = WarcReaderConfiguration.builder()
+                .compressed(false)
+                .responseFilter(ResponseFilter.of(List.of(200), List.of("text/html")))
+                .build();
+
+        final List<String> targetUris = new ArrayList<>();
+        try (WarcReader warcReader = new WarcReader(new ByteArrayInputStream(
+                warcFile.getBytes(StandardCharsets.ISO_8859_1)), configuration)) {
+            Optional<WarcRecord<WarcContentBlock>> warcRecord;
+            while ((warcRecord = warcReader.readRecord()).isPresent()) {
+                targetUris.add(warcRecord.get().getHeader("WARC-Target-URI"));
+            }
+        }
+
+        if (!targetUris.equals(List.of("http://example.com/page/1"))) {
+            throw new IllegalStateException("Unexpected records were accepted by the filter: " + targetUris + "!");
+        }
+
+        System.out.println("Accepted records: " + targetUris);
+    }
+
+    private static String buildResponseRecord(final int index, final String block) {
+        return "WARC/1.0\r\nWARC-Type: response\r\nWARC-Target-URI: http://example.com/page/" + index + "\r\n"
+                + "WARC-Date: 2020-11-15T10:00:00Z\r\n"
+                + "WARC-Record-ID: <urn:uuid:00000000-0000-0000-0000-00000000000" + index + ">\r\n"
+                + "Content-Type: application/http; msgtype=response\r\n"
+                + "Content-Length: " + block.length() + "\r\n\r\n" + block + "\r\n\r\n";
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.bottomlessarchive.warc.test;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.bloom.WarcBloomFilter;
+import com.github.bottomlessarchive.warc.service.bloom.WarcBloomFilterWriter;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Builds a Bloom filter sidecar of a generated WARC/1.0 file, that has its target URIs between angle brackets, and
+ * looks up the URIs in every form. A Bloom filter must never miss a URI that is in the file.
+ */
+public class TestWarcBloomFilter {
+
+    private static final int RECORD_COUNT = 5;
+
+    public static void main(final String... arg) throws Exception {
+        final StringBuilder warcFile = new StringBuilder();
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            warcFile.append(buildResourceRecord(i));
+        }
+
+        final WarcBloomFilterWriter writer = new WarcBloomFilterWriter();
+        try (WarcReader warcReader = new WarcReader(new ByteArrayInputStream(
+                warcFile.toString().getBytes(StandardCharsets.ISO_8859_1)),
+                WarcReaderConfiguration.builder().compressed(false).build())) {
+            Optional<WarcRecord<WarcContentBlock>> warcRecord;
+            while ((warcRecord = warcReader.readRecord()).isPresent()) {
+                writer.add(warcRecord.get());
+            }
+        }
+
+        final Path sidecarFile = Files.createTempFile("test-warc-bloom-filter-", WarcBloomFilter.SIDECAR_EXTENSION);
+        try {
+            writer.write(sidecarFile);
+
+            final WarcBloomFilter filter = WarcBloomFilter.open(sidecarFile);
+            for (int i = 0; i < RECORD_COUNT; i++) {
+                final String url = "http://example.com/page/" + i;
+
+                if (!filter.mightContainUrl(url) || !filter.mightContainUrl("<" + url + ">")
+                        || !filter.mightContainUrl("http://www.Example.com:80/page/" + i)) {
+                    throw new IllegalStateException("The Bloom filter missed the URI: " + url + "!");
+                }
+            }
+
+            System.out.println("Every URI was found, " + writer.getKeyCount() + " keys in the filter.");
+        } finally {
+            Files.delete(sidecarFile);
+        }
+    }
+
+    private static String buildResourceRecord(final int index) {
+        final String block = "Content of page " + index + ".";
+
+        return "WARC/1.0\r\nWARC-Type: resource\r\nWARC-Target-URI: <http://example.com/page/" + index + ">\r\n"
+                + "WARC-Date: 2020-11-15T10:00:00Z\r\n"
+                + "WARC-Record-ID: <urn:uuid:00000000-0000-0000-0000-00000000000" + index + ">\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + block.length() + "\r\n\r\n" + block + "\r\n\r\n";
+    }
+}
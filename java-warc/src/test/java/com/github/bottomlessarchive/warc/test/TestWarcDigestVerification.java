@@ -0,0 +1,69 @@
+package com.github.bottomlessarchive.warc.test;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestStatus;
+import com.github.bottomlessarchive.warc.service.digest.domain.DigestVerificationResult;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies the block digests of a generated WARC file. A digest with an unknown algorithm is reported as not
+ * verified, only a record without the header is reported as missing its digest.
+ */
+public class TestWarcDigestVerification {
+
+    private static final String BLOCK = "Hello world!";
+
+    public static void main(final String... arg) throws Exception {
+        final String warcFile = buildResourceRecord(0, "sha1:2NEGV2ITNZ4FNPCCEERYL2TZOCKEOWAC")
+                + buildResourceRecord(1, "sha1:AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA")
+                + buildResourceRecord(2, "sha3-256:AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA")
+                + buildResourceRecord(3, null);
+
+        final WarcReaderConfiguration configuration = WarcReaderConfiguration.builder()
+                .compressed(false)
+                .verifyDigests(true)
+                .build();
+
+        // The digests of a record are calculated while the reader moves over its block
+        final List<CompletableFuture<DigestVerificationResult>> verifications = new ArrayList<>();
+        try (WarcReader warcReader = new WarcReader(new ByteArrayInputStream(
+                warcFile.getBytes(StandardCharsets.ISO_8859_1)), configuration)) {
+            Optional<WarcRecord<WarcContentBlock>> warcRecord;
+            while ((warcRecord = warcReader.readRecord()).isPresent()) {
+                verifications.add(warcRecord.get().getDigestVerification());
+            }
+        }
+
+        final List<DigestStatus> statuses = verifications.stream()
+                .map(verification -> verification.join().getBlockDigestStatus())
+                .collect(Collectors.toList());
+
+        final List<DigestStatus> expectedStatuses = List.of(DigestStatus.VALID, DigestStatus.INVALID,
+                DigestStatus.NOT_VERIFIED, DigestStatus.MISSING);
+        if (!statuses.equals(expectedStatuses)) {
+            throw new IllegalStateException("Unexpected block digest statuses: " + statuses + ", expected: "
+                    + expectedStatuses + "!");
+        }
+
+        System.out.println("Block digest statuses: " + statuses);
+    }
+
+    private static String buildResourceRecord(final int index, final String blockDigest) {
+        return "WARC/1.0\r\nWARC-Type: resource\r\nWARC-Target-URI: http://example.com/file/" + index + "\r\n"
+                + "WARC-Date: 2020-11-15T10:00:00Z\r\n"
+                + "WARC-Record-ID: <urn:uuid:00000000-0000-0000-0000-00000000000" + index + ">\r\n"
+                + (blockDigest != null ? "WARC-Block-Digest: " + blockDigest + "\r\n" : "")
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + BLOCK.length() + "\r\n\r\n" + BLOCK + "\r\n\r\n";
+    }
+}
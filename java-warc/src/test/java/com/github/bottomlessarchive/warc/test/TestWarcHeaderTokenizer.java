@@ -0,0 +1,97 @@
+package com.github.bottomlessarchive.warc.test;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.header.WarcHeaderTokenizer;
+import com.github.bottomlessarchive.warc.service.http.HttpParser;
+import com.github.bottomlessarchive.warc.service.io.StreamWarcInputBuffer;
+import com.github.bottomlessarchive.warc.service.io.WarcInputBuffer;
+import org.apache.http.Header;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks that the buffer based {@link WarcHeaderTokenizer} returns the same headers as the line based
+ * {@link HttpParser} did, on header blocks with folded values, odd whitespace, lower case names and non-ASCII
+ * values.
+ */
+public class TestWarcHeaderTokenizer {
+
+    private static final List<String> HEADER_BLOCKS = List.of(
+            "WARC/1.0\r\n"
+                    + "WARC-Type: response\r\n"
+                    + "WARC-Date: 2018-10-15T08:02:48Z\r\n"
+                    + "WARC-Record-ID: <urn:uuid:2d1f1f4e-a8c3-4d2b-9b5e-000000000000>\r\n"
+                    + "Content-Length: 1000\r\n"
+                    + "Content-Type: application/http; msgtype=response\r\n"
+                    + "WARC-Target-URI: http://www.example.com/page/0\r\n"
+                    + "WARC-Payload-Digest: sha1:3I42H3S6NNFQ2MSVX7XZKYAYSCX5QBYJ\r\n"
+                    + "\r\n",
+            "WARC/1.1\r\n"
+                    + "warc-type:resource\r\n"
+                    + "WARC-Target-URI:   http://www.example.com/páge/1   \r\n"
+                    + "Content-Length:\t0\r\n"
+                    + "X-Custom-Header: first line\r\n"
+                    + "  second line \r\n"
+                    + "\tthird line\r\n"
+                    + "X-Empty-Header:\r\n"
+                    + "\r\n",
+            "WARC/1.0\n"
+                    + "WARC-Type: warcinfo\n"
+                    + "Content-Type: application/warc-fields\n"
+                    + "WARC-Filename: example.warc.gz\n"
+                    + "Content-Length: 0\n"
+                    + "\n"
+    );
+
+    public static void main(final String... arg) throws Exception {
+        final byte[] headerBlocks = String.join("", HEADER_BLOCKS).getBytes(StandardCharsets.UTF_8);
+
+        final InputStream inputStream = new ByteArrayInputStream(headerBlocks);
+        final WarcInputBuffer inputBuffer = new StreamWarcInputBuffer(new ByteArrayInputStream(headerBlocks));
+        final WarcHeaderTokenizer tokenizer = new WarcHeaderTokenizer(WarcReader.DEFAULT_CHARSET);
+
+        int blockCount = 0;
+        while (HttpParser.readLine(inputStream, WarcReader.DEFAULT_CHARSET) != null) {
+            final Map<String, String> expectedHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (final Header header : HttpParser.parseHeaders(inputStream, WarcReader.DEFAULT_CHARSET)) {
+                expectedHeaders.putIfAbsent(header.getName(), header.getValue());
+            }
+
+            if (!tokenizer.tokenize(inputBuffer)) {
+                throw new IllegalStateException("The tokenizer didn't find header block " + blockCount + "!");
+            }
+
+            final Map<String, String> tokenizedValues = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < tokenizer.headerCount(); i++) {
+                tokenizedValues.putIfAbsent(tokenizer.name(i), tokenizer.value(i));
+            }
+
+            final Map<String, String> tokenizedHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            tokenizedHeaders.putAll(tokenizer.headers());
+
+            expect(tokenizedValues, expectedHeaders, "The tokenized values of header block " + blockCount);
+            expect(tokenizedHeaders, expectedHeaders, "The headers of header block " + blockCount);
+
+            blockCount++;
+        }
+
+        if (tokenizer.tokenize(inputBuffer) || blockCount != HEADER_BLOCKS.size()) {
+            throw new IllegalStateException("The parsers found different numbers of header blocks!");
+        }
+
+        System.out.println("The " + blockCount + " header blocks were parsed to the same headers.");
+    }
+
+    private static void expect(final Map<String, String> actual, final Map<String, String> expected,
+            final String subject) {
+        if (!actual.equals(expected)) {
+            throw new IllegalStateException(subject + " are different. Expected: " + expected + ", actual: "
+                    + actual + ".");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.bottomlessarchive.warc.test;
+
+import com.github.bottomlessarchive.warc.service.WarcReader;
+import com.github.bottomlessarchive.warc.service.content.domain.WarcContentBlock;
+import com.github.bottomlessarchive.warc.service.content.response.domain.ResponseContentBlock;
+import com.github.bottomlessarchive.warc.service.domain.WarcReaderConfiguration;
+import com.github.bottomlessarchive.warc.service.engine.WarcParsingPipeline;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Processes a generated WARC file with the parsing pipeline. The records of the ordered pipeline must be the same as
+ * the records of a sequential reader, in the same order, and a failure of the consumer must stop the pipeline.
+ */
+public class TestWarcParsingPipeline {
+
+    private static final int RECORD_COUNT = 2000;
+
+    public static void main(final String... arg) throws Exception {
+        final ByteArrayOutputStream warcFile = new ByteArrayOutputStream();
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            try (GZIPOutputStream member = new GZIPOutputStream(new NonClosingOutputStream(warcFile))) {
+                member.write(buildResponseRecord(i));
+            }
+        }
+
+        final Path warcPath = Files.createTempFile("test-warc-parsing-pipeline-", ".warc.gz");
+        Files.write(warcPath, warcFile.toByteArray());
+
+        try {
+            final List<String> expected = new ArrayList<>();
+            try (WarcReader warcReader = new WarcReader(warcPath, WarcReaderConfiguration.builder().build())) {
+                Optional<WarcRecord<WarcContentBlock>> warcRecord;
+                while ((warcRecord = warcReader.readRecord()).isPresent()) {
+                    expected.add(describe(warcRecord.get()));
+                }
+            }
+
+            checkOrdered(warcPath, expected);
+            checkConsumerFailure(warcPath);
+
+            System.out.println("The pipeline returned the " + expected.size() + " records of the reader.");
+        } finally {
+            Files.delete(warcPath);
+        }
+    }
+
+    private static void checkOrdered(final Path warcPath, final List<String> expected) {
+        final WarcParsingPipeline pipeline = WarcParsingPipeline.builder()
+                .parallelism(4)
+                .maximumPendingRecords(16)
+                .build();
+
+        final List<String> actual = Collections.synchronizedList(new ArrayList<>());
+        final long recordCount = pipeline.processFile(warcPath,
+                (WarcRecord<ResponseContentBlock> warcRecord) -> actual.add(describe(warcRecord)));
+
+        if (recordCount != RECORD_COUNT || !actual.equals(expected)) {
+            throw new IllegalStateException("The ordered pipeline returned different records than the reader!");
+        }
+    }
+
+    private static void checkConsumerFailure(final Path warcPath) {
+        final WarcParsingPipeline pipeline = WarcParsingPipeline.builder()
+                .parallelism(4)
+                .ordered(false)
+                .build();
+
+        try {
+            pipeline.processFile(warcPath, (WarcRecord<ResponseContentBlock> warcRecord) -> {
+                if (warcRecord.getHeader("WARC-Target-URI").endsWith("/100")) {
+                    throw new IllegalArgumentException("Failure of the consumer.");
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+
+        throw new IllegalStateException("The failure of the consumer was not rethrown by the pipeline!");
+    }
+
+    private static String describe(final WarcRecord<? extends WarcContentBlock> warcRecord) {
+        try {
+            final ResponseContentBlock contentBlock = (ResponseContentBlock) warcRecord.getContentBlock();
+
+            return warcRecord.getHeader("WARC-Target-URI") + " " + warcRecord.getCompressedOffset() + " "
+                    + contentBlock.getStatusCode() + " "
+                    + new String(contentBlock.getPayload().readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] buildResponseRecord(final int index) {
+        final String url = "http://example.com/page/" + index;
+        final String body = "Content of page " + index + ".";
+        final String block = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + body.length()
+                + "\r\n\r\n" + body;
+
+        return ("WARC/1.0\r\nWARC-Type: response\r\nWARC-Target-URI: " + url + "\r\n"
+                + "WARC-Date: 2020-11-15T10:00:00Z\r\n"
+                + "WARC-Record-ID: <urn:uuid:00000000-0000-0000-0000-" + String.format("%012d", index) + ">\r\n"
+                + "Content-Type: application/http; msgtype=response\r\n"
+                + "Content-Length: " + block.length() + "\r\n\r\n" + block + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+
+        private NonClosingOutputStream(final OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(final int value) throws IOException {
+            delegate.write(value);
+        }
+
+        @Override
+        public void write(final byte[] data, final int offset, final int length) throws IOException {
+            delegate.write(data, offset, length);
+        }
+
+        @Override
+        public void close() {
+            // The members are written into the same output
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.bottomlessarchive.warc.test;
+
+import com.github.bottomlessarchive.warc.service.WarcRecordFetcher;
+import com.github.bottomlessarchive.warc.service.content.response.domain.ResponseContentBlock;
+import com.github.bottomlessarchive.warc.service.record.domain.WarcRecord;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fetches the records of a generated WARC file by their offsets, from the local file and through range requests
+ * sent to an embedded HTTP server.
+ */
+public class TestWarcRecordFetcher {
+
+    private static final int RECORD_COUNT = 5;
+
+    public static void main(final String... arg) throws Exception {
+        final ByteArrayOutputStream warcFile = new ByteArrayOutputStream();
+        final List<long[]> offsets = new ArrayList<>();
+
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            final int start = warcFile.size();
+
+            try (GZIPOutputStream member = new GZIPOutputStream(new NonClosingOutputStream(warcFile))) {
+                member.write(buildResponseRecord(i));
+            }
+
+            offsets.add(new long[]{start, warcFile.size() - start});
+        }
+
+        final Path warcPath = Files.createTempFile("test-warc-record-fetcher-", ".warc.gz");
+        Files.write(warcPath, warcFile.toByteArray());
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/test.warc.gz", exchange -> {
+            final byte[] content = warcFile.toByteArray();
+            final String range = exchange.getRequestHeaders().getFirst("Range");
+            final String[] bounds = range.substring("bytes=".length()).split("-");
+            final int from = Integer.parseInt(bounds[0]);
+            final int to = Integer.parseInt(bounds[1]);
+
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+            exchange.sendResponseHeaders(206, to - from + 1);
+
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(content, from, to - from + 1);
+            }
+        });
+        server.start();
+
+        final URL warcUrl = new URL("http://localhost:" + server.getAddress().getPort() + "/test.warc.gz");
+
+        try (WarcRecordFetcher warcRecordFetcher = new WarcRecordFetcher()) {
+            for (int i = RECORD_COUNT - 1; i >= 0; i--) {
+                final long offset = offsets.get(i)[0];
+                final long length = offsets.get(i)[1];
+
+                final WarcRecord<ResponseContentBlock> localRecord = warcRecordFetcher.fetch(warcPath, offset, length);
+                final WarcRecord<ResponseContentBlock> remoteRecord = warcRecordFetcher.fetch(warcUrl, offset, length);
+
+                System.out.println(localRecord.getHeader("WARC-Target-URI") + " "
+                        + localRecord.getContentBlock().getPayloadAsString());
+                System.out.println(remoteRecord.getHeader("WARC-Target-URI") + " "
+                        + remoteRecord.getContentBlock().getPayloadAsString());
+            }
+        } finally {
+            server.stop(0);
+            Files.delete(warcPath);
+        }
+    }
+
+    private static byte[] buildResponseRecord(final int index) {
+        final String url = "http://example.com/page/" + index;
+        final String body = "Content of page " + index + ".";
+        final String block = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + body.length()
+                + "\r\n\r\n" + body;
+
+        return ("WARC/1.0\r\nWARC-Type: response\r\nWARC-Target-URI: " + url + "\r\n"
+                + "WARC-Date: 2020-11-15T10:00:00Z\r\n"
+                + "WARC-Record-ID: <urn:uuid:00000000-0000-0000-0000-00000000000" + index + ">\r\n"
+                + "Content-Type: application/http; msgtype=response\r\n"
+                + "Content-Length: " + block.length() + "\r\n\r\n" + block + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+
+        private NonClosingOutputStream(final OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(final int value) throws IOException {
+            delegate.write(value);
+        }
+
+        @Override
+        public void write(final byte[] data, final int offset, final int length) throws IOException {
+            delegate.write(data, offset, length);
+        }
+
+        @Override
+        public void close() {
+            // The members are written into the same output
+        }
+    }
+}